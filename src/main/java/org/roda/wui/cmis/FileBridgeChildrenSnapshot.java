@@ -0,0 +1,274 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The children of a folder, sorted once and never changed, so the pages of a listing are slices of the same array:
+ * a deep page costs as much as the first one, and the pages do not overlap or miss children while the snapshot is
+ * used, even if the folder changes meanwhile.
+ *
+ * The children are sorted by the CMIS "orderBy" properties supported for navigation (name, creation and modification
+ * date, content stream length), then by name and path so the order is total. A listing is resumed with a page token,
+ * which holds the snapshot id and the position of the next child, and the sort key of the last child returned, to
+ * resume after it in a newer snapshot once the one the token was issued from is gone.
+ */
+public final class FileBridgeChildrenSnapshot {
+
+    /**
+     * The properties children can be sorted by.
+     */
+    public static final List<String> ORDERABLE_PROPERTIES = Arrays.asList(PropertyIds.NAME,
+            PropertyIds.CREATION_DATE, PropertyIds.LAST_MODIFICATION_DATE, PropertyIds.CONTENT_STREAM_LENGTH);
+
+    private static final String ASCENDING = "ASC";
+    private static final String DESCENDING = "DESC";
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long id;
+    private final String folderPath;
+    private final String orderBy;
+    private final long version;
+    private final Child[] children;
+    private final Comparator<Child> comparator;
+
+    /**
+     * Constructor. The children are sorted here.
+     * @param folder The folder.
+     * @param orderBy The normalized order, see {@link #normalizeOrderBy(String)}.
+     * @param version The version of the folder's children the snapshot was taken from.
+     * @param children The children.
+     */
+    FileBridgeChildrenSnapshot(File folder, String orderBy, long version, List<Child> children) {
+        this.id = SEQUENCE.incrementAndGet();
+        this.folderPath = folder.getPath();
+        this.orderBy = orderBy;
+        this.version = version;
+        this.comparator = createComparator(orderBy);
+        this.children = children.toArray(new Child[children.size()]);
+        Arrays.sort(this.children, comparator);
+    }
+
+    /**
+     * Function responsible for checking a CMIS "orderBy" value and writing it in a single form, for example
+     * "cmis:name ASC,cmis:lastModificationDate DESC".
+     * @param orderBy The comma separated query names, each optionally followed by ASC or DESC.
+     * @return The normalized order, or null if no order is given.
+     * @throws CmisInvalidArgumentException If a property cannot be sorted by.
+     */
+    public static String normalizeOrderBy(String orderBy) {
+        if (orderBy == null || orderBy.trim().length() == 0) { return null; }
+
+        StringBuilder normalized = new StringBuilder();
+        for (String sortSpec : orderBy.split(",")) {
+            String[] parts = sortSpec.trim().split("\\s+");
+            if (parts.length == 0 || parts.length > 2 || !ORDERABLE_PROPERTIES.contains(parts[0])) {
+                throw new CmisInvalidArgumentException("Unsupported order by: " + sortSpec.trim()
+                        + " (children can be sorted by " + ORDERABLE_PROPERTIES + ")");
+            }
+            String direction = (parts.length == 2 ? parts[1].toUpperCase() : ASCENDING);
+            if (!direction.equals(ASCENDING) && !direction.equals(DESCENDING)) {
+                throw new CmisInvalidArgumentException("Unsupported order by direction: " + parts[1]);
+            }
+            if (normalized.length() > 0) { normalized.append(','); }
+            normalized.append(parts[0]).append(' ').append(direction);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Function responsible for checking if sorting by an order needs the children's attributes, or only their names.
+     * @param orderBy The normalized order.
+     * @return True if the order uses the dates or the content stream length.
+     */
+    static boolean needsAttributes(String orderBy) {
+        for (String sortSpec : orderBy.split(",")) {
+            if (!sortSpec.startsWith(PropertyIds.NAME + " ")) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Function responsible for returning a page of the children, with their current attributes. The children
+     * removed since the snapshot was taken are left out.
+     * @param from The position of the first child.
+     * @param max The maximum number of children to return.
+     * @return The children in the page.
+     */
+    public List<FileBridgeEntry> list(int from, int max) {
+        int start = Math.min(Math.max(from, 0), children.length);
+        int end = (int) Math.min((long) start + max, children.length);
+
+        List<FileBridgeEntry> page = new ArrayList<FileBridgeEntry>(end - start);
+        for (int i = start; i < end; i++) {
+            FileBridgeEntry entry = FileBridgeEntry.read(children[i].file);
+            if (entry != null) { page.add(entry); }
+        }
+        return page;
+    }
+
+    /**
+     * Function responsible for returning the position a page token resumes the listing at.
+     * @param pageToken The page token, issued by this snapshot or by an older snapshot of the same folder and order.
+     * @return The position of the first child of the page.
+     */
+    public int getPosition(PageToken pageToken) {
+        if (pageToken.snapshotId == id) {
+            return Math.min(pageToken.position, children.length);
+        }
+
+        // the first child sorted after the last one returned
+        Child last = new Child(new File(folderPath, pageToken.path), pageToken.lastModified, pageToken.length);
+        int low = 0;
+        int high = children.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(children[middle], last) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Function responsible for returning the page token resuming the listing at a position.
+     * @param position The position of the first child of the next page, after at least one child.
+     * @return The page token.
+     */
+    public String getPageToken(int position) {
+        Child last = children[position - 1];
+        return new PageToken(id, position, last.lastModified, last.length, orderBy,
+                last.file.getPath().substring(folderPath.length() + 1)).encode();
+    }
+
+    public int size() {
+        return children.length;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Function responsible for creating the comparator of an order, with the name and the path as tie breakers.
+     * @param orderBy The normalized order.
+     * @return The comparator.
+     */
+    private static Comparator<Child> createComparator(String orderBy) {
+        final String[] properties = orderBy.split(",");
+        return new Comparator<Child>() {
+            @Override
+            public int compare(Child c1, Child c2) {
+                for (String sortSpec : properties) {
+                    int result;
+                    if (sortSpec.startsWith(PropertyIds.NAME + " ")) {
+                        result = c1.name.compareTo(c2.name);
+                    } else if (sortSpec.startsWith(PropertyIds.CONTENT_STREAM_LENGTH + " ")) {
+                        result = Long.compare(c1.length, c2.length);
+                    } else {
+                        result = Long.compare(c1.lastModified, c2.lastModified);
+                    }
+                    if (result != 0) {
+                        return (sortSpec.endsWith(" " + DESCENDING) ? -result : result);
+                    }
+                }
+                int result = c1.name.compareTo(c2.name);
+                return (result != 0 ? result : c1.file.getPath().compareTo(c2.file.getPath()));
+            }
+        };
+    }
+
+    /**
+     * A child of the folder, with the attributes it is sorted by.
+     */
+    static final class Child {
+        private final File file;
+        private final String name;
+        private final long lastModified;
+        private final long length;
+
+        /**
+         * Constructor.
+         * @param file The child's file or folder.
+         * @param lastModified The child's modification time.
+         * @param length The child's size, -1 for folders (they have no content stream).
+         */
+        Child(File file, long lastModified, long length) {
+            this.file = file;
+            this.name = file.getName();
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The position a listing resumes at, handed to the client as an opaque string.
+     */
+    public static final class PageToken {
+        private final long snapshotId;
+        private final int position;
+        private final long lastModified;
+        private final long length;
+        private final String orderBy;
+        private final String path;
+
+        private PageToken(long snapshotId, int position, long lastModified, long length, String orderBy,
+                          String path) {
+            this.snapshotId = snapshotId;
+            this.position = position;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.orderBy = orderBy;
+            this.path = path;
+        }
+
+        /**
+         * Function responsible for reading a page token.
+         * @param pageToken The page token, as returned to the client.
+         * @return The page token.
+         * @throws CmisInvalidArgumentException If the page token is not valid.
+         */
+        public static PageToken decode(String pageToken) {
+            try {
+                String[] fields = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8)
+                        .split("\n", 6);
+                if (fields.length == 6) {
+                    return new PageToken(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), normalizeOrderBy(fields[4]),
+                            fields[5]);
+                }
+            } catch (IllegalArgumentException ignored) { /* not a page token, see below */ }
+            throw new CmisInvalidArgumentException("Invalid page token!");
+        }
+
+        /**
+         * Function responsible for writing the page token as an opaque string.
+         * @return The page token.
+         */
+        public String encode() {
+            String fields = snapshotId + "\n" + position + "\n" + lastModified + "\n" + length + "\n" + orderBy
+                    + "\n" + path;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(fields.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String getOrderBy() {
+            return orderBy;
+        }
+    }
+}
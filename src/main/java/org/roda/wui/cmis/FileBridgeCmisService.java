@@ -113,9 +113,9 @@ public class FileBridgeCmisService extends AbstractCmisService implements CallCo
                                           IncludeRelationships includeRelationships, String renditionFilter,
                                           Boolean includePathSegment, BigInteger maxItems,
                                           BigInteger skipCount, ExtensionsData extension) {
-        return getRepository().getChildren(getCallContext(), folderId, filter,
+        return getRepository().getChildren(getCallContext(), folderId, filter, orderBy,
                 includeAllowableActions, includePathSegment, maxItems,
-                skipCount, this);
+                skipCount, getExtensionValue(extension, "pageToken"), this);
     }
 
     @Override
@@ -377,4 +377,20 @@ public class FileBridgeCmisService extends AbstractCmisService implements CallCo
         return getRepository().query(getCallContext(), statement,
                 includeAllowableActions, maxItems, skipCount, this);
     }
+
+    /**
+     * Function responsible for reading the value of a request extension, such as the page token of getChildren (the
+     * CMIS navigation service has no parameter for it).
+     * @param extension The request extensions, may be null.
+     * @param name The extension element name.
+     * @return The element value, or null if the request has no such element.
+     */
+    private String getExtensionValue(ExtensionsData extension, String name) {
+        if (extension == null || extension.getExtensions() == null) { return null; }
+
+        for (CmisExtensionElement element : extension.getExtensions()) {
+            if (name.equals(element.getName())) { return element.getValue(); }
+        }
+        return null;
+    }
 }
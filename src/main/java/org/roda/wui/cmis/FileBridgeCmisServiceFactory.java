@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -74,6 +75,9 @@ public class FileBridgeCmisServiceFactory extends AbstractServiceFactory {
 
     @Override
     public void destroy() {
+        for (FileBridgeRepository repository : repositoryManager.getRepositories()) {
+            repository.close();
+        }
         threadLocalService = null;
     }
 
@@ -105,6 +109,20 @@ public class FileBridgeCmisServiceFactory extends AbstractServiceFactory {
         return service;
     }
 
+    /**
+     * Returns the repository manager, for the diagnostic servlets.
+     */
+    public FileBridgeRepositoryManager getRepositoryManager() {
+        return repositoryManager;
+    }
+
+    /**
+     * Returns the user manager, for the diagnostic servlets.
+     */
+    public FileBridgeUserManager getUserManager() {
+        return userManager;
+    }
+
     // ---- helpers ----
 
     /**
@@ -159,19 +177,41 @@ public class FileBridgeCmisServiceFactory extends AbstractServiceFactory {
                     for (String user : split(parameters.get(key))) {
                         fsr.setUserReadOnly(user);
                     }
+                } else if (x > 0) {
+                    // repository option, handed to the repository when it is created
+                    continue;
                 } else {
                     // new repository
                     String root = parameters.get(key);
 
                     LOG.info("Adding repository '{}': {}", repositoryId, root);
 
-                    FileBridgeRepository fsr = new FileBridgeRepository(repositoryId, root, typeManager);
+                    FileBridgeRepository fsr = new FileBridgeRepository(repositoryId, root, typeManager,
+                            getRepositoryOptions(parameters, repositoryId));
                     repositoryManager.addRepository(fsr);
                 }
             }
         }
     }
 
+    /**
+     * Collects the options of a repository, i.e. all the "repository.&lt;id&gt;.&lt;option&gt;" keys
+     * except the read-only and read-write user lists.
+     */
+    private Map<String, String> getRepositoryOptions(Map<String, String> parameters, String repositoryId) {
+        String prefix = PREFIX_REPOSITORY + repositoryId + ".";
+
+        Map<String, String> options = new HashMap<String, String>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String key = parameter.getKey();
+            if (key.startsWith(prefix) && !key.endsWith(SUFFIX_READWRITE) && !key.endsWith(SUFFIX_READONLY)) {
+                options.put(key.substring(prefix.length()).trim(), parameter.getValue());
+            }
+        }
+
+        return options;
+    }
+
     /**
      * Splits a string by comma.
      */
@@ -0,0 +1,250 @@
+package org.roda.wui.cmis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A file or folder of the repository together with its basic attributes.
+ *
+ * The attributes are read once, with a single stat, when the entry is listed and every traversal (navigation,
+ * descendants, indexing) hands the entry down to the code building the object, instead of asking the file system
+ * again for each attribute.
+ */
+public class FileBridgeEntry {
+
+    /**
+     * Coarsest resolution, in milliseconds, of the modification times of the common file systems (FAT keeps them to
+     * two seconds, ext3 and HFS+ to the second).
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+    private final File file;
+    private final BasicFileAttributes attributes;
+
+    /**
+     * Constructor.
+     * @param file The file or folder.
+     * @param attributes The file or folder basic attributes.
+     */
+    public FileBridgeEntry(File file, BasicFileAttributes attributes) {
+        this.file = file;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Function responsible for reading the attributes of a file or folder.
+     * @param file The file or folder.
+     * @return The entry, or null if the file or folder does not exist.
+     */
+    public static FileBridgeEntry read(File file) {
+        if (file == null) { return null; }
+        try {
+            return new FileBridgeEntry(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Function responsible for listing the visible children of a folder, with their attributes. Hidden files, for
+     * example '.DS_Store', are skipped, as are the children removed while listing.
+     * @param folder The folder.
+     * @return The children, empty if the folder does not exist or can not be read.
+     */
+    public static List<FileBridgeEntry> list(File folder) {
+        List<FileBridgeEntry> children = new ArrayList<FileBridgeEntry>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+            for (Path path : stream) {
+                if (isHidden(path)) { continue; }
+                try {
+                    children.add(new FileBridgeEntry(path.toFile(), Files.readAttributes(path, BasicFileAttributes.class)));
+                } catch (IOException ignored) { /* removed while listing */ }
+            }
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        return children;
+    }
+
+    /**
+     * Function responsible for listing a page of the visible children of a folder, in the order {@link #list(File)}
+     * returns them. Only the children in the page have their attributes read, and the listing stops at the first
+     * child after the page unless all the children must be counted.
+     * @param folder The folder.
+     * @param skip The number of children to skip.
+     * @param max The maximum number of children in the page.
+     * @param countAll True to go on to the end of the folder to count all its children.
+     * @return The page, empty if the folder does not exist or can not be read.
+     */
+    public static Page list(File folder, int skip, int max, boolean countAll) {
+        Page page = new Page();
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath())) {
+            for (Path path : stream) {
+                if (isHidden(path)) { continue; }
+                count++;
+                if (count <= skip) { continue; }
+
+                if (page.entries.size() >= max) {
+                    page.hasMoreItems = true;
+                    if (countAll) { continue; }
+                    return page;
+                }
+
+                try {
+                    page.entries.add(new FileBridgeEntry(path.toFile(), Files.readAttributes(path, BasicFileAttributes.class)));
+                } catch (IOException ignored) { count--; /* removed while listing */ }
+            }
+        } catch (IOException e) {
+            return new Page();
+        }
+        page.numItems = count;
+        return page;
+    }
+
+    /**
+     * Method responsible for walking the visible file tree under a folder, reading the attributes of each entry
+     * once. Hidden files and folders are skipped.
+     * @param folder The folder, it is not visited itself.
+     * @param visitor The visitor.
+     */
+    public static void walk(File folder, final Visitor visitor) {
+        final Path start = folder.toPath();
+        try {
+            // symbolic links are followed, like java.io.File does
+            Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (dir.equals(start)) { return FileVisitResult.CONTINUE; }
+                    if (isHidden(dir) || !visitor.visit(new FileBridgeEntry(dir.toFile(), attrs), getDepth(dir))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!isHidden(file)) {
+                        visitor.visit(new FileBridgeEntry(file.toFile(), attrs), getDepth(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private int getDepth(Path path) {
+                    return start.relativize(path).getNameCount();
+                }
+            });
+        } catch (IOException ignored) { /* the folder can not be read */ }
+    }
+
+    /**
+     * Function responsible for checking if a file or folder is hidden. Like {@link File#isHidden()} on UNIX, the
+     * names starting with a dot are hidden, without asking the file system.
+     */
+    private static boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    // --- getters ---
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getName() {
+        return file.getName();
+    }
+
+    public boolean isDirectory() {
+        return attributes.isDirectory();
+    }
+
+    public boolean isFile() {
+        return attributes.isRegularFile();
+    }
+
+    public long length() {
+        return attributes.size();
+    }
+
+    public long lastModified() {
+        return attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Function responsible for returning the modification time at the file system's resolution, the version of a
+     * folder's children. File.lastModified() is truncated to the second by some JDK 8 builds (JDK-8177809), so two
+     * changes within the same second would get the same version.
+     * @return The modification time, in nanoseconds.
+     */
+    public long getVersion() {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Function responsible for telling if the entry was modified so recently that a later change could still leave
+     * its modification time unchanged, on the file systems that keep it to the second or less. The state read from
+     * such a folder must not be cached against its version.
+     * @return True if the entry was modified within the file systems' modification time resolution.
+     */
+    public boolean isRecentlyModified() {
+        return System.currentTimeMillis() - lastModified() < MODIFICATION_TIME_RESOLUTION;
+    }
+
+    /**
+     * A page of the children of a folder.
+     */
+    public static class Page {
+        private final List<FileBridgeEntry> entries = new ArrayList<FileBridgeEntry>();
+        private boolean hasMoreItems = false;
+        private long numItems = -1;
+
+        public List<FileBridgeEntry> getEntries() {
+            return entries;
+        }
+
+        public boolean hasMoreItems() {
+            return hasMoreItems;
+        }
+
+        /**
+         * Function responsible for returning the number of children of the folder.
+         * @return The number of children, or -1 if the listing stopped before the end of the folder.
+         */
+        public long getNumItems() {
+            return numItems;
+        }
+    }
+
+    /**
+     * Visitor of the entries of a file tree.
+     */
+    public interface Visitor {
+
+        /**
+         * Function called for each visible file or folder.
+         * @param entry The file or folder.
+         * @param depth The depth of the entry, 1 for the children of the walked folder.
+         * @return False to skip the children of a folder. Ignored for files.
+         */
+        boolean visit(FileBridgeEntry entry, int depth);
+    }
+}
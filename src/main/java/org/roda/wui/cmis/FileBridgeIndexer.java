@@ -0,0 +1,693 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.roda.wui.cmis.database.AipFingerprint;
+import org.roda.wui.cmis.database.Database;
+import org.roda.wui.cmis.enums.FileBridgeCmisTypeId;
+import org.roda.wui.cmis.enums.IndexState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains the repository's metadata index.
+ *
+ * This is the only component allowed to write object rows to the database: the CMIS read operations build their
+ * results without touching the index, and every index change (the initial crawl or an object created, moved or
+ * renamed through CMIS) goes through this class.
+ */
+public class FileBridgeIndexer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileBridgeIndexer.class);
+
+    private static final String AIP_JSON = "aip.json";
+    private static final String REPRESENTATIONS = "representations";
+    private static final String METADATA = "metadata";
+
+    /**
+     * Default number of AIPs crawled in parallel.
+     */
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Interval, in milliseconds, between indexing progress reports.
+     */
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    /**
+     * Time, in milliseconds, waited for the indexing thread to end when the indexer is stopped.
+     */
+    private static final long STOP_TIMEOUT = 5000;
+
+    private final FileBridgeRepository repository;
+    private final Database database;
+
+    /**
+     * State of the index.
+     */
+    private volatile IndexState state = IndexState.NOT_READY;
+
+    /**
+     * Thread running the background indexing, null if it is not running.
+     */
+    private Thread indexingThread = null;
+
+    /**
+     * Pool crawling the AIPs, null if no crawl is running.
+     */
+    private volatile ForkJoinPool crawlPool = null;
+
+    /**
+     * True once the indexer is stopped.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Number of AIPs crawled in parallel.
+     */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /**
+     * Lock serializing the index runs: the repository crawl and the re-indexing of the AIPs changed meanwhile.
+     */
+    private final Object indexLock = new Object();
+
+    // --- counters ---
+    private final AtomicLong indexRuns = new AtomicLong();
+    private final AtomicLong aipsIndexed = new AtomicLong();
+    private final AtomicLong aipsSkipped = new AtomicLong();
+    private final AtomicLong aipsUnchanged = new AtomicLong();
+    private final AtomicLong aipsRemoved = new AtomicLong();
+    private final AtomicLong foldersIndexed = new AtomicLong();
+    private final AtomicLong documentsIndexed = new AtomicLong();
+    private final AtomicLong indexErrors = new AtomicLong();
+    private final AtomicLong lastIndexDuration = new AtomicLong();
+
+    public FileBridgeIndexer(FileBridgeRepository repository, Database database) {
+        this.repository = repository;
+        this.database = database;
+    }
+
+    /**
+     * Method responsible for reconciling the index with the repository contents in a background thread, so the
+     * repository serves requests while it is crawled. Does nothing if the indexing is already running.
+     */
+    public synchronized void startIndexing() {
+        if (stopped || (indexingThread != null && indexingThread.isAlive())) { return; }
+
+        indexingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                indexRepository();
+            }
+        }, "roda-cmis-indexer-" + repository.getRepositoryId());
+        indexingThread.setDaemon(true);
+        indexingThread.start();
+    }
+
+    /**
+     * Method responsible for stopping the background indexing: the crawl pool is shut down and the indexing thread
+     * interrupted, and the thread is given some time to end, so the database can be closed after it.
+     */
+    public void stop() {
+        stopped = true;
+
+        Thread thread;
+        synchronized (this) {
+            thread = indexingThread;
+            indexingThread = null;
+        }
+        ForkJoinPool pool = crawlPool;
+        if (pool != null) { pool.shutdownNow(); }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Method responsible for reconciling the persistent index with the repository contents. Only the AIPs whose
+     * "aip.json" fingerprint changed since they were indexed (or that were never indexed) are crawled, and the
+     * AIPs that no longer exist are removed from the index.
+     *
+     * The index state is INDEXING while it runs, then READY, or DEGRADED if the crawl failed or skipped objects.
+     */
+    public void indexRepository() {
+        synchronized (indexLock) {
+            state = IndexState.INDEXING;
+            long errors = indexErrors.get();
+            try {
+                crawlRepository();
+                if (stopped) { return; }
+                state = (indexErrors.get() == errors ? IndexState.READY : IndexState.DEGRADED);
+            } catch (RuntimeException e) {
+                state = IndexState.DEGRADED;
+                LOG.error("Could not index repository '" + repository.getRepositoryId() + "'", e);
+                return;
+            }
+            writeMetadataSnapshot();
+        }
+    }
+
+    /**
+     * Method responsible for writing the repository's metadata snapshot after the repository was indexed. A failure
+     * only costs the next startup the parsing of the AIPs metadata files, so it does not change the index state.
+     */
+    private void writeMetadataSnapshot() {
+        long start = System.currentTimeMillis();
+        try {
+            repository.writeMetadataSnapshot();
+            LOG.debug("Repository '{}' metadata snapshot checked in {} ms", repository.getRepositoryId(),
+                    System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not write the metadata snapshot of repository '{}': {}", repository.getRepositoryId(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Method responsible for re-indexing a batch of AIPs that were added, changed or removed while the repository
+     * is served, without crawling the rest of the repository. The AIPs that still exist are crawled again and the
+     * ones that no longer exist are removed from the index. The index state is not changed, unless the batch fails.
+     * @param aipIds The AIP ids.
+     */
+    public void reindexAips(Collection<String> aipIds) {
+        synchronized (indexLock) {
+            long start = System.currentTimeMillis();
+            long errors = indexErrors.get();
+            Map<String, AipFingerprint> indexedAips = database.getAipFingerprints();
+
+            for (String aipId : aipIds) {
+                File aip = new File(repository.getRootDirectory(), aipId);
+                try {
+                    if (aip.isDirectory()) {
+                        CrawledAip crawledAip = crawlAip(aip, indexedAips.containsKey(aipId));
+                        crawledAip.fingerprint = new AipFingerprint(aipId, new File(aip, AIP_JSON));
+                        writeAip(crawledAip);
+                    } else if (indexedAips.containsKey(aipId)) {
+                        database.deleteAip(aipId);
+                        repository.unloadAipMetadata(aipId);
+                        repository.getNavigationTree().refreshAip(aipId);
+                        aipsRemoved.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    indexErrors.incrementAndGet();
+                    LOG.warn("Could not index AIP '{}': {}", aipId, e.getMessage());
+                }
+            }
+            database.flush();
+
+            if (indexErrors.get() != errors && state == IndexState.READY) { state = IndexState.DEGRADED; }
+            LOG.info("Repository '{}' re-indexed {} changed AIPs in {} ms", repository.getRepositoryId(),
+                    aipIds.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Method responsible for crawling the changed AIPs and removing the deleted ones from the index. The AIPs are
+     * crawled in parallel, one task per AIP on a pool of the configured size, and each crawled AIP is handed to a
+     * single writer thread that writes it to the database, so crawling and writing overlap.
+     */
+    private void crawlRepository() {
+        long start = System.currentTimeMillis();
+        indexRuns.incrementAndGet();
+
+        // the counters add up over the runs and the re-indexed batches, the run reports its own share of them
+        long aipsIndexedBefore = aipsIndexed.get();
+        long aipsSkippedBefore = aipsSkipped.get();
+        long aipsUnchangedBefore = aipsUnchanged.get();
+        long aipsRemovedBefore = aipsRemoved.get();
+        long foldersIndexedBefore = foldersIndexed.get();
+        long documentsIndexedBefore = documentsIndexed.get();
+        long indexErrorsBefore = indexErrors.get();
+
+        Map<String, AipFingerprint> indexedAips = new HashMap<String, AipFingerprint>(database.getAipFingerprints());
+
+        final BlockingQueue<CrawledAip> crawledAips = new ArrayBlockingQueue<CrawledAip>(parallelism * 2);
+        IndexWriter writer = new IndexWriter(crawledAips, start, aipsIndexedBefore);
+        writer.start();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        crawlPool = pool;
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        try {
+            for (FileBridgeEntry aipEntry : FileBridgeEntry.list(repository.getRootDirectory())) {
+                if (stopped) { break; }
+                if (!aipEntry.isDirectory()) { continue; }
+                final File aip = aipEntry.getFile();
+
+                final AipFingerprint fingerprint = new AipFingerprint(aip.getName(), new File(aip, AIP_JSON));
+                final AipFingerprint indexedFingerprint = indexedAips.remove(aip.getName());
+                if (fingerprint.matches(indexedFingerprint)) {
+                    aipsUnchanged.incrementAndGet();
+                    continue;
+                }
+
+                tasks.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        // a changed AIP has its outdated objects dropped before it is written again
+                        CrawledAip crawledAip = crawlAip(aip, indexedFingerprint != null);
+                        crawledAip.fingerprint = fingerprint;
+                        try {
+                            crawledAips.put(crawledAip);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }));
+            }
+
+            for (ForkJoinTask<?> task : tasks) {
+                if (stopped) { break; }
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    indexErrors.incrementAndGet();
+                    LOG.warn("Could not index an AIP: {}", e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+            crawlPool = null;
+            writer.finish();
+        }
+
+        if (stopped) {
+            LOG.info("Indexing of repository '{}' stopped", repository.getRepositoryId());
+            return;
+        }
+
+        // AIPs removed from the repository
+        for (String aipId : indexedAips.keySet()) {
+            database.deleteAip(aipId);
+            repository.unloadAipMetadata(aipId);
+            repository.getNavigationTree().refreshAip(aipId);
+            aipsRemoved.incrementAndGet();
+        }
+        database.flush();
+
+        lastIndexDuration.set(System.currentTimeMillis() - start);
+        long runAipsIndexed = aipsIndexed.get() - aipsIndexedBefore;
+        LOG.info("Repository '{}' indexed in {} ms ({} AIPs/sec, {} threads): {} AIPs ({} skipped, {} unchanged, "
+                        + "{} removed), {} folders, {} documents, {} errors", repository.getRepositoryId(),
+                lastIndexDuration.get(), getAipsPerSecond(runAipsIndexed, lastIndexDuration.get()), parallelism,
+                runAipsIndexed, aipsSkipped.get() - aipsSkippedBefore, aipsUnchanged.get() - aipsUnchangedBefore,
+                aipsRemoved.get() - aipsRemovedBefore, foldersIndexed.get() - foldersIndexedBefore,
+                documentsIndexed.get() - documentsIndexedBefore, indexErrors.get() - indexErrorsBefore);
+    }
+
+    /**
+     * Method responsible for indexing all the objects inside an AIP's "representations" folder.
+     * @param aip The AIP folder.
+     */
+    public void indexAip(File aip) {
+        writeAip(crawlAip(aip, false));
+    }
+
+    /**
+     * Function responsible for crawling an AIP: its metadata is loaded and the rows of all the objects inside its
+     * "representations" folder are compiled. Nothing is written to the database.
+     * @param aip The AIP folder.
+     * @param replace True if the AIP's objects already in the index must be dropped before writing the new rows.
+     * @return The crawled AIP, without rows if the AIP cannot be read through CMIS.
+     */
+    private CrawledAip crawlAip(File aip, boolean replace) {
+        CrawledAip crawledAip = new CrawledAip(aip.getName(), replace);
+
+        File aipJson = new File(aip, AIP_JSON);
+        if (!aipJson.isFile() || !FileBridgeUtils.canReadAIP(aipJson.getPath())) {
+            crawledAip.skipped = true;
+            return crawledAip;
+        }
+
+        repository.loadAipMetadata(aip.getName(), aipJson);
+
+        File representations = new File(aip, REPRESENTATIONS);
+        if (representations.isDirectory() && !aip.getName().equalsIgnoreCase(METADATA)) {
+            crawlRepresentations(representations, crawledAip);
+        }
+        return crawledAip;
+    }
+
+    /**
+     * Method responsible for writing a crawled AIP to the database, and walking it again in the navigation tree.
+     * @param crawledAip The crawled AIP.
+     */
+    private void writeAip(CrawledAip crawledAip) {
+        if (crawledAip.replace) {
+            database.deleteAip(crawledAip.aipId);
+        }
+        if (crawledAip.skipped) {
+            aipsSkipped.incrementAndGet();
+        } else {
+            for (int i = 0; i < crawledAip.rows.size(); i++) {
+                database.queueObject(crawledAip.tables.get(i), crawledAip.rows.get(i));
+            }
+            foldersIndexed.addAndGet(crawledAip.folders);
+            documentsIndexed.addAndGet(crawledAip.documents);
+            indexErrors.addAndGet(crawledAip.errors);
+            aipsIndexed.incrementAndGet();
+        }
+        if (crawledAip.fingerprint != null) {
+            database.queueAipFingerprint(crawledAip.fingerprint);
+        }
+        repository.getNavigationTree().refreshAip(crawledAip.aipId);
+    }
+
+    /**
+     * Method responsible for (re-)indexing a single object, for example after it was created or changed through
+     * CMIS. Objects outside of a readable AIP's representations are ignored.
+     * @param file The object's file or folder.
+     */
+    public void indexObject(File file) {
+        if (file == null || !isIndexable(file) || !canReadAip(file)) { return; }
+
+        writeObject(FileBridgeEntry.read(file));
+        if (file.isDirectory()) {
+            // the objects inside a moved or renamed folder
+            FileBridgeEntry.walk(file, new FileBridgeEntry.Visitor() {
+                @Override
+                public boolean visit(FileBridgeEntry entry, int depth) {
+                    if (entry.getName().equalsIgnoreCase(METADATA)) { return false; }
+                    writeObject(entry);
+                    return true;
+                }
+            });
+        }
+        database.flush();
+    }
+
+    /**
+     * Method responsible for removing an object from the index, for example after it was deleted, moved or renamed
+     * through CMIS: its rows and, for a folder, the rows of all the objects inside it.
+     * @param file The object's former file or folder.
+     */
+    public void removeObject(File file) {
+        if (file == null) { return; }
+
+        String rootPath = repository.getRootDirectory().getPath();
+        if (!file.getPath().startsWith(rootPath + File.separator)) { return; }
+
+        database.deleteObject(file.getPath().substring(rootPath.length()).replace(File.separatorChar, '/'));
+    }
+
+    /**
+     * Method responsible for crawling the file tree of an AIP's "representations" folder, reading the attributes of
+     * each object once. The AIP's read permission is checked once by the caller, and the object's depth replaces
+     * splitting its path to check if it is indexable.
+     * @param representations The AIP's "representations" folder.
+     * @param crawledAip The crawled AIP receiving the rows.
+     */
+    private void crawlRepresentations(File representations, final CrawledAip crawledAip) {
+        FileBridgeEntry.walk(representations, new FileBridgeEntry.Visitor() {
+            @Override
+            public boolean visit(FileBridgeEntry entry, int depth) {
+                // the objects inside metadata folders are not indexed
+                if (entry.getName().equalsIgnoreCase(METADATA)) { return false; }
+
+                // the depth relative to the repository's root folder: <aip>/representations/<entry>
+                int pathLength = depth + 2;
+                if (pathLength >= 4 && !(entry.isDirectory() && pathLength < 5)) {
+                    compileObject(entry, crawledAip);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Function responsible for checking if an object belongs in the index. Only the documents and the folders
+     * inside an AIP's "representations" folder are indexed (representation folders excluded).
+     * @param file The object's file or folder.
+     * @return True if the object is to be indexed. False otherwise.
+     */
+    private boolean isIndexable(File file) {
+        String[] pathElements = getRelativePathElements(file);
+        if (pathElements == null || pathElements.length < 4 || !pathElements[1].equals(REPRESENTATIONS)) {
+            return false;
+        }
+        for (String pathElement : pathElements) {
+            if (pathElement.equalsIgnoreCase(METADATA)) { return false; }
+        }
+        return !(file.isDirectory() && pathElements.length < 5);
+    }
+
+    /**
+     * Function responsible for checking if the AIP holding an object can be read through CMIS.
+     * @param file The object's file or folder.
+     * @return True if the AIP can be read. False otherwise.
+     */
+    private boolean canReadAip(File file) {
+        String[] pathElements = getRelativePathElements(file);
+        if (pathElements == null) { return false; }
+
+        File aipJson = new File(new File(repository.getRootDirectory(), pathElements[0]), AIP_JSON);
+        return aipJson.isFile() && FileBridgeUtils.canReadAIP(aipJson.getPath());
+    }
+
+    /**
+     * Function responsible for splitting the path of an object, relative to the repository's root folder.
+     * @param file The object's file or folder.
+     * @return The path elements, or null if the object is outside the repository.
+     */
+    private String[] getRelativePathElements(File file) {
+        String rootPath = repository.getRootDirectory().getPath() + File.separator;
+        if (!file.getPath().startsWith(rootPath)) { return null; }
+
+        return file.getPath().substring(rootPath.length()).split("/");
+    }
+
+    /**
+     * Method responsible for queueing an object's row in the database.
+     * @param entry The object's file or folder, null if it no longer exists.
+     */
+    private void writeObject(FileBridgeEntry entry) {
+        if (entry == null) { return; }
+
+        CrawledAip crawledAip = new CrawledAip(null, false);
+        compileObject(entry, crawledAip);
+        for (int i = 0; i < crawledAip.rows.size(); i++) {
+            database.queueObject(crawledAip.tables.get(i), crawledAip.rows.get(i));
+        }
+        foldersIndexed.addAndGet(crawledAip.folders);
+        documentsIndexed.addAndGet(crawledAip.documents);
+        indexErrors.addAndGet(crawledAip.errors);
+    }
+
+    /**
+     * Method responsible for compiling an object's row, and the rows of its ancestors, into a crawled AIP.
+     * @param entry The object's file or folder.
+     * @param crawledAip The crawled AIP receiving the rows.
+     */
+    private void compileObject(FileBridgeEntry entry, CrawledAip crawledAip) {
+        File file = entry.getFile();
+        try {
+            Map<String, String> row = repository.compileIndexRow(entry);
+            if (entry.isDirectory()) {
+                crawledAip.add(BaseTypeId.CMIS_FOLDER.value(), row);
+                crawledAip.folders++;
+            } else {
+                crawledAip.add(FileBridgeCmisTypeId.CMIS_RODA_DOCUMENT.value(), row);
+                crawledAip.documents++;
+            }
+
+            crawledAip.addObjectPath(row.get(PropertyIds.OBJECT_ID), row.get(PropertyIds.PATH));
+
+            // the object's ancestors, for the IN_TREE queries
+            for (Map.Entry<String, String> ancestor : repository.compileAncestors(file).entrySet()) {
+                Map<String, String> ancestorRow = new HashMap<String, String>();
+                ancestorRow.put(Database.ANCESTOR_ID, ancestor.getKey());
+                ancestorRow.put(Database.ANCESTOR_OBJECT_ID, row.get(PropertyIds.OBJECT_ID));
+                crawledAip.add(Database.ANCESTOR_TABLE, ancestorRow);
+                crawledAip.addObjectPath(ancestor.getKey(), ancestor.getValue());
+            }
+        } catch (CmisBaseException e) {
+            crawledAip.errors++;
+            LOG.warn("Could not index '{}': {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Function responsible for computing an indexing rate.
+     */
+    private static long getAipsPerSecond(long aips, long millis) {
+        return (millis > 0 ? aips * 1000 / millis : aips);
+    }
+
+    /**
+     * The rows compiled while crawling an AIP, waiting to be written to the database.
+     */
+    private static class CrawledAip {
+        private final String aipId;
+        private final boolean replace;
+        private final List<String> tables = new ArrayList<String>();
+        private final List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+        private final Set<String> objectPaths = new HashSet<String>();
+        private AipFingerprint fingerprint = null;
+        private boolean skipped = false;
+        private long folders = 0;
+        private long documents = 0;
+        private long errors = 0;
+
+        CrawledAip(String aipId, boolean replace) {
+            this.aipId = aipId;
+            this.replace = replace;
+        }
+
+        void add(String table, Map<String, String> row) {
+            tables.add(table);
+            rows.add(row);
+        }
+
+        /**
+         * Method responsible for adding the path of an object id, once per crawl, so the id is resolved after a
+         * restart.
+         */
+        void addObjectPath(String objectId, String path) {
+            if (!objectPaths.add(objectId)) { return; }
+
+            Map<String, String> row = new HashMap<String, String>();
+            row.put(PropertyIds.OBJECT_ID, objectId);
+            row.put(PropertyIds.PATH, path);
+            add(Database.OBJECT_PATH_TABLE, row);
+        }
+    }
+
+    /**
+     * Thread writing the crawled AIPs to the database, in the order they are crawled, and logging the indexing
+     * progress.
+     */
+    private class IndexWriter extends Thread {
+        private final BlockingQueue<CrawledAip> crawledAips;
+        private final long start;
+        private final long aipsIndexedBefore;
+        private volatile boolean finished = false;
+        private long lastProgress;
+
+        /**
+         * @param start The start time of the run.
+         * @param aipsIndexedBefore The AIPs indexed before the run, left out of its progress.
+         */
+        IndexWriter(BlockingQueue<CrawledAip> crawledAips, long start, long aipsIndexedBefore) {
+            super("roda-cmis-index-writer-" + repository.getRepositoryId());
+            this.crawledAips = crawledAips;
+            this.start = start;
+            this.aipsIndexedBefore = aipsIndexedBefore;
+            this.lastProgress = start;
+        }
+
+        @Override
+        public void run() {
+            while (!stopped && (!finished || !crawledAips.isEmpty())) {
+                CrawledAip crawledAip;
+                try {
+                    crawledAip = crawledAips.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (crawledAip == null) { continue; }
+
+                try {
+                    writeAip(crawledAip);
+                } catch (RuntimeException e) {
+                    indexErrors.incrementAndGet();
+                    LOG.warn("Could not index AIP '{}': {}", crawledAip.aipId, e.getMessage());
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_INTERVAL) {
+                    lastProgress = now;
+                    long runAipsIndexed = aipsIndexed.get() - aipsIndexedBefore;
+                    LOG.info("Indexing repository '{}': {} AIPs indexed ({} AIPs/sec)", repository.getRepositoryId(),
+                            runAipsIndexed, getAipsPerSecond(runAipsIndexed, now - start));
+                }
+            }
+        }
+
+        /**
+         * Method responsible for waiting until all the crawled AIPs are written.
+         */
+        void finish() {
+            finished = true;
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // --- getters ---
+
+    public long getIndexRuns() {
+        return indexRuns.get();
+    }
+
+    public long getAipsIndexed() {
+        return aipsIndexed.get();
+    }
+
+    public long getAipsSkipped() {
+        return aipsSkipped.get();
+    }
+
+    public long getAipsUnchanged() {
+        return aipsUnchanged.get();
+    }
+
+    public long getAipsRemoved() {
+        return aipsRemoved.get();
+    }
+
+    public long getFoldersIndexed() {
+        return foldersIndexed.get();
+    }
+
+    public long getDocumentsIndexed() {
+        return documentsIndexed.get();
+    }
+
+    public long getIndexErrors() {
+        return indexErrors.get();
+    }
+
+    public long getLastIndexDuration() {
+        return lastIndexDuration.get();
+    }
+
+    public IndexState getState() {
+        return state;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // --- setters ---
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+}
@@ -0,0 +1,570 @@
+package org.roda.wui.cmis;
+
+import org.roda.wui.cmis.metadata.DublinCore20021212Metadata;
+import org.roda.wui.cmis.metadata.Ead2002Metadata;
+import org.roda.wui.cmis.metadata.KeyValueMetadata;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming (StAX) parsers of the descriptive metadata files of an AIP: EAD 2002, Dublin Core Simple 2002-12-12 and
+ * Key-value.
+ *
+ * Each file is read in a single pass, keeping only the open elements and the first two child nodes of each, and the
+ * values are taken exactly as the former DOM parsers took them: names are matched with their prefix, a value is the
+ * first child node of its element (the text up to its first child element), some values are the first child node of
+ * the element's second child node, and a file whose structure made the DOM navigation fail leaves the metadata empty.
+ */
+final class FileBridgeMetadataParser {
+
+    /**
+     * Shared StAX factory. Once configured, the factory can create readers from several threads.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    // --- node kinds ---
+    private static final int TEXT = 1;
+    private static final int CDATA = 2;
+    private static final int COMMENT = 3;
+    private static final int PROCESSING_INSTRUCTION = 4;
+    private static final int ELEMENT = 5;
+
+    // --- EAD 2002 element roles ---
+    private static final int ARCHDESC = 1;
+    private static final int ARCHDESC_CHILD = 2;
+    private static final int DID = 4;
+    private static final int DID_CHILD = 8;
+
+    private FileBridgeMetadataParser() {
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // names are matched with their prefix and CDATA sections are separate nodes, as in the DOM
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    /**
+     * Method responsible for parsing an XML metadata file in the EAD2002 format.
+     * @param file The file to be parsed.
+     * @return The EAD 2002 metadata, empty if the file cannot be parsed.
+     */
+    static Ead2002Metadata parseEAD2002(File file) {
+        Ead2002Handler handler = new Ead2002Handler();
+        if (parse(file, handler)) { return handler.metadata; }
+
+        System.err.println("Error reading XML EAD 2002 file '" + file.getPath() + "'");
+        return new Ead2002Metadata();
+    }
+
+    /**
+     * Method responsible for parsing an XML metadata file in the Dublin Core Simple 2002-12-12 format.
+     * @param file The file to be parsed.
+     * @return The Dublin Core metadata, empty if the file cannot be parsed.
+     */
+    static DublinCore20021212Metadata parseDublinCoreSimple20021212(File file) {
+        DublinCoreHandler handler = new DublinCoreHandler();
+        if (parse(file, handler)) { return handler.metadata; }
+
+        System.out.println("Error reading XML Dublin Core Simple 2002-12-12 file '" + file.getPath() + "'");
+        return new DublinCore20021212Metadata();
+    }
+
+    /**
+     * Method responsible for parsing an XML metadata file in the Key-value format.
+     * @param file The file to be parsed.
+     * @return The Key-value metadata, empty if the file cannot be parsed.
+     */
+    static KeyValueMetadata parseKeyValue(File file) {
+        KeyValueHandler handler = new KeyValueHandler();
+        if (parse(file, handler)) { return handler.metadata; }
+
+        System.out.println("Error reading XML Key-value file '" + file.getPath() + "'");
+        return new KeyValueMetadata();
+    }
+
+    /**
+     * Function responsible for streaming a file through a handler.
+     * @param file The file to be parsed.
+     * @param handler The handler extracting the values.
+     * @return False if the file does not have the structure the handler expects. True otherwise, including when the
+     * file cannot be read, in which case the handler's metadata is left empty.
+     */
+    private static boolean parse(File file, Handler handler) {
+        XmlNode node = new XmlNode(null, "#document", 0);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(file.toURI().toString(), in);
+            try {
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            node.endText(handler);
+                            node = new XmlNode(node, reader.getLocalName(), node.childCount++);
+                            handler.start(node, reader);
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            node.endText(handler);
+                            handler.end(node);
+                            node.parent.setChild(node.index, ELEMENT, node.name, null, node.getFirstValue());
+                            node = node.parent;
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.SPACE:
+                            node.appendText(reader);
+                            break;
+                        case XMLStreamConstants.CDATA:
+                            node.endText(handler);
+                            node.setChild(node.childCount++, CDATA, null, reader.getText(), null);
+                            break;
+                        case XMLStreamConstants.COMMENT:
+                            node.endText(handler);
+                            node.setChild(node.childCount++, COMMENT, null, reader.getText(), null);
+                            break;
+                        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                            node.endText(handler);
+                            node.setChild(node.childCount++, PROCESSING_INSTRUCTION, null, reader.getPIData(), null);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            handler.endDocument();
+        } catch (IOException | XMLStreamException e) {
+            e.printStackTrace();
+            handler.clear();
+        } catch (MissingNodeException e) {
+            return false;
+        } catch (RuntimeException e) {
+            // some StAX implementations report the errors found while finishing a token lazily
+            if (!(e.getCause() instanceof XMLStreamException)) {
+                throw e;
+            }
+            e.printStackTrace();
+            handler.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Function responsible for cleaning a value: its line breaks are removed and it is trimmed.
+     * @param value The value.
+     * @return The clean value.
+     * @throws MissingNodeException If the value's node does not exist.
+     */
+    private static String clean(String value) {
+        if (value == null) { throw new MissingNodeException(); }
+        return (value.indexOf('\n') < 0 ? value : value.replace("\n", "")).trim();
+    }
+
+    /**
+     * Function responsible for returning an attribute's name, with its prefix.
+     */
+    private static String getAttributeName(XMLStreamReader reader, int index) {
+        String prefix = reader.getAttributePrefix(index);
+        String name = reader.getAttributeLocalName(index);
+        return (prefix == null || prefix.length() == 0 ? name : prefix + ":" + name);
+    }
+
+    /**
+     * An open element, with the first two of its child nodes. Adjacent text is a single text node, as in a normalized
+     * DOM.
+     */
+    private static final class XmlNode {
+        private final XmlNode parent;
+        private final String name;
+        private final int index;
+        private int role = 0;
+        private int childCount = 0;
+
+        // the text node being read
+        private boolean inText = false;
+        private boolean keepTexts = false;
+        private StringBuilder text = null;
+
+        // the first two child nodes: kind, name, value and, for elements, the value of their first child node
+        private final int[] childKinds = new int[2];
+        private final String[] childNames = new String[2];
+        private final String[] childValues = new String[2];
+        private final String[] childFirstValues = new String[2];
+
+        // the values of the attributes the handlers look for
+        private String attribute = null;
+        private boolean firstAttributeFlag = false;
+        private boolean secondAttributeFlag = false;
+
+        XmlNode(XmlNode parent, String name, int index) {
+            this.parent = parent;
+            this.name = name;
+            this.index = index;
+        }
+
+        void appendText(XMLStreamReader reader) {
+            if (!inText) {
+                inText = true;
+                text = (childCount < 2 || keepTexts ? new StringBuilder() : null);
+                childCount++;
+            }
+            if (text != null) { text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength()); }
+        }
+
+        void endText(Handler handler) {
+            if (!inText) { return; }
+            inText = false;
+            if (text == null) { return; }
+
+            String value = text.toString();
+            text = null;
+            setChild(childCount - 1, TEXT, null, value, null);
+            if (keepTexts) { handler.text(this, value); }
+        }
+
+        void setChild(int childIndex, int kind, String childName, String value, String firstValue) {
+            if (childIndex >= 2) { return; }
+            childKinds[childIndex] = kind;
+            childNames[childIndex] = childName;
+            childValues[childIndex] = value;
+            childFirstValues[childIndex] = firstValue;
+        }
+
+        /**
+         * Function responsible for returning the value of the first child node, null if it is an element or there
+         * are no child nodes.
+         */
+        String getFirstValue() {
+            return (childCount > 0 ? childValues[0] : null);
+        }
+
+        /**
+         * Function responsible for returning the value of the first child node of the second child node, null if
+         * there is no such node.
+         */
+        String getSecondChildFirstValue() {
+            return (childCount > 1 ? childFirstValues[1] : null);
+        }
+
+        boolean isChildElement(int childIndex, String childName) {
+            return childCount > childIndex && childKinds[childIndex] == ELEMENT && childNames[childIndex].equals(childName);
+        }
+    }
+
+    /**
+     * Thrown when a value's node does not exist, where the DOM navigation failed.
+     */
+    private static final class MissingNodeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MissingNodeException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Extracts the values of a metadata format from the stream of nodes.
+     */
+    private abstract static class Handler {
+        void start(XmlNode node, XMLStreamReader reader) {
+        }
+
+        void end(XmlNode node) {
+        }
+
+        void text(XmlNode node, String value) {
+        }
+
+        void endDocument() {
+        }
+
+        /**
+         * Method responsible for dropping the values extracted, when the file cannot be read.
+         */
+        abstract void clear();
+    }
+
+    /**
+     * EAD 2002: the "archdesc" element, its second child node (the "did" element) and their children.
+     */
+    private static final class Ead2002Handler extends Handler {
+        private Ead2002Metadata metadata = new Ead2002Metadata();
+        private boolean archdescFound = false;
+
+        @Override
+        void start(XmlNode node, XMLStreamReader reader) {
+            XmlNode parent = node.parent;
+            if (!archdescFound && node.name.equals("archdesc")) {
+                archdescFound = true;
+                node.role = ARCHDESC;
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    if (getAttributeName(reader, i).equals("level")) {
+                        metadata.setArchiveDescription(clean(reader.getAttributeValue(i)));
+                    }
+                }
+            }
+
+            if ((parent.role & ARCHDESC) != 0) {
+                node.role |= ARCHDESC_CHILD;
+                if (node.index == 1) { node.role |= DID; }
+                if (node.name.equals("odd")) {
+                    node.firstAttributeFlag = hasAttributeValue(reader, "levelOfDetail");
+                    node.secondAttributeFlag = hasAttributeValue(reader, "statusDescription");
+                }
+            }
+
+            if ((parent.role & DID) != 0) {
+                node.role |= DID_CHILD;
+                if (node.name.equals("unitid") || node.name.equals("unitdate")) {
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        String attributeName = getAttributeName(reader, i);
+                        String value = clean(reader.getAttributeValue(i));
+                        if (node.name.equals("unitid") && attributeName.equals("countrycode")) {
+                            metadata.setCountryCode(value);
+                        } else if (node.name.equals("unitid") && attributeName.equals("repositorycode")) {
+                            metadata.setRepositoryCode(value);
+                        } else if (node.name.equals("unitdate") && attributeName.equals("label")) {
+                            metadata.setUnitDateLabel(value);
+                        } else if (node.name.equals("unitdate") && attributeName.equals("normal")) {
+                            metadata.setUnitDateNormal(value);
+                        }
+                    }
+                } else if (node.name.equals("note")) {
+                    node.firstAttributeFlag = hasAttributeValue(reader, "sourcesDescription");
+                    node.secondAttributeFlag = hasAttributeValue(reader, "generalNote");
+                } else if (node.name.equals("origination")) {
+                    node.firstAttributeFlag = hasAttributeValue(reader, "creator");
+                    node.secondAttributeFlag = hasAttributeValue(reader, "producer");
+                } else if (node.name.equals("physdesc") || node.name.equals("langmaterial")) {
+                    node.keepTexts = true;
+                }
+            }
+        }
+
+        @Override
+        void text(XmlNode node, String value) {
+            String text = clean(value);
+            if (text.length() == 0) { return; }
+            if (node.name.equals("physdesc")) {
+                metadata.setPhysicalDescription(text);
+            } else {
+                metadata.setLangMaterial(text);
+            }
+        }
+
+        @Override
+        void end(XmlNode node) {
+            if ((node.role & ARCHDESC) != 0 && node.childCount < 2) { throw new MissingNodeException(); }
+            if ((node.role & DID_CHILD) != 0) { endDidChild(node); }
+            if ((node.role & ARCHDESC_CHILD) != 0) { endArchdescChild(node); }
+
+            XmlNode parent = node.parent;
+            if ((parent.role & DID_CHILD) != 0) {
+                if (parent.name.equals("physdesc")) {
+                    if (node.name.equals("extent")) { metadata.setPhysicalDescriptionExtent(clean(node.getFirstValue())); }
+                    if (node.name.equals("dimensions")) { metadata.setPhysicalDescriptionDimensions(clean(node.getFirstValue())); }
+                    if (node.name.equals("physfacet")) { metadata.setPhysicalDescriptionAppearance(clean(node.getFirstValue())); }
+                } else if (parent.name.equals("repository") && node.name.equals("corpname")) {
+                    metadata.setRepositoryName(clean(node.getFirstValue()));
+                } else if (parent.name.equals("langmaterial") && node.name.equals("language")) {
+                    metadata.setLangMaterialLanguage(clean(node.getFirstValue()));
+                }
+            }
+            if ((parent.role & ARCHDESC_CHILD) != 0 && parent.name.equals("processinfo") && node.childCount > 0) {
+                if (node.isChildElement(0, "date")) {
+                    metadata.setProcessInfoDate(clean(node.childFirstValues[0]));
+                } else if (node.isChildElement(1, "date")) {
+                    metadata.setProcessInfoDate(clean(node.childFirstValues[1]));
+                } else {
+                    metadata.setProcessInfoArchivistNotes(clean(node.getFirstValue()));
+                }
+            }
+        }
+
+        private void endDidChild(XmlNode node) {
+            String name = node.name;
+            if (name.equals("unittitle")) {
+                metadata.setUnitTitle(clean(node.getFirstValue()));
+            } else if (name.equals("unitid")) {
+                metadata.setUnitId(clean(node.getFirstValue()));
+            } else if (name.equals("unitdate")) {
+                metadata.setUnitDate(clean(node.getFirstValue()));
+            } else if (name.equals("note")) {
+                if (node.firstAttributeFlag) { metadata.setNoteSourcesDescription(clean(node.getSecondChildFirstValue())); }
+                if (node.secondAttributeFlag) { metadata.setNoteGeneralNote(clean(node.getSecondChildFirstValue())); }
+            } else if (name.equals("origination")) {
+                String origination = clean(node.getFirstValue());
+                if (origination.length() > 0) { metadata.setOrigination(origination); }
+                if (node.firstAttributeFlag) { metadata.setOriginationCreator(clean(node.getSecondChildFirstValue())); }
+                if (node.secondAttributeFlag) { metadata.setOriginationProducer(clean(node.getSecondChildFirstValue())); }
+            } else if (name.equals("materialspec")) {
+                metadata.setMaterialSpecification(clean(node.getFirstValue()));
+            }
+        }
+
+        private void endArchdescChild(XmlNode node) {
+            String name = node.name;
+            if (name.equals("odd")) {
+                if (node.firstAttributeFlag) { metadata.setOddLevelOfDetail(clean(node.getSecondChildFirstValue())); }
+                if (node.secondAttributeFlag) { metadata.setOddStatusDescription(clean(node.getSecondChildFirstValue())); }
+            } else if (name.equals("scopecontent")) {
+                metadata.setScopeContent(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("arrangement")) {
+                metadata.setArrangement(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("appraisal")) {
+                metadata.setAppraisal(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("acqinfo")) {
+                metadata.setAcquisitionInfo(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("accruals")) {
+                metadata.setAccruals(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("custodhist")) {
+                metadata.setCustodialHistory(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("originalsloc")) {
+                metadata.setOriginalsLocation(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("altformavail")) {
+                metadata.setAlternativeFormAvailable(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("relatedmaterial")) {
+                metadata.setRelatedMaterial(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("accessrestrict")) {
+                metadata.setAccessRestrictions(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("userestrict")) {
+                metadata.setUseRestrictions(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("otherfindaid")) {
+                metadata.setOtherFindAid(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("phystech")) {
+                metadata.setPhysicalTech(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("bibliography")) {
+                metadata.setBibliography(clean(node.getSecondChildFirstValue()));
+            } else if (name.equals("prefercite")) {
+                metadata.setPreferCite(clean(node.getSecondChildFirstValue()));
+            }
+        }
+
+        @Override
+        void endDocument() {
+            if (!archdescFound) { throw new MissingNodeException(); }
+        }
+
+        @Override
+        void clear() {
+            metadata = new Ead2002Metadata();
+        }
+
+        private static boolean hasAttributeValue(XMLStreamReader reader, String value) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (reader.getAttributeValue(i).equals(value)) { return true; }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Dublin Core Simple 2002-12-12: the children of the root element.
+     */
+    private static final class DublinCoreHandler extends Handler {
+        private DublinCore20021212Metadata metadata = new DublinCore20021212Metadata();
+
+        @Override
+        void end(XmlNode node) {
+            if (node.parent.parent == null || node.parent.parent.parent != null) { return; }
+
+            String name = node.name;
+            if (name.equals("title")) {
+                metadata.setTitle(clean(node.getFirstValue()));
+            } else if (name.equals("identifier")) {
+                metadata.setIdentifier(clean(node.getFirstValue()));
+            } else if (name.equals("creator")) {
+                metadata.setCreator(clean(node.getFirstValue()));
+            } else if (name.equals("date")) {
+                if (metadata.getInitialDate().equals("")) {
+                    metadata.setInitialDate(clean(node.getFirstValue()));
+                } else {
+                    metadata.setFinalDate(clean(node.getFirstValue()));
+                }
+            } else if (name.equals("description")) {
+                metadata.setDescription(clean(node.getFirstValue()));
+            } else if (name.equals("publisher")) {
+                metadata.setPublisher(clean(node.getFirstValue()));
+            } else if (name.equals("contributor")) {
+                metadata.setContributor(clean(node.getFirstValue()));
+            } else if (name.equals("rights")) {
+                metadata.setRights(clean(node.getFirstValue()));
+            } else if (name.equals("language")) {
+                metadata.setLanguage(clean(node.getFirstValue()));
+            } else if (name.equals("coverage")) {
+                metadata.setCoverage(clean(node.getFirstValue()));
+            } else if (name.equals("format")) {
+                metadata.setFormat(clean(node.getFirstValue()));
+            } else if (name.equals("relation")) {
+                metadata.setRelation(clean(node.getFirstValue()));
+            } else if (name.equals("subject")) {
+                metadata.setSubject(clean(node.getFirstValue()));
+            } else if (name.equals("type")) {
+                metadata.setType(clean(node.getFirstValue()));
+            } else if (name.equals("source")) {
+                metadata.setSource(clean(node.getFirstValue()));
+            }
+        }
+
+        @Override
+        void clear() {
+            metadata = new DublinCore20021212Metadata();
+        }
+    }
+
+    /**
+     * Key-value: the "field" children of the root element, named by their first attribute (in name order).
+     */
+    private static final class KeyValueHandler extends Handler {
+        private KeyValueMetadata metadata = new KeyValueMetadata();
+
+        @Override
+        void start(XmlNode node, XMLStreamReader reader) {
+            if (!isField(node)) { return; }
+            if (reader.getAttributeCount() == 0) { throw new MissingNodeException(); }
+
+            String firstName = null;
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attributeName = getAttributeName(reader, i);
+                if (firstName == null || attributeName.compareTo(firstName) < 0) {
+                    firstName = attributeName;
+                    node.attribute = reader.getAttributeValue(i);
+                }
+            }
+        }
+
+        @Override
+        void end(XmlNode node) {
+            if (!isField(node)) { return; }
+
+            String attributeName = node.attribute;
+            if (attributeName.equals("id")) {
+                metadata.setId(clean(node.getFirstValue()));
+            } else if (attributeName.equals("title")) {
+                metadata.setTitle(clean(node.getFirstValue()));
+            } else if (attributeName.equals("producer")) {
+                metadata.setProducer(clean(node.getFirstValue()));
+            } else if (attributeName.equals("date")) {
+                metadata.setDate(clean(node.getFirstValue()));
+            }
+        }
+
+        private static boolean isField(XmlNode node) {
+            return node.name.equals("field") && node.parent.parent != null && node.parent.parent.parent == null;
+        }
+
+        @Override
+        void clear() {
+            metadata = new KeyValueMetadata();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.roda.wui.cmis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory model of the folders the repository exposes at its root: the readable AIPs and, for each of them, the
+ * children of the "data" folder of every representation ("&lt;aip&gt;/representations/&lt;rep&gt;/data/*").
+ *
+ * Listing the root folder used to walk the four folder levels of every AIP and check its "aip.json" on each request.
+ * The tree walks an AIP once, keeps its exposed children, and flattens the children of all the AIPs into a single
+ * array, so a page of the root folder is a slice of that array and only the objects in the page are read from disk.
+ *
+ * An AIP is walked again when it is refreshed: by the indexer when it re-indexes changed AIPs, and by the CMIS
+ * operations that add, move, rename or delete objects. The AIPs added or removed are also noticed through the
+ * modification time of the root folder, which is checked whenever the root folder is listed.
+ *
+ * The tree also keeps the number of children of the folders inside the AIPs that were listed to the end, so a page
+ * of such a folder can report it without counting the children again while the folder does not change, and the
+ * sorted snapshots of the folders listed with an order, until their children change or are written in place.
+ */
+public class FileBridgeNavigationTree {
+
+    private static final String AIP_JSON = "aip.json";
+    private static final String REPRESENTATIONS = "representations";
+    private static final String DATA = "data";
+
+    /**
+     * Depth, relative to the root folder, of the children exposed at the root: aip/representations/rep/data/child.
+     */
+    private static final int EXPOSED_DEPTH = 5;
+
+    private static final File[] NO_FILES = new File[0];
+
+    /**
+     * Number of folders whose number of children is kept in cache.
+     */
+    private static final int COUNT_CACHE_SIZE = 10000;
+
+    /**
+     * Number of sorted snapshots kept in cache.
+     */
+    private static final int SNAPSHOT_CACHE_SIZE = 256;
+
+    private final File root;
+
+    /**
+     * The exposed children of each AIP, in the order the AIPs were found. Empty for the AIPs that cannot be read.
+     * Null until the tree is first built.
+     */
+    private Map<String, File[]> aips = null;
+
+    /**
+     * Version of the root folder when its AIPs were last listed, see {@link FileBridgeEntry#getVersion()}.
+     */
+    private volatile long rootVersion;
+
+    /**
+     * The exposed children of all the AIPs, flattened. Null when it must be rebuilt.
+     */
+    private volatile File[] children = null;
+
+    /**
+     * Incremented each time the flattened children are rebuilt, the version of the root folder's snapshots.
+     */
+    private long childrenVersion = 0;
+
+    /**
+     * Number of children of the folders listed to the end, with the folder's version when they were counted (see
+     * {@link FileBridgeEntry#getVersion()}), keyed by folder path in least recently used order.
+     */
+    private final LinkedHashMap<String, long[]> childCounts = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Sorted snapshots of the folders' children, keyed by folder path and order in least recently used order.
+     */
+    private final LinkedHashMap<String, FileBridgeChildrenSnapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructor.
+     * @param root The repository's root folder.
+     */
+    public FileBridgeNavigationTree(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Function responsible for returning the number of children exposed at the root folder.
+     * @return The number of children.
+     */
+    public int size() {
+        return getChildren().length;
+    }
+
+    /**
+     * Function responsible for returning a page of the children exposed at the root folder, with their attributes.
+     * Only the children in the page are read, and the ones removed since their AIP was walked are left out.
+     * @param skip The number of children to skip.
+     * @param max The maximum number of children to return.
+     * @return The children in the page.
+     */
+    public List<FileBridgeEntry> list(int skip, int max) {
+        File[] files = getChildren();
+        int from = Math.min(skip, files.length);
+        int to = (int) Math.min((long) from + max, files.length);
+
+        List<FileBridgeEntry> page = new ArrayList<FileBridgeEntry>(to - from);
+        for (int i = from; i < to; i++) {
+            FileBridgeEntry entry = FileBridgeEntry.read(files[i]);
+            if (entry != null) { page.add(entry); }
+        }
+        return page;
+    }
+
+    /**
+     * Method responsible for walking an AIP again, after it was added, changed or removed.
+     * @param aipId The AIP's unique ID.
+     */
+    public synchronized void refreshAip(String aipId) {
+        if (aips == null) { return; }
+
+        File aip = new File(root, aipId);
+        if (aip.isDirectory()) {
+            aips.put(aipId, walkAip(aip));
+        } else {
+            aips.remove(aipId);
+        }
+        children = null;
+    }
+
+    /**
+     * Method responsible for refreshing the AIP holding an object that was added, moved, renamed or deleted, if the
+     * object is one of the AIP's exposed children or one of the folders above them.
+     * @param file The object's file or folder.
+     */
+    public void refreshObject(File file) {
+        if (file == null || !file.getPath().startsWith(root.getPath() + "/")) { return; }
+
+        String[] pathElements = file.getPath().replace(root.getPath() + "/", "").split("/");
+        if (pathElements.length <= EXPOSED_DEPTH) {
+            refreshAip(pathElements[0]);
+        }
+    }
+
+    /**
+     * Method responsible for dropping the sorted snapshots listing an object whose content or properties were written
+     * in place. Overwriting a file changes its size and modification time but not the ones of its folder, which
+     * version the snapshots, so the snapshots of its folder, and of the root folder if the object is exposed there,
+     * would keep the former order.
+     * @param file The object's file or folder.
+     */
+    public void refreshContent(File file) {
+        if (file == null || !file.getPath().startsWith(root.getPath() + "/")) { return; }
+
+        List<String> folders = new ArrayList<String>();
+        folders.add(file.getParent() + "\n");
+        if (file.getPath().replace(root.getPath() + "/", "").split("/").length == EXPOSED_DEPTH) {
+            folders.add(root.getPath() + "\n");
+        }
+        synchronized (snapshots) {
+            Iterator<String> iterator = snapshots.keySet().iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                for (String folder : folders) {
+                    if (key.startsWith(folder)) {
+                        iterator.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Function responsible for returning the cached number of children of a folder, if the folder did not change
+     * since they were counted.
+     * @param folder The folder.
+     * @param version The folder's current version, see {@link FileBridgeEntry#getVersion()}.
+     * @return The number of children, or -1 if it is not known.
+     */
+    public long getChildCount(File folder, long version) {
+        synchronized (childCounts) {
+            long[] childCount = childCounts.get(folder.getPath());
+            return (childCount != null && childCount[0] == version ? childCount[1] : -1);
+        }
+    }
+
+    /**
+     * Method responsible for caching the number of children of a folder, evicting the least recently used folders
+     * above the cache size. The folders modified within the last seconds must not be cached, see
+     * {@link FileBridgeEntry#isRecentlyModified()}.
+     * @param folder The folder.
+     * @param version The folder's version before its children were counted.
+     * @param count The number of children.
+     */
+    public void putChildCount(File folder, long version, long count) {
+        synchronized (childCounts) {
+            childCounts.put(folder.getPath(), new long[]{version, count});
+            Iterator<String> iterator = childCounts.keySet().iterator();
+            while (childCounts.size() > COUNT_CACHE_SIZE && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Function responsible for returning the sorted snapshot of a folder's children, taking a new one if the folder's
+     * children changed since the cached one was taken. The root folder's children are the ones exposed at the root.
+     * @param folder The folder.
+     * @param orderBy The normalized order, see {@link FileBridgeChildrenSnapshot#normalizeOrderBy(String)}.
+     * @return The snapshot.
+     */
+    public FileBridgeChildrenSnapshot getSnapshot(File folder, String orderBy) {
+        boolean isRoot = root.equals(folder);
+        File[] files = null;
+        long version;
+        boolean cacheable = true;
+        if (isRoot) {
+            synchronized (this) {
+                files = getChildren();
+                version = childrenVersion;
+            }
+        } else {
+            // a folder modified within the last seconds may still change without getting a new version
+            FileBridgeEntry folderEntry = FileBridgeEntry.read(folder);
+            version = (folderEntry != null ? folderEntry.getVersion() : -1);
+            cacheable = (folderEntry != null && !folderEntry.isRecentlyModified());
+        }
+
+        String key = folder.getPath() + "\n" + orderBy;
+        if (cacheable) {
+            synchronized (snapshots) {
+                FileBridgeChildrenSnapshot snapshot = snapshots.get(key);
+                if (snapshot != null && snapshot.getVersion() == version) { return snapshot; }
+            }
+        }
+
+        // the dates and sizes are only read when the children are sorted by them
+        boolean readAttributes = FileBridgeChildrenSnapshot.needsAttributes(orderBy);
+        List<FileBridgeChildrenSnapshot.Child> snapshotChildren = new ArrayList<FileBridgeChildrenSnapshot.Child>();
+        if (isRoot) {
+            for (File file : files) {
+                FileBridgeEntry entry = (readAttributes ? FileBridgeEntry.read(file) : null);
+                if (entry != null) {
+                    snapshotChildren.add(new FileBridgeChildrenSnapshot.Child(file, entry.lastModified(),
+                            entry.isDirectory() ? -1 : entry.length()));
+                } else if (!readAttributes) {
+                    snapshotChildren.add(new FileBridgeChildrenSnapshot.Child(file, 0, 0));
+                }
+            }
+        } else {
+            for (FileBridgeEntry entry : FileBridgeEntry.list(folder)) {
+                snapshotChildren.add(new FileBridgeChildrenSnapshot.Child(entry.getFile(), entry.lastModified(),
+                        entry.isDirectory() ? -1 : entry.length()));
+            }
+        }
+        FileBridgeChildrenSnapshot snapshot = new FileBridgeChildrenSnapshot(folder, orderBy, version,
+                snapshotChildren);
+        if (!cacheable) { return snapshot; }
+
+        synchronized (snapshots) {
+            snapshots.put(key, snapshot);
+            Iterator<String> iterator = snapshots.keySet().iterator();
+            while (snapshots.size() > SNAPSHOT_CACHE_SIZE && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Method responsible for dropping the whole tree, so it is built again from disk when it is next used.
+     */
+    public synchronized void refresh() {
+        aips = null;
+        children = null;
+    }
+
+    /**
+     * Function responsible for returning the flattened children, building the tree on first use and listing the
+     * AIPs again if the root folder changed, or was modified so recently that it may have changed since without
+     * getting a new version.
+     * @return The exposed children of all the AIPs.
+     */
+    private File[] getChildren() {
+        FileBridgeEntry rootEntry = FileBridgeEntry.read(root);
+        long version = (rootEntry != null ? rootEntry.getVersion() : -1);
+        boolean settled = (rootEntry != null && !rootEntry.isRecentlyModified());
+        File[] files = children;
+        if (files != null && settled && version == rootVersion) {
+            return files;
+        }
+
+        synchronized (this) {
+            if (aips == null) {
+                aips = new LinkedHashMap<String, File[]>();
+                for (String aipId : listAips()) {
+                    aips.put(aipId, walkAip(new File(root, aipId)));
+                }
+                rootVersion = version;
+                children = null;
+            } else if (version != rootVersion || !settled) {
+                // only the AIPs added or removed are walked
+                Set<String> aipIds = new HashSet<String>(Arrays.asList(listAips()));
+                boolean changed = aips.keySet().retainAll(aipIds);
+                for (String aipId : aipIds) {
+                    if (!aips.containsKey(aipId)) {
+                        aips.put(aipId, walkAip(new File(root, aipId)));
+                        changed = true;
+                    }
+                }
+                rootVersion = version;
+                if (changed) { children = null; }
+            }
+
+            if (children == null) {
+                int size = 0;
+                for (File[] aipChildren : aips.values()) {
+                    size += aipChildren.length;
+                }
+                files = new File[size];
+                int position = 0;
+                for (File[] aipChildren : aips.values()) {
+                    System.arraycopy(aipChildren, 0, files, position, aipChildren.length);
+                    position += aipChildren.length;
+                }
+                children = files;
+                childrenVersion++;
+            }
+            return children;
+        }
+    }
+
+    /**
+     * Function responsible for listing the names of the visible folders of the root folder, the AIP candidates.
+     * @return The AIP ids.
+     */
+    private String[] listAips() {
+        List<String> aipIds = new ArrayList<String>();
+        for (FileBridgeEntry entry : FileBridgeEntry.list(root)) {
+            if (entry.isDirectory()) { aipIds.add(entry.getName()); }
+        }
+        return aipIds.toArray(new String[aipIds.size()]);
+    }
+
+    /**
+     * Function responsible for walking an AIP, listing the children of the "data" folder of every representation.
+     * @param aip The AIP folder.
+     * @return The AIP's exposed children, empty if the AIP cannot be read through CMIS.
+     */
+    private File[] walkAip(File aip) {
+        File aipJson = new File(aip, AIP_JSON);
+        if (!aipJson.isFile() || !FileBridgeUtils.canReadAIP(aipJson.getPath())) { return NO_FILES; }
+
+        List<File> aipChildren = new ArrayList<File>();
+        for (FileBridgeEntry representation : FileBridgeEntry.list(new File(aip, REPRESENTATIONS))) {
+            if (!representation.isDirectory()) { continue; }
+            for (FileBridgeEntry child : FileBridgeEntry.list(new File(representation.getFile(), DATA))) {
+                aipChildren.add(child.getFile());
+            }
+        }
+        return aipChildren.toArray(new File[aipChildren.size()]);
+    }
+}
@@ -0,0 +1,251 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
+import org.apache.chemistry.opencmis.commons.impl.Base64;
+import org.roda.wui.cmis.database.Database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps the objects of the repository to their ids and back.
+ *
+ * An object id is "~" followed by the base 32 digits of a 64 bit FNV-1a hash of the object's repository path, so it
+ * is short and stays the same across restarts and re-indexing. The ids of the most recently used objects are kept
+ * in memory both ways, the id keyed by the file's path, so resolving an id or the id of a listed file does not
+ * decode, encode or allocate anything while the object is in use. The other ids are resolved through the index,
+ * which keeps the path of every indexed object and of its ancestor folders.
+ *
+ * The former ids, the Base64 encoding of the repository path, are still accepted. They are also used for the rare
+ * path whose hash collides with the one of another path: the path the index keeps for a compact id, or else the
+ * first one seen, keeps it. The index then keeps the legacy id of the other path, so the choice survives restarts
+ * and the eviction of the ids from memory.
+ */
+public class FileBridgeObjectIds {
+
+    /**
+     * The id of the repository's root folder.
+     */
+    public static final String ROOT_ID = "@root@";
+
+    private static final char PREFIX = '~';
+
+    /**
+     * Default number of ids kept in memory, each way.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 100000;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final File root;
+    private final String rootPath;
+    private final Database database;
+
+    /**
+     * The ids of the objects handed out, keyed by file path in least recently used order.
+     */
+    private final LinkedHashMap<String, String> ids = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The files of the compact ids handed out or resolved through the index, keyed by id in least recently used
+     * order.
+     */
+    private final LinkedHashMap<String, File> files = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    /**
+     * Constructor.
+     * @param root The repository's root folder.
+     * @param database The index database, holding the paths of the ids handed out by a previous run.
+     */
+    public FileBridgeObjectIds(File root, Database database) {
+        this.root = root;
+        this.rootPath = root.getPath();
+        this.database = database;
+    }
+
+    /**
+     * Function responsible for returning the id of a file or folder.
+     * @param file The file or folder.
+     * @return The object id.
+     */
+    public String getId(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("File is not valid!");
+        }
+
+        String path = file.getPath();
+        synchronized (this) {
+            String id = ids.get(path);
+            if (id != null) { return id; }
+        }
+
+        if (root.equals(file)) { return ROOT_ID; }
+
+        String repositoryPath = getRepositoryPath(file);
+        String id = (path.startsWith(rootPath) ? compactId(path, rootPath.length()) : compactId(repositoryPath, 0));
+        String indexedPath = database.getObjectPath(id);
+        synchronized (this) {
+            File registered = files.get(id);
+            if ((registered != null && !registered.getPath().equals(path))
+                    || (indexedPath != null && !indexedPath.equals(repositoryPath))) {
+                // another path has the same hash
+                id = legacyId(repositoryPath);
+            } else if (registered == null) {
+                put(files, id, file);
+            }
+            put(ids, path, id);
+        }
+        return id;
+    }
+
+    /**
+     * Function responsible for returning the file or folder of an id.
+     * @param id The object id, compact or legacy.
+     * @return The file or folder, which may not exist.
+     * @throws CmisObjectNotFoundException If the id was never handed out.
+     */
+    public File getFile(String id) {
+        if (id == null || id.length() == 0) {
+            throw new CmisInvalidArgumentException("Id is not valid!");
+        }
+
+        synchronized (this) {
+            File file = files.get(id);
+            if (file != null) { return file; }
+        }
+
+        if (id.equals(ROOT_ID)) { return root; }
+
+        if (id.charAt(0) != PREFIX) {
+            return new File(root, decodeLegacyId(id).replace('/', File.separatorChar));
+        }
+
+        String path = database.getObjectPath(id);
+        if (path == null) {
+            throw new CmisObjectNotFoundException("Unknown object id: " + id);
+        }
+        File file = new File(root, path.replace('/', File.separatorChar));
+        synchronized (this) {
+            File registered = files.get(id);
+            if (registered != null) { return registered; }
+            put(files, id, file);
+        }
+        return file;
+    }
+
+    /**
+     * Method responsible for forgetting the ids of a file or folder that was removed or moved, and of everything
+     * inside it.
+     * @param file The file or folder, at the path it was removed or moved from.
+     */
+    public synchronized void remove(File file) {
+        String path = file.getPath();
+        String prefix = path + File.separator;
+
+        Iterator<Map.Entry<String, String>> idIterator = ids.entrySet().iterator();
+        while (idIterator.hasNext()) {
+            String idPath = idIterator.next().getKey();
+            if (idPath.equals(path) || idPath.startsWith(prefix)) { idIterator.remove(); }
+        }
+        Iterator<Map.Entry<String, File>> fileIterator = files.entrySet().iterator();
+        while (fileIterator.hasNext()) {
+            String filePath = fileIterator.next().getValue().getPath();
+            if (filePath.equals(path) || filePath.startsWith(prefix)) { fileIterator.remove(); }
+        }
+    }
+
+    /**
+     * Function responsible for converting a legacy id to the compact id stored in the index, leaving the other ids
+     * as they are. Used by the IN_FOLDER and IN_TREE queries.
+     * @param id The object id.
+     * @return The compact id.
+     */
+    public static String normalize(String id) {
+        if (id == null || id.length() == 0 || id.charAt(0) == PREFIX || id.equals(ROOT_ID)) { return id; }
+
+        try {
+            return compactId(decodeLegacyId(id), 0);
+        } catch (CmisInvalidArgumentException e) {
+            return id;
+        }
+    }
+
+    /**
+     * Function responsible for returning the number of ids kept in memory.
+     * @return The number of ids.
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+
+    /**
+     * Method responsible for setting the number of ids kept in memory, each way, evicting the least recently used
+     * ones above it.
+     * @param cacheSize The number of ids.
+     */
+    public synchronized void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(0, cacheSize);
+        trim(ids);
+        trim(files);
+    }
+
+    private <V> void put(LinkedHashMap<String, V> map, String key, V value) {
+        map.put(key, value);
+        trim(map);
+    }
+
+    private <V> void trim(LinkedHashMap<String, V> map) {
+        Iterator<String> iterator = map.keySet().iterator();
+        while (map.size() > cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Function responsible for hashing a repository path into a compact id, without copying the path.
+     * @param path The path, or a file path starting with the root folder's path.
+     * @param from The position of the repository path in the given path.
+     * @return The compact id.
+     */
+    private static String compactId(String path, int from) {
+        long hash = FNV_OFFSET_BASIS;
+        int length = path.length();
+        if (from == length || path.charAt(from) != File.separatorChar && path.charAt(from) != '/') {
+            // the repository path always starts with '/'
+            hash = (hash ^ '/') * FNV_PRIME;
+        }
+        for (int i = from; i < length; i++) {
+            char c = path.charAt(i);
+            hash = (hash ^ (c == File.separatorChar ? '/' : c)) * FNV_PRIME;
+        }
+        return PREFIX + Long.toUnsignedString(hash, 32);
+    }
+
+    private static String legacyId(String repositoryPath) {
+        return Base64.encodeBytes(repositoryPath.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeLegacyId(String id) {
+        try {
+            return new String(Base64.decode(id.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.UTF_8);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new CmisInvalidArgumentException("Id is not valid!", e);
+        }
+    }
+
+    private String getRepositoryPath(File file) {
+        String path = file.getAbsolutePath()
+                .substring(root.getAbsolutePath().length())
+                .replace(File.separatorChar, '/');
+        return (path.length() > 0 && path.charAt(0) == '/' ? path : "/" + path);
+    }
+}
@@ -0,0 +1,224 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.data.Properties;
+import org.apache.chemistry.opencmis.commons.data.PropertyData;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.PropertiesImpl;
+import org.apache.chemistry.opencmis.commons.impl.server.ObjectInfoImpl;
+import org.apache.chemistry.opencmis.commons.server.CallContext;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the compiled properties of the most recently used objects, so an object fetched over and over is not compiled
+ * again on every request.
+ *
+ * The entries hold all the properties of an object, keyed by object path (the object id is derived from it) and CMIS
+ * version. An entry is only used while the object's modification time and size, and the version of its AIP's
+ * metadata, are the ones it was compiled from. The property filter of each request is applied to the cached
+ * properties, which are never changed.
+ */
+public class FileBridgePropertiesCache {
+
+    /**
+     * Default number of objects kept in cache.
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    /**
+     * Cached properties, keyed by object path and CMIS version, in least recently used order.
+     */
+    private final LinkedHashMap<String, CachedProperties> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int size = DEFAULT_SIZE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Function responsible for returning the cached properties of an object, if they are still current.
+     * @param context The call context, for the CMIS version.
+     * @param objectPath The object's file path.
+     * @param lastModified The object's current modification time.
+     * @param length The object's current size.
+     * @param metadataVersion The current version of the object's AIP metadata.
+     * @return The cached properties, or null if the object is not cached or changed since it was compiled.
+     */
+    CachedProperties get(CallContext context, String objectPath, long lastModified, long length, long metadataVersion) {
+        if (size == 0) { return null; }
+
+        CachedProperties cached;
+        synchronized (cache) {
+            cached = cache.get(getKey(context, objectPath));
+        }
+        if (cached == null || cached.lastModified != lastModified || cached.length != length
+                || cached.metadataVersion != metadataVersion) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached;
+    }
+
+    /**
+     * Method responsible for caching the properties of an object, evicting the least recently used objects above
+     * the cache size.
+     * @param context The call context, for the CMIS version.
+     * @param objectPath The object's file path.
+     * @param cached The object's properties.
+     */
+    void put(CallContext context, String objectPath, CachedProperties cached) {
+        if (size == 0) { return; }
+
+        synchronized (cache) {
+            cache.put(getKey(context, objectPath), cached);
+            trimCache();
+        }
+    }
+
+    /**
+     * Method responsible for evicting the least recently used objects above the cache size.
+     */
+    private void trimCache() {
+        Iterator<String> iterator = cache.keySet().iterator();
+        while (cache.size() > size && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String getKey(CallContext context, String objectPath) {
+        return context.getCmisVersion().value() + ":" + objectPath;
+    }
+
+    // --- getters and setters ---
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        synchronized (cache) {
+            this.size = Math.max(0, size);
+            trimCache();
+        }
+    }
+
+    public int getCachedObjects() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The compiled properties of an object, with the object info values set while compiling them.
+     */
+    static class CachedProperties {
+        private final long lastModified;
+        private final long length;
+        private final long metadataVersion;
+        private final boolean folder;
+        private final List<PropertyData<?>> properties;
+        private final List<String> queryNames;
+
+        private final String id;
+        private final String name;
+        private final String createdBy;
+        private final GregorianCalendar creationDate;
+        private final GregorianCalendar lastModificationDate;
+        private final boolean hasParent;
+        private final boolean hasContent;
+        private final String contentType;
+        private final String fileName;
+
+        /**
+         * Constructor.
+         * @param entry The object's file or folder.
+         * @param metadataVersion The version of the object's AIP metadata the properties were compiled from.
+         * @param properties All the object's properties.
+         * @param objectInfo The object info set while compiling the properties.
+         * @param typeManager The type manager, for the properties' query names.
+         */
+        CachedProperties(FileBridgeEntry entry, long metadataVersion, Properties properties,
+                         ObjectInfoImpl objectInfo, FileBridgeTypeManager typeManager) {
+            this.lastModified = entry.lastModified();
+            this.length = entry.length();
+            this.metadataVersion = metadataVersion;
+            this.folder = entry.isDirectory();
+            this.properties = new ArrayList<PropertyData<?>>(properties.getPropertyList());
+            this.queryNames = new ArrayList<String>(this.properties.size());
+            FileBridgePropertyTemplate template = typeManager.getPropertyTemplate(objectInfo.getTypeId());
+            for (PropertyData<?> property : this.properties) {
+                int position = template.indexOf(property.getId());
+                queryNames.add(position < 0 ? null : template.getQueryName(position));
+            }
+
+            this.id = objectInfo.getId();
+            this.name = objectInfo.getName();
+            this.createdBy = objectInfo.getCreatedBy();
+            this.creationDate = objectInfo.getCreationDate();
+            this.lastModificationDate = objectInfo.getLastModificationDate();
+            this.hasParent = objectInfo.hasParent();
+            this.hasContent = objectInfo.hasContent();
+            this.contentType = objectInfo.getContentType();
+            this.fileName = objectInfo.getFileName();
+        }
+
+        /**
+         * Function responsible for returning the properties selected by a filter, the same ones compiling the
+         * properties with that filter returns.
+         * @param filter The query names of the selected properties, null for all.
+         * @return The selected properties.
+         */
+        Properties getProperties(Set<String> filter) {
+            PropertiesImpl result = new PropertiesImpl();
+            for (int i = 0; i < properties.size(); i++) {
+                String queryName = queryNames.get(i);
+                if (filter == null || queryName == null || filter.contains(queryName)) {
+                    result.addProperty(properties.get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Method responsible for setting the object info values set while compiling the properties. The type
+         * related values are set separately.
+         * @param objectInfo The object info.
+         */
+        void setObjectInfo(ObjectInfoImpl objectInfo) {
+            objectInfo.setId(id);
+            objectInfo.setName(name);
+            objectInfo.setCreatedBy(createdBy);
+            objectInfo.setCreationDate(creationDate);
+            objectInfo.setLastModificationDate(lastModificationDate);
+            objectInfo.setHasParent(hasParent);
+            objectInfo.setHasContent(hasContent);
+            objectInfo.setContentType(contentType);
+            objectInfo.setFileName(fileName);
+        }
+
+        boolean isFolder() {
+            return folder;
+        }
+    }
+}
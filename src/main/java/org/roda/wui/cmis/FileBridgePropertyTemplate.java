@@ -0,0 +1,103 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
+import org.apache.chemistry.opencmis.commons.definitions.TypeDefinition;
+import org.apache.chemistry.opencmis.commons.enums.Cardinality;
+import org.apache.chemistry.opencmis.commons.enums.PropertyType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The property definitions of a type, flattened into arrays when the type is added to the type manager.
+ *
+ * Compiling an object looks up each of its properties here, by position, instead of going through the type manager
+ * and the type's definitions map for every property. A template is never changed after it is built, so it is read
+ * without any locking.
+ */
+public final class FileBridgePropertyTemplate {
+
+    private final String typeId;
+    private final Map<String, Integer> positions;
+    private final String[] ids;
+    private final String[] queryNames;
+    private final PropertyType[] propertyTypes;
+    private final Cardinality[] cardinalities;
+
+    /**
+     * Constructor.
+     * @param type The type definition, with all its property definitions (inherited included).
+     */
+    FileBridgePropertyTemplate(TypeDefinition type) {
+        this.typeId = type.getId();
+        int size = type.getPropertyDefinitions().size();
+        Map<String, Integer> positions = new HashMap<String, Integer>(size * 2);
+        this.ids = new String[size];
+        this.queryNames = new String[size];
+        this.propertyTypes = new PropertyType[size];
+        this.cardinalities = new Cardinality[size];
+
+        int position = 0;
+        for (PropertyDefinition<?> definition : type.getPropertyDefinitions().values()) {
+            positions.put(definition.getId(), position);
+            ids[position] = definition.getId();
+            queryNames[position] = definition.getQueryName();
+            propertyTypes[position] = definition.getPropertyType();
+            cardinalities[position] = definition.getCardinality();
+            position++;
+        }
+        this.positions = Collections.unmodifiableMap(positions);
+    }
+
+    /**
+     * Function responsible for returning the position of a property in the template.
+     * @param id The property id.
+     * @return The property's position, or -1 if the type has no such property.
+     */
+    public int indexOf(String id) {
+        Integer position = positions.get(id);
+        return (position == null ? -1 : position);
+    }
+
+    /**
+     * Function responsible for selecting the properties returned for a property filter, once per object.
+     * @param filter The query names of the requested properties, null for all.
+     * @return Whether each property, by position, is selected. Null when all are.
+     */
+    public boolean[] select(Set<String> filter) {
+        if (filter == null) {
+            return null;
+        }
+        boolean[] selected = new boolean[ids.length];
+        for (int position = 0; position < ids.length; position++) {
+            selected[position] = (queryNames[position] == null || filter.contains(queryNames[position]));
+        }
+        return selected;
+    }
+
+    public String getTypeId() {
+        return typeId;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public String getId(int position) {
+        return ids[position];
+    }
+
+    public String getQueryName(int position) {
+        return queryNames[position];
+    }
+
+    public PropertyType getPropertyType(int position) {
+        return propertyTypes[position];
+    }
+
+    public Cardinality getCardinality(int position) {
+        return cardinalities[position];
+    }
+}
@@ -0,0 +1,83 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisPermissionDeniedException;
+import org.apache.chemistry.opencmis.commons.server.CallContext;
+import org.apache.chemistry.opencmis.server.impl.CallContextImpl;
+import org.apache.chemistry.opencmis.server.impl.CmisRepositoryContextListener;
+import org.apache.chemistry.opencmis.server.shared.BasicAuthCallContextHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diagnostic servlet explaining how the objects database runs a CMIS query, to check that it uses the indexes.
+ *
+ * Usage: GET /explain?repositoryId=&lt;id&gt;&amp;q=&lt;CMIS query&gt;, authenticated with the repository logins
+ * (HTTP basic authentication). The response is the SQL statement, its parameters and its query plan, as plain text.
+ */
+public class FileBridgeQueryPlanServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BasicAuthCallContextHandler callContextHandler = new BasicAuthCallContextHandler();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String repositoryId = request.getParameter("repositoryId");
+        String statement = request.getParameter("q");
+        if (repositoryId == null || statement == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing parameter 'repositoryId' or 'q'.");
+            return;
+        }
+
+        FileBridgeCmisServiceFactory factory = (FileBridgeCmisServiceFactory) getServletContext()
+                .getAttribute(CmisRepositoryContextListener.SERVICES_FACTORY);
+        if (factory == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The repository is not initialized.");
+            return;
+        }
+
+        // authenticate the user, as the CMIS bindings do
+        CallContextImpl context = new CallContextImpl(CallContext.BINDING_BROWSER, CmisVersion.CMIS_1_1, repositoryId,
+                getServletContext(), request, response, factory, null);
+        Map<String, String> callContextMap = callContextHandler.getCallContextMap(request);
+        if (callContextMap != null) {
+            for (Map.Entry<String, String> entry : callContextMap.entrySet()) {
+                context.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        List<String> plan;
+        try {
+            factory.getUserManager().authenticate(context);
+            plan = factory.getRepositoryManager().getRepository(repositoryId).explainQuery(context, statement);
+        } catch (CmisPermissionDeniedException e) {
+            response.setHeader("WWW-Authenticate", "Basic realm=\"CMIS\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+            return;
+        } catch (CmisObjectNotFoundException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+            return;
+        } catch (CmisBaseException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        for (String line : plan) {
+            writer.println(line);
+        }
+        writer.flush();
+    }
+}
@@ -0,0 +1,105 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.definitions.PropertyDefinition;
+import org.apache.chemistry.opencmis.commons.definitions.TypeDefinition;
+import org.apache.chemistry.opencmis.commons.definitions.TypeDefinitionContainer;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisNotSupportedException;
+import org.apache.chemistry.opencmis.commons.impl.dataobjects.TypeDefinitionContainerImpl;
+import org.apache.chemistry.opencmis.server.support.TypeManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the FileBridge type definitions to the OpenCMIS query parser, which resolves the types and the properties
+ * referenced in a query statement through the server-support TypeManager interface.
+ */
+public class FileBridgeQueryTypeManager implements TypeManager {
+
+    private final FileBridgeTypeManager typeManager;
+
+    /**
+     * Constructor.
+     * @param typeManager The repository type manager.
+     */
+    public FileBridgeQueryTypeManager(FileBridgeTypeManager typeManager) {
+        this.typeManager = typeManager;
+    }
+
+    @Override
+    public TypeDefinitionContainer getTypeById(String typeId) {
+        TypeDefinition type = typeManager.getInternalTypeDefinition(typeId);
+        return (type == null ? null : createContainer(type));
+    }
+
+    @Override
+    public TypeDefinition getTypeByQueryName(String typeQueryName) {
+        for (TypeDefinition type : typeManager.getInternalTypeDefinitions()) {
+            if (type.getQueryName().equals(typeQueryName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<TypeDefinitionContainer> getTypeDefinitionList() {
+        List<TypeDefinitionContainer> types = new ArrayList<>();
+        for (TypeDefinition type : typeManager.getInternalTypeDefinitions()) {
+            types.add(createContainer(type));
+        }
+        return types;
+    }
+
+    @Override
+    public List<TypeDefinitionContainer> getRootTypes() {
+        List<TypeDefinitionContainer> rootTypes = new ArrayList<>();
+        for (TypeDefinition type : typeManager.getInternalTypeDefinitions()) {
+            if (type.getParentTypeId() == null) {
+                rootTypes.add(createContainer(type));
+            }
+        }
+        return rootTypes;
+    }
+
+    @Override
+    public String getPropertyIdForQueryName(TypeDefinition typeDefinition, String propQueryName) {
+        for (PropertyDefinition<?> propertyDefinition : typeDefinition.getPropertyDefinitions().values()) {
+            if (propertyDefinition.getQueryName().equals(propQueryName)) {
+                return propertyDefinition.getId();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void addTypeDefinition(TypeDefinition typeDefinition, boolean addInheritedProperties) {
+        throw new CmisNotSupportedException("Type definitions can not be changed through the query type manager.");
+    }
+
+    @Override
+    public void updateTypeDefinition(TypeDefinition typeDefinition) {
+        throw new CmisNotSupportedException("Type definitions can not be changed through the query type manager.");
+    }
+
+    @Override
+    public void deleteTypeDefinition(String typeId) {
+        throw new CmisNotSupportedException("Type definitions can not be changed through the query type manager.");
+    }
+
+    /**
+     * Function responsible for wrapping a type definition and its direct children in a container.
+     */
+    private TypeDefinitionContainer createContainer(TypeDefinition type) {
+        TypeDefinitionContainerImpl container = new TypeDefinitionContainerImpl(type);
+        List<TypeDefinitionContainer> children = new ArrayList<>();
+        for (TypeDefinition child : typeManager.getInternalTypeDefinitions()) {
+            if (type.getId().equals(child.getParentTypeId())) {
+                children.add(new TypeDefinitionContainerImpl(child));
+            }
+        }
+        container.setChildren(children);
+        return container;
+    }
+}
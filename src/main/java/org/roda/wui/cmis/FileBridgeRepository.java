@@ -6,34 +6,54 @@ import org.apache.chemistry.opencmis.commons.data.Properties;
 import org.apache.chemistry.opencmis.commons.definitions.*;
 import org.apache.chemistry.opencmis.commons.enums.*;
 import org.apache.chemistry.opencmis.commons.exceptions.*;
-import org.apache.chemistry.opencmis.commons.impl.Base64;
 import org.apache.chemistry.opencmis.commons.impl.IOUtils;
 import org.apache.chemistry.opencmis.commons.impl.MimeTypes;
 import org.apache.chemistry.opencmis.commons.impl.dataobjects.*;
 import org.apache.chemistry.opencmis.commons.impl.server.ObjectInfoImpl;
 import org.apache.chemistry.opencmis.commons.server.CallContext;
+import org.apache.chemistry.opencmis.commons.server.ObjectInfo;
 import org.apache.chemistry.opencmis.commons.server.ObjectInfoHandler;
 import org.apache.chemistry.opencmis.commons.spi.Holder;
+import org.roda.wui.cmis.database.ConnectionPool;
 import org.roda.wui.cmis.database.Database;
+import org.roda.wui.cmis.database.SQLiteConnectionPool;
 import org.roda.wui.cmis.enums.FileBridgeCmisTypeId;
+import org.roda.wui.cmis.enums.IndexState;
 import org.roda.wui.cmis.enums.MetadataDublinCoreFieldId;
 import org.roda.wui.cmis.enums.MetadataEadFieldId;
 import org.roda.wui.cmis.enums.MetadataKeyValueFieldId;
+import org.roda.wui.cmis.metadata.AipDescriptor;
 import org.roda.wui.cmis.metadata.AipMetadata;
+import org.roda.wui.cmis.metadata.AipMetadataSnapshot;
+import org.roda.wui.cmis.metadata.AipMetadataStore;
 import org.roda.wui.cmis.database.Query;
+import org.roda.wui.cmis.database.QueryCompiler;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements all repository operations.
  */
 public class FileBridgeRepository {
 
-    private static final String ROOT_ID = "@root@";
+    private static final String ROOT_ID = FileBridgeObjectIds.ROOT_ID;
+
+    private static final String REPRESENTATIONS = "representations";
+    private static final String DATA = "data";
 
     private static final String USER_UNKNOWN = "<unknown>";
 
@@ -43,6 +63,137 @@ public class FileBridgeRepository {
 
     private static final int BUFFER_SIZE = 64 * 1024;
 
+    /**
+     * Date only metadata fields, kept as timestamps in the objects database.
+     */
+    private static final Set<String> DATE_ONLY_FIELDS = new HashSet<>(Arrays.asList(
+            MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
+            MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value()));
+
+    /**
+     * Repository option holding the number of objects written to the database in a single transaction.
+     */
+    public static final String OPTION_INDEX_BATCH_SIZE = "indexBatchSize";
+    /**
+     * Repository option holding the number of AIPs crawled in parallel by the indexer.
+     */
+    public static final String OPTION_INDEX_THREADS = "indexThreads";
+    /**
+     * Repository option indicating if the repository is indexed in the background (default) or before serving
+     * any request.
+     */
+    public static final String OPTION_INDEX_IN_BACKGROUND = "indexInBackground";
+    /**
+     * Repository option holding what queries do while the index is not ready: "partial" (default) serves the
+     * results already indexed, flagged with the index state, "error" fails fast.
+     */
+    public static final String OPTION_QUERY_WHILE_INDEXING = "queryWhileIndexing";
+    /**
+     * Repository option holding how the changes made to the repository while it is served are indexed: "watch"
+     * (default, file system events, falling back to "poll" if not supported), "poll" (periodic scans) or "none".
+     */
+    public static final String OPTION_INDEX_WATCH = "indexWatch";
+    /**
+     * Repository option holding the time, in milliseconds, without file system events after which the changed AIPs
+     * are re-indexed.
+     */
+    public static final String OPTION_INDEX_WATCH_DELAY = "indexWatchDelay";
+    /**
+     * Repository option holding the interval, in seconds, between the repository scans of the "poll" mode.
+     */
+    public static final String OPTION_INDEX_SCAN_INTERVAL = "indexScanInterval";
+    /**
+     * Repository option holding the path of the AIPs metadata snapshot file, or "none" to disable the snapshot.
+     */
+    public static final String OPTION_METADATA_SNAPSHOT = "metadataSnapshot";
+
+    /**
+     * Namespace of the repository's CMIS extensions.
+     */
+    public static final String EXTENSION_NAMESPACE = "http://www.roda-project.org/cmis";
+    /**
+     * Repository option holding the database provider: "sqlite" (default) or "jndi". The statements are written in
+     * the SQLite dialect, so the "jndi" DataSource must connect to a SQLite database.
+     */
+    public static final String OPTION_INDEX_DATABASE = "indexDatabase";
+    /**
+     * Repository option holding the number of read-only SQLite connections.
+     */
+    public static final String OPTION_INDEX_DATABASE_READERS = "indexDatabaseReaders";
+    /**
+     * Repository option holding the JNDI name of the DataSource used by the "jndi" database provider. It must connect
+     * to a SQLite database.
+     */
+    public static final String OPTION_INDEX_DATA_SOURCE = "indexDataSource";
+    /**
+     * Repository option holding the number of compiled queries kept in cache.
+     */
+    public static final String OPTION_QUERY_CACHE_SIZE = "queryCacheSize";
+
+    /**
+     * Repository option enabling the cache of query result counts.
+     */
+    public static final String OPTION_QUERY_COUNT_CACHE = "queryCountCache";
+
+    /**
+     * Repository option holding the number of objects whose compiled properties are kept in cache, 0 to disable it.
+     */
+    public static final String OPTION_PROPERTIES_CACHE_SIZE = "propertiesCacheSize";
+
+    /**
+     * Repository option holding the number of object ids kept in memory, the others are resolved through the index.
+     */
+    public static final String OPTION_ID_CACHE_SIZE = "idCacheSize";
+
+    /**
+     * Repository option holding how getChildren counts the children of the folders inside the AIPs: "cached"
+     * (default) stops listing after the requested page and reports the number of children only when it is known,
+     * "exact" goes on to the end of the folder to count them.
+     */
+    public static final String OPTION_CHILDREN_COUNT = "childrenCount";
+
+    /**
+     * Repository option holding the order getChildren sorts the children by when the client gives none, for example
+     * "cmis:name": empty (default) lists them in the order the file system returns them.
+     */
+    public static final String OPTION_CHILDREN_ORDER_BY = "childrenOrderBy";
+
+    /**
+     * Repository option holding the number of threads gathering the subtrees of getDescendants and getFolderTree,
+     * shared by all the requests (defaults to the number of processors).
+     */
+    public static final String OPTION_DESCENDANTS_THREADS = "descendantsThreads";
+
+    /**
+     * Repository option holding the maximum number of objects getDescendants and getFolderTree return: larger trees
+     * fail with a constraint error.
+     */
+    public static final String OPTION_DESCENDANTS_MAX_ITEMS = "descendantsMaxItems";
+
+    /**
+     * Repository option holding the milliseconds getDescendants and getFolderTree may take to gather a tree before
+     * failing with a constraint error, counted from when the gathering starts. A request that waits as long for a
+     * free thread fails with a runtime error instead.
+     */
+    public static final String OPTION_DESCENDANTS_TIMEOUT = "descendantsTimeout";
+
+    /**
+     * Default maximum number of objects of getDescendants and getFolderTree.
+     */
+    public static final int DEFAULT_DESCENDANTS_MAX_ITEMS = 10000;
+
+    /**
+     * Default milliseconds getDescendants and getFolderTree may take.
+     */
+    public static final int DEFAULT_DESCENDANTS_TIMEOUT = 30000;
+
+    /**
+     * Repository option holding the comma separated list of fields with an index in the objects database.
+     */
+    public static final String OPTION_INDEXED_FIELDS = "indexedFields";
+
     /**
      * Repository id.
      */
@@ -70,6 +221,11 @@ public class FileBridgeRepository {
 
     public FileBridgeRepository(final String repositoryId, final String rootPath,
                                 final FileBridgeTypeManager typeManager) {
+        this(repositoryId, rootPath, typeManager, Collections.<String, String>emptyMap());
+    }
+
+    public FileBridgeRepository(final String repositoryId, final String rootPath,
+                                final FileBridgeTypeManager typeManager, final Map<String, String> options) {
         // check repository id
         if (repositoryId == null || repositoryId.trim().length() == 0) {
             throw new IllegalArgumentException("Invalid repository id!");
@@ -90,15 +246,70 @@ public class FileBridgeRepository {
         // set type manager objects
         this.typeManager = typeManager;
 
+        // set up the navigation tree
+        navigationTree = new FileBridgeNavigationTree(root);
+
         // set up read-write user map
         readWriteUserMap = new HashMap<String, Boolean>();
 
-        // set up aip metadata map
-        aipMetadataMap = new HashMap<String, AipMetadata>();
+        // set up the compiled properties cache
+        propertiesCache.setSize(FileBridgeUtils.getIntegerOption(options, OPTION_PROPERTIES_CACHE_SIZE,
+                FileBridgePropertiesCache.DEFAULT_SIZE));
+
+        // set up aip metadata store and the snapshot written by the previous run
+        aipMetadataStore = new AipMetadataStore();
+        String snapshotPath = FileBridgeUtils.getStringOption(options, OPTION_METADATA_SNAPSHOT,
+                repositoryId + "-metadata.snapshot");
+        metadataSnapshotFile = ("none".equalsIgnoreCase(snapshotPath) ? null : new File(snapshotPath));
+        if (metadataSnapshotFile != null) {
+            try {
+                metadataSnapshot = AipMetadataSnapshot.open(metadataSnapshotFile);
+            } catch (IOException e) {
+                System.err.println("Could not open the metadata snapshot: " + e.getMessage());
+            }
+        }
 
         // set up database for the repository
-        database = new Database("SQLite");
-        this.loadRepositoryContentsInfoRecursive(root);
+        database = new Database(FileBridgeUtils.getStringOption(options, OPTION_INDEX_DATABASE, "SQLite"),
+                FileBridgeUtils.getIntegerOption(options, OPTION_INDEX_DATABASE_READERS, SQLiteConnectionPool.DEFAULT_READERS),
+                FileBridgeUtils.getStringOption(options, OPTION_INDEX_DATA_SOURCE, null),
+                new FileBridgeQueryTypeManager(typeManager));
+        database.getQueryCompiler().setCacheSize(FileBridgeUtils.getIntegerOption(options, OPTION_QUERY_CACHE_SIZE,
+                QueryCompiler.DEFAULT_CACHE_SIZE));
+        database.setCountCacheEnabled(FileBridgeUtils.getBooleanOption(options, OPTION_QUERY_COUNT_CACHE, true));
+        database.setBatchSize(FileBridgeUtils.getIntegerOption(options, OPTION_INDEX_BATCH_SIZE,
+                Database.DEFAULT_BATCH_SIZE));
+        database.setIndexedFields(FileBridgeUtils.getListOption(options, OPTION_INDEXED_FIELDS,
+                Database.DEFAULT_INDEXED_FIELDS));
+        objectIds = new FileBridgeObjectIds(root, database);
+        objectIds.setCacheSize(FileBridgeUtils.getIntegerOption(options, OPTION_ID_CACHE_SIZE,
+                FileBridgeObjectIds.DEFAULT_CACHE_SIZE));
+        indexer = new FileBridgeIndexer(this, database);
+        indexer.setParallelism(FileBridgeUtils.getIntegerOption(options, OPTION_INDEX_THREADS,
+                FileBridgeIndexer.DEFAULT_PARALLELISM));
+        queryWhileIndexing = FileBridgeUtils.getStringOption(options, OPTION_QUERY_WHILE_INDEXING, "partial");
+        childrenCount = FileBridgeUtils.getStringOption(options, OPTION_CHILDREN_COUNT, "cached");
+        childrenOrderBy = FileBridgeChildrenSnapshot.normalizeOrderBy(
+                FileBridgeUtils.getStringOption(options, OPTION_CHILDREN_ORDER_BY, ""));
+        descendantsPool = new ForkJoinPool(Math.max(1, FileBridgeUtils.getIntegerOption(options,
+                OPTION_DESCENDANTS_THREADS, Runtime.getRuntime().availableProcessors())));
+        descendantsMaxItems = FileBridgeUtils.getIntegerOption(options, OPTION_DESCENDANTS_MAX_ITEMS,
+                DEFAULT_DESCENDANTS_MAX_ITEMS);
+        descendantsTimeout = FileBridgeUtils.getIntegerOption(options, OPTION_DESCENDANTS_TIMEOUT,
+                DEFAULT_DESCENDANTS_TIMEOUT);
+        // the watcher starts first, so the changes made during the crawl are indexed after it
+        watcher = new FileBridgeWatcher(this, indexer);
+        watcher.setMode(FileBridgeUtils.getStringOption(options, OPTION_INDEX_WATCH, FileBridgeWatcher.MODE_WATCH));
+        watcher.setDelay(FileBridgeUtils.getIntegerOption(options, OPTION_INDEX_WATCH_DELAY,
+                FileBridgeWatcher.DEFAULT_DELAY));
+        watcher.setScanInterval(FileBridgeUtils.getIntegerOption(options, OPTION_INDEX_SCAN_INTERVAL,
+                FileBridgeWatcher.DEFAULT_SCAN_INTERVAL));
+        watcher.start();
+        if (FileBridgeUtils.getBooleanOption(options, OPTION_INDEX_IN_BACKGROUND, true)) {
+            indexer.startIndexing();
+        } else {
+            indexer.indexRepository();
+        }
 
         // set up repository infos
         repositoryInfo10 = createRepositoryInfo(CmisVersion.CMIS_1_0);
@@ -110,12 +321,46 @@ public class FileBridgeRepository {
     // -----------------------------------------------------------------------------------------------------------------
 
     /**
-     * AIPs Metadata Map.
+     * AIPs Metadata Store.
      *
      * This variable is responsible for keeping each AIP's metadata in memory to be used across the various server's
-     * methods calls.
+     * methods calls. The values are dictionary encoded per field, so repeated values are kept once. AIPs left
+     * untouched by the startup reconciliation are loaded on first use.
+     */
+    private final AipMetadataStore aipMetadataStore;
+
+    /**
+     * AIPs Metadata Snapshot.
+     *
+     * The metadata of every readable AIP, memory mapped from the file written after the last repository indexing.
+     * The store above only keeps the AIPs loaded since then, so the snapshot serves the untouched AIPs after a
+     * restart without parsing their XML files again. Null if there is no snapshot yet or it is disabled.
+     */
+    private volatile AipMetadataSnapshot metadataSnapshot = null;
+    private final File metadataSnapshotFile;
+    private volatile boolean metadataSnapshotStale = true;
+
+    /**
+     * AIPs Metadata Versions.
+     *
+     * Every load or removal of an AIP's metadata gives the AIP a new version, so the cached properties compiled from
+     * the previous metadata are no longer used. AIPs never loaded since the startup have version 0. So does a change
+     * of the AIP's "aip.json" file (modification time and size) since its metadata was loaded, as RODA rewrites it on
+     * every change to the AIP, its descriptive metadata included, even when the indexer does not notice the change.
+     */
+    private final AtomicLong aipMetadataVersion = new AtomicLong();
+    private final Map<String, Long> aipMetadataVersions = new ConcurrentHashMap<String, Long>();
+    private final Map<String, long[]> aipMetadataStamps = new ConcurrentHashMap<String, long[]>();
+
+    /**
+     * Compiled properties of the most recently used objects.
+     */
+    private final FileBridgePropertiesCache propertiesCache = new FileBridgePropertiesCache();
+
+    /**
+     * Children exposed at the root folder, built from the AIPs on first use.
      */
-    private final Map<String, AipMetadata> aipMetadataMap;
+    private FileBridgeNavigationTree navigationTree;
 
     /**
      * Metadata database interaction.
@@ -126,19 +371,75 @@ public class FileBridgeRepository {
     private final Database database;
 
     /**
-     * Can read AIP flag.
+     * Metadata index maintenance.
      *
-     * This boolean variable acts as semaphore to control the access to the AIP information through cycle iterations
-     * in the "loadRepositoryContentsInfoRecursive" function.
+     * All the writes to the database go through the indexer, the read operations never update the index.
+     */
+    private final FileBridgeIndexer indexer;
+
+    /**
+     * Index maintenance of the changes made to the repository while it is served.
+     */
+    private final FileBridgeWatcher watcher;
+
+    /**
+     * What queries do while the index is not ready: "partial" or "error".
+     */
+    private final String queryWhileIndexing;
+
+    /**
+     * How getChildren counts the children of the folders inside the AIPs: "cached" or "exact".
+     */
+    private final String childrenCount;
+
+    /**
+     * The normalized order getChildren sorts the children by when the client gives none, null for none.
+     */
+    private final String childrenOrderBy;
+
+    /**
+     * The object ids handed out, and their files.
+     */
+    private final FileBridgeObjectIds objectIds;
+
+    /**
+     * The threads gathering the subtrees of getDescendants and getFolderTree.
+     */
+    private final ForkJoinPool descendantsPool;
+
+    /**
+     * The maximum number of objects getDescendants and getFolderTree return.
+     */
+    private final int descendantsMaxItems;
+
+    /**
+     * The milliseconds getDescendants and getFolderTree may take.
      */
-    private Boolean canReadAIP = false;
+    private final int descendantsTimeout;
 
     /**
      * Method responsible for loading an AIP metadata into the repository's metadata structures.
      * @param aipId The AIP's unique ID.
      * @param aipJson The aip.json file.
      */
-    private void loadAipMetadata(String aipId, File aipJson) {
+    void loadAipMetadata(String aipId, File aipJson) {
+        // the version of the file is taken first, so a change made while it is read is noticed
+        long[] stamp = new long[]{aipJson.lastModified(), aipJson.length()};
+
+        //store the AIPs read metadata
+        aipMetadataStore.put(compileAipMetadata(aipId, aipJson));
+        metadataSnapshotStale = true;
+        aipMetadataStamps.put(aipId, stamp);
+        aipMetadataVersions.put(aipId, aipMetadataVersion.incrementAndGet());
+    }
+
+    /**
+     * Function responsible for reading an AIP's metadata from its metadata files.
+     * @param aipId The AIP's unique ID.
+     * @param aipJson The aip.json file.
+     * @return The AIP's metadata.
+     */
+    private AipMetadata compileAipMetadata(String aipId, File aipJson) {
         //extract the metadata from the AIP metadata files
         AipMetadata aipMetadata = new AipMetadata(aipId);
         aipMetadata.setEad2002Metadata(FileBridgeUtils.getEAD2002Metadata(aipJson.getPath()));
@@ -149,73 +450,127 @@ public class FileBridgeRepository {
         //System.out.println(aipMetadata.getDublinCore20021212Metadata().toString());
         //System.out.println(aipMetadata.getKeyValueMetadata().toString());
 
-        //store the AIPs read metadata
-        aipMetadataMap.put(aipId, aipMetadata);
+        return aipMetadata;
     }
 
     /**
-     * Recursive function responsible for loading all the repository contents to the database.
-     * This function is called in this class's constructor as it should only happen once when you bootstrap
-     * the repository's CMIS server.
-     * @param file The repository's root folder.
+     * Method responsible for dropping a removed AIP's metadata from the repository's metadata structures.
+     * @param aipId The AIP's unique ID.
      */
-    private void loadRepositoryContentsInfoRecursive(File file) {
-        if (file == null) { return; }
-
-        //get path length
-        String relativePath = file.getPath().replace(root.getPath()+"/", "");
-        int pathLength = relativePath.split("/").length;
+    void unloadAipMetadata(String aipId) {
+        aipMetadataStore.remove(aipId);
+        metadataSnapshotStale = true;
+        aipMetadataStamps.remove(aipId);
+        aipMetadataVersions.put(aipId, aipMetadataVersion.incrementAndGet());
+        FileBridgeUtils.removeAipDescriptor(new File(new File(root, aipId), "aip.json").getPath());
+    }
 
-        // Check the "aip.json" file for AIP read permissions
-        if (relativePath.toLowerCase().contains("aip.json")) {
-            canReadAIP = FileBridgeUtils.canReadAIP(file.getPath());
-            //System.out.println("AIP FOUND. Can read: " + canReadAIP);
-            // Load the AIP metadata files
-            String aipId = relativePath.split("/")[0];
-            if (canReadAIP && !aipMetadataMap.containsKey(aipId)) {
-                loadAipMetadata(aipId, file);
-            }
+    /**
+     * Method responsible for writing a new metadata snapshot with all the readable AIPs, if the metadata changed
+     * since the current snapshot was written. The AIPs are taken from the store, from the current snapshot if they
+     * did not change, or read from their metadata files. Once the new snapshot is in place the store only keeps the
+     * AIPs loaded after it was written.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    void writeMetadataSnapshot() throws IOException {
+        if (metadataSnapshotFile == null || (!metadataSnapshotStale && metadataSnapshot != null)) {
+            return;
         }
-
-        if (!file.isDirectory()) {
-            //FILE - cmis:document / cmis:rodaDocument
-            //extract info, but only for the files inside the "representations" folder
-            if ((pathLength >= 4) && canReadAIP &&
-                    (relativePath.toLowerCase().contains("/representations/")) &&
-                    (!relativePath.toLowerCase().contains("/metadata/"))) {
-                //System.out.println("FILE FOUND: " + file.getPath());
-                ObjectInfoImpl objectInfo = new ObjectInfoImpl();
-                compileProperties(null, file, null, objectInfo);
+        metadataSnapshotStale = false;
+
+        AipMetadataSnapshot snapshot = metadataSnapshot;
+        AipMetadataSnapshot.Writer writer = new AipMetadataSnapshot.Writer(metadataSnapshotFile);
+        List<String> storedAipIds = new ArrayList<String>();
+        for (FileBridgeEntry aipEntry : FileBridgeEntry.list(root)) {
+            if (!aipEntry.isDirectory()) { continue; }
+            String aipId = aipEntry.getName();
+            FileBridgeEntry aipJson = FileBridgeEntry.read(new File(aipEntry.getFile(), "aip.json"));
+            if (aipJson == null || !aipJson.isFile()) { continue; }
+
+            AipMetadata aipMetadata = aipMetadataStore.get(aipId);
+            if (aipMetadata != null) {
+                storedAipIds.add(aipId);
+            } else if (snapshot != null) {
+                aipMetadata = snapshot.get(aipId, aipJson.lastModified(), aipJson.length());
             }
-        } else {
-            //FOLDER - cmis:folder
-            //extract info, but only for the folders inside the "representations" folder
-            if ((pathLength >= 5) && canReadAIP &&
-                    (relativePath.toLowerCase().contains("/representations/")) &&
-                    (!relativePath.toLowerCase().contains("/metadata/"))) {
-                //System.out.println("FOLDER FOUND: " + file.getPath());
-                ObjectInfoImpl objectInfo = new ObjectInfoImpl();
-                compileProperties(null, file, null, objectInfo);
+            if (aipMetadata == null) {
+                if (!FileBridgeUtils.canReadAIP(aipJson.getFile().getPath())) { continue; }
+                aipMetadata = compileAipMetadata(aipId, aipJson.getFile());
             }
+            writer.add(aipMetadata, aipJson.lastModified(), aipJson.length());
+        }
+        writer.close();
+
+        metadataSnapshot = AipMetadataSnapshot.open(metadataSnapshotFile);
+        for (String aipId : storedAipIds) {
+            aipMetadataStore.remove(aipId);
+        }
+    }
+
+    /**
+     * Method responsible for stopping the repository's background work and closing its database.
+     */
+    public void close() {
+        watcher.stop();
+        indexer.stop();
+        descendantsPool.shutdownNow();
+        database.close();
+    }
 
-            // iterate through the file's children
-            for (File child : file.listFiles()) {
-                // skip hidden files, for example '.DS_Store'
-                if (child.isHidden()) { continue; }
-                loadRepositoryContentsInfoRecursive(child);
+    /**
+     * Function responsible for returning an AIP's metadata, from the store, from the snapshot if the AIP did not
+     * change since it was written, or loading it on first use.
+     * @param aipId The AIP's unique ID.
+     * @return The AIP's metadata, or null if the AIP does not exist or cannot be read through CMIS.
+     */
+    private AipMetadata getAipMetadata(String aipId) {
+        // drops the stored metadata if the AIP changed since it was loaded
+        getAipMetadataVersion(aipId);
+
+        AipMetadata aipMetadata = aipMetadataStore.get(aipId);
+        if (aipMetadata == null) {
+            File aipJson = new File(new File(root, aipId), "aip.json");
+            AipMetadataSnapshot snapshot = metadataSnapshot;
+            if (snapshot != null) {
+                long lastModified = aipJson.lastModified();
+                long size = aipJson.length();
+                aipMetadata = snapshot.get(aipId, lastModified, size);
+                if (aipMetadata != null) {
+                    aipMetadataStamps.putIfAbsent(aipId, new long[]{lastModified, size});
+                }
+            }
+            if (aipMetadata == null && aipJson.isFile() && FileBridgeUtils.canReadAIP(aipJson.getPath())) {
+                loadAipMetadata(aipId, aipJson);
+                aipMetadata = aipMetadataStore.get(aipId);
             }
         }
+        return aipMetadata;
     }
 
     // --- CMIS operations ---
 
     /**
-     * CMIS getChildren.
+     * CMIS getChildren, in the order the children are listed (or the configured order).
      */
     public ObjectInFolderList getChildren(CallContext context, String folderId,
                                           String filter, Boolean includeAllowableActions,
                                           Boolean includePathSegment, BigInteger maxItems,
                                           BigInteger skipCount, ObjectInfoHandler objectInfos) {
+        return getChildren(context, folderId, filter, null, includeAllowableActions, includePathSegment, maxItems,
+                skipCount, null, objectInfos);
+    }
+
+    /**
+     * CMIS getChildren. When the children are sorted, the pages are slices of a sorted snapshot of the folder's
+     * children, and every page but the last one returns the token of the next page in the "nextPageToken" extension.
+     * @param orderBy The CMIS order, null for the configured order.
+     * @param pageToken The token returned with the previous page, to resume the listing after it (in the order the
+     *                  token was issued for, skipCount is then ignored). Null to start at skipCount.
+     */
+    public ObjectInFolderList getChildren(CallContext context, String folderId,
+                                          String filter, String orderBy, Boolean includeAllowableActions,
+                                          Boolean includePathSegment, BigInteger maxItems,
+                                          BigInteger skipCount, String pageToken, ObjectInfoHandler objectInfos) {
 
         boolean userReadOnly = checkUser(context, false);
 
@@ -233,6 +588,18 @@ public class FileBridgeRepository {
         int max = (maxItems == null ? Integer.MAX_VALUE : maxItems.intValue());
         if (max < 0) { max = Integer.MAX_VALUE; }
 
+        // order, the one of the page token when resuming a listing
+        String order = (orderBy == null || orderBy.trim().length() == 0 ? childrenOrderBy
+                : FileBridgeChildrenSnapshot.normalizeOrderBy(orderBy));
+        FileBridgeChildrenSnapshot.PageToken token = null;
+        if (pageToken != null && pageToken.length() > 0) {
+            token = FileBridgeChildrenSnapshot.PageToken.decode(pageToken);
+            if (orderBy != null && orderBy.trim().length() > 0 && !token.getOrderBy().equals(order)) {
+                throw new CmisInvalidArgumentException("The page token was issued for another order!");
+            }
+            order = token.getOrderBy();
+        }
+
         // get the folder
         File folder = getFile(folderId);
         if (!folder.isDirectory()) {
@@ -248,119 +615,70 @@ public class FileBridgeRepository {
         ObjectInFolderListImpl result = new ObjectInFolderListImpl();
         result.setObjects(new ArrayList<ObjectInFolderData>());
         result.setHasMoreItems(false);
-        int count = 0;
-
-        // iterate through children
-        for (File child : folder.listFiles()) {
-            // skip hidden files, for example '.DS_Store'
-            if (child.isHidden()) { continue; }
-
-            //************************************************************************************
-            //BEGIN - AIP FILE BRIDGE
-
-            String relativePath = child.getPath().replace(root.getPath()+"/", "");
-            int pathLength = relativePath.split("/").length;
 
-            if (pathLength == 1) {
-                //**********************************************************
-                // WE ARE READING THE AIP INITIAL FOLDER
-                //**********************************************************
-                Boolean canReadAIP = false;
+        //************************************************************************************
+        //BEGIN - AIP FILE BRIDGE
 
-                //**********************************************************
-                //we are in the AIPs "<guid>" root folder, iterate the direct children
-                for (File firstLevelChild : child.listFiles()) {
-                    // skip hidden files, for example '.DS_Store'
-                    if (firstLevelChild.isHidden()) { continue; }
+        String relativePath = folder.getPath().replace(root.getPath(), "");
+        int pathLength = (relativePath.length() == 0 ? 0 : relativePath.substring(1).split("/").length);
 
-                    String firstLevelRelativePath = firstLevelChild.getPath().replace(root.getPath()+"/", "");
-                    String[] firstLevelPathElements = firstLevelRelativePath.split("/");
+        if (pathLength > 0 && pathLength < 5) {
+            //*********************************************************************
+            // WE ARE IN BETWEEN DIRECTORIES WE DO NOT WANT TO BE ABLE TO BROWSE
+            //*********************************************************************
 
-                    //**********************************************************
-                    // Check the "aip.json" file for AIP read permissions
-                    if ((firstLevelPathElements.length == 2) && (firstLevelPathElements[1].equals("aip.json"))) {
-                        canReadAIP = FileBridgeUtils.canReadAIP(firstLevelChild.getPath());
-                    }
+            return this.getChildren(context, ROOT_ID, filter, orderBy, includeAllowableActions, includePathSegment,
+                    maxItems, skipCount, pageToken, objectInfos);
+        } else if (order != null) {
+            //*********************************************************************
+            // SORTED CHILDREN: A SLICE OF THE FOLDER'S SNAPSHOT (THE ROOT'S CHILDREN ARE THE EXPOSED ONES)
+            //*********************************************************************
 
-                    if ((firstLevelPathElements.length == 2) && (firstLevelPathElements[1].equals("representations")) && canReadAIP) {
-                        //**********************************************************
-                        //we are in the "representations" folder, iterate the direct children
-                        for (File secondLevelChild : firstLevelChild.listFiles()) {
-                            // skip hidden files, for example '.DS_Store'
-                            if (secondLevelChild.isHidden()) { continue; }
-
-                            //**********************************************************
-                            //we are in the "repX" folder, iterate the direct children
-                            for (File thirdLevelChild : secondLevelChild.listFiles()) {
-                                // skip hidden files, for example '.DS_Store'
-                                if (thirdLevelChild.isHidden()) { continue; }
-
-                                String thirdLevelRelativePath = thirdLevelChild.getPath().replace(root.getPath()+"/", "");
-                                String[] thirdLevelPathElements = thirdLevelRelativePath.split("/");
-
-                                if ((thirdLevelPathElements.length == 4) && (thirdLevelPathElements[3].equals("data"))) {
-                                    //**********************************************************
-                                    //we are in the "repX/data" folder, iterate the direct children
-                                    //these are the files we are exposing through the CMIS server
-                                    for (File fourthLevelChild : thirdLevelChild.listFiles()) {
-                                        // skip hidden files, for example '.DS_Store'
-                                        if (fourthLevelChild.isHidden()) { continue; }
-
-                                        count++;
-
-                                        if (skip > 0) {
-                                            skip--;
-                                            continue;
-                                        }
-
-                                        if (result.getObjects().size() >= max) {
-                                            result.setHasMoreItems(true);
-                                            continue;
-                                        }
-
-                                        ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
-                                        objectInFolder.setObject(compileObjectData(context, fourthLevelChild,
-                                                filterCollection, iaa, false, userReadOnly, objectInfos));
-                                        if (ips) { objectInFolder.setPathSegment(fourthLevelChild.getName()); }
-
-                                        result.getObjects().add(objectInFolder);
-                                    }
-                                    //END "repX/data" folder
-                                    //**********************************************************
-                                }
-                            }
-                            //END "rep1, rep2" folder
-                            //**********************************************************
-                        }
-                        //END "representations" folder
-                        //**********************************************************
-                    }
-                }
-                //END AIP root folder
-                //**********************************************************
-            } else if (pathLength > 1 && pathLength < 6) {
-                //*********************************************************************
-                // WE ARE IN BETWEEN DIRECTORIES WE DO NOT WANT TO BE ABLE TO BROWSE
-                //*********************************************************************
-
-                return this.getChildren(context, ROOT_ID, filter, includeAllowableActions, includePathSegment, maxItems,
-                        skipCount, objectInfos);
-            } else {
-                //*********************************************************************
-                // WE ARE ALREADY INSIDE THE AIP, SO WE HAVE PERMISSIONS TO BE THERE ;)
-                //*********************************************************************
-                count++;
+            FileBridgeChildrenSnapshot snapshot = navigationTree.getSnapshot(folder, order);
+            int from = (token == null ? skip : snapshot.getPosition(token));
+            for (FileBridgeEntry child : snapshot.list(from, max)) {
+                ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+                objectInFolder.setObject(compileObjectData(context, child,
+                        filterCollection, iaa, false, userReadOnly, objectInfos));
+                if (ips) { objectInFolder.setPathSegment(child.getName()); }
 
-                if (skip > 0) {
-                    skip--;
-                    continue;
-                }
+                result.getObjects().add(objectInFolder);
+            }
+            result.setHasMoreItems((long) from + max < snapshot.size());
+            result.setNumItems(BigInteger.valueOf(snapshot.size()));
+            if (result.hasMoreItems() && from + max > 0) {
+                List<CmisExtensionElement> extensions = new ArrayList<CmisExtensionElement>();
+                extensions.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "nextPageToken", null,
+                        snapshot.getPageToken(from + max)));
+                result.setExtensions(extensions);
+            }
+        } else if (pathLength == 0) {
+            //**********************************************************
+            // WE ARE READING THE ROOT FOLDER: THE "repX/data" CHILDREN OF ALL THE READABLE AIPS
+            //**********************************************************
 
-                if (result.getObjects().size() >= max) {
-                    result.setHasMoreItems(true);
-                    continue;
-                }
+            // the navigation tree holds them already flattened, only the page is read from disk
+            int count = navigationTree.size();
+            for (FileBridgeEntry child : navigationTree.list(skip, max)) {
+                ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+                objectInFolder.setObject(compileObjectData(context, child,
+                        filterCollection, iaa, false, userReadOnly, objectInfos));
+                if (ips) { objectInFolder.setPathSegment(child.getName()); }
 
+                result.getObjects().add(objectInFolder);
+            }
+            result.setHasMoreItems((long) skip + max < count);
+            result.setNumItems(BigInteger.valueOf(count));
+        } else {
+            //*********************************************************************
+            // WE ARE ALREADY INSIDE THE AIP, SO WE HAVE PERMISSIONS TO BE THERE ;)
+            //*********************************************************************
+
+            // list the children up to the end of the page (hidden files, for example '.DS_Store', are not listed)
+            FileBridgeEntry folderEntry = FileBridgeEntry.read(folder);
+            long version = (folderEntry != null ? folderEntry.getVersion() : -1);
+            FileBridgeEntry.Page page = FileBridgeEntry.list(folder, skip, max, "exact".equalsIgnoreCase(childrenCount));
+            for (FileBridgeEntry child : page.getEntries()) {
                 ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
                 objectInFolder.setObject(compileObjectData(context, child,
                         filterCollection, iaa, false, userReadOnly, objectInfos));
@@ -368,12 +686,23 @@ public class FileBridgeRepository {
 
                 result.getObjects().add(objectInFolder);
             }
+            result.setHasMoreItems(page.hasMoreItems());
 
-            //END - AIP FILE BRIDGE
-            //************************************************************************************
+            // the number of children is only known if the folder was listed to the end, or counted before
+            if (page.getNumItems() >= 0) {
+                // a folder modified within the last seconds may still change without getting a new version
+                if (folderEntry != null && !folderEntry.isRecentlyModified()) {
+                    navigationTree.putChildCount(folder, version, page.getNumItems());
+                }
+                result.setNumItems(BigInteger.valueOf(page.getNumItems()));
+            } else {
+                long childCount = navigationTree.getChildCount(folder, version);
+                if (childCount >= 0) { result.setNumItems(BigInteger.valueOf(childCount)); }
+            }
         }
 
-        result.setNumItems(BigInteger.valueOf(count));
+        //END - AIP FILE BRIDGE
+        //************************************************************************************
 
         return result;
     }
@@ -392,7 +721,7 @@ public class FileBridgeRepository {
         File folder = getFile(ROOT_ID);
 
         //get the parsed query object
-        Query query = new Query(statement);
+        Query query = database.getQueryCompiler().compile(statement);
         if (query.getQueryType() == null) {
             throw new CmisInvalidArgumentException("Invalid or unsupported query.");
         } else if (query.getQueryType().equals("IN_FOLDER")) {
@@ -428,149 +757,80 @@ public class FileBridgeRepository {
         result.setHasMoreItems(false);
         int count = 0;
 
-        // iterate through children
-        for (File hit : folder.listFiles()) {
+        // iterate through the children exposed at the root folder, held by the navigation tree
+        // (hidden files, for example '.DS_Store', are not listed)
+        List<FileBridgeEntry> hits = (root.equals(folder) ? navigationTree.list(0, Integer.MAX_VALUE)
+                : Collections.<FileBridgeEntry>emptyList());
+        for (FileBridgeEntry hit : hits) {
+            // skip directory if documents are requested
+            if (hit.isDirectory() && queryFiles) { continue; }
 
-            // skip hidden files, for example '.DS_Store'
-            if (hit.isHidden()) { continue; }
+            // skip files if folders are requested
+            if (hit.isFile() && !queryFiles) { continue; }
 
-            //************************************************************************************
-            //BEGIN - AIP FILE BRIDGE
+            count++;
 
-            String relativePath = hit.getPath().replace(root.getPath()+"/", "");
-            int pathLength = relativePath.split("/").length;
+            if (skip > 0) { skip--; continue; }
 
-            //**********************************************************
-            // WE ARE READING THE AIP INITIAL FOLDER
-            //**********************************************************
-            Boolean canReadAIP = false;
+            if (result.getObjects().size() >= max) { result.setHasMoreItems(true); continue; }
 
-            //**********************************************************
-            //we are in the AIPs "<guid>" root folder, iterate the direct children
-            for (File firstLevelChild : hit.listFiles()) {
-                // skip hidden files, for example '.DS_Store'
-                if (firstLevelChild.isHidden()) { continue; }
-
-                String firstLevelRelativePath = firstLevelChild.getPath().replace(root.getPath()+"/", "");
-                String[] firstLevelPathElements = firstLevelRelativePath.split("/");
-
-                //**********************************************************
-                // Check the "aip.json" file for AIP read permissions
-                if ((firstLevelPathElements.length == 2) && (firstLevelPathElements[1].equals("aip.json"))) {
-                    canReadAIP = FileBridgeUtils.canReadAIP(firstLevelChild.getPath());
+            // build and add child object
+            ObjectData object = compileObjectData(context, hit, null, iaa, false, userReadOnly, objectInfos);
+            boolean isMatch = false;
+
+            // set query names
+            for (PropertyData<?> prop : object.getProperties().getPropertyList()) {
+
+                //all fields selected - try to extract as many properties / fields as possible from the current object type
+                if (query.searchAllFields()) {
+                    if (type.getPropertyDefinitions().get(prop.getId()) != null) {
+                        ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
+                        if (query.hasWhereConditions()) {
+                            Object value = null;
+                            if (!((MutablePropertyData<?>) prop).getValues().isEmpty()) {
+                                value = ((MutablePropertyData<?>) prop).getValues().get(0);
+                            }
+                            isMatch = query.isWhereMatch(type.getPropertyDefinitions().get(prop.getId()).getQueryName(),
+                                    value);
+                            if (isMatch) break;
+                        } else {
+                            isMatch = true;
+                        }
+                    }
                 }
+                //specific fields selected - extract only the selected properties / fields from the current object type
+                else {
+                    String[] fieldsArray = query.getFieldsArray();
 
-                if ((firstLevelPathElements.length == 2) && (firstLevelPathElements[1].equals("representations")) && canReadAIP) {
-                    //**********************************************************
-                    //we are in the "representations" folder, iterate the direct children
-                    for (File secondLevelChild : firstLevelChild.listFiles()) {
-                        // skip hidden files, for example '.DS_Store'
-                        if (secondLevelChild.isHidden()) { continue; }
-
-                        //**********************************************************
-                        //we are in the "repX" folder, iterate the direct children
-                        for (File thirdLevelChild : secondLevelChild.listFiles()) {
-                            // skip hidden files, for example '.DS_Store'
-                            if (thirdLevelChild.isHidden()) { continue; }
-
-                            String thirdLevelRelativePath = thirdLevelChild.getPath().replace(root.getPath()+"/", "");
-                            String[] thirdLevelPathElements = thirdLevelRelativePath.split("/");
-
-                            if ((thirdLevelPathElements.length == 4) && (thirdLevelPathElements[3].equals("data"))) {
-                                //**********************************************************
-                                //we are in the "repX/data" folder, iterate the direct children
-                                //these are the files we are exposing through the CMIS server
-                                for (File fourthLevelChild : thirdLevelChild.listFiles()) {
-                                    // skip hidden files, for example '.DS_Store'
-                                    if (fourthLevelChild.isHidden()) { continue; }
-
-                                    // skip directory if documents are requested
-                                    if (fourthLevelChild.isDirectory() && queryFiles) { continue; }
-
-                                    // skip files if folders are requested
-                                    if (fourthLevelChild.isFile() && !queryFiles) { continue; }
-
-                                    count++;
-
-                                    if (skip > 0) { skip--; continue; }
-
-                                    if (result.getObjects().size() >= max) { result.setHasMoreItems(true); continue; }
-
-                                    // build and add child object
-                                    ObjectData object = compileObjectData(context, fourthLevelChild, null, iaa, false, userReadOnly, objectInfos);
-                                    boolean isMatch = false;
-
-                                    // set query names
-                                    for (PropertyData<?> prop : object.getProperties().getPropertyList()) {
-
-                                        //all fields selected - try to extract as many properties / fields as possible from the current object type
-                                        if (query.searchAllFields()) {
-                                            if (type.getPropertyDefinitions().get(prop.getId()) != null) {
-                                                ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
-                                                if (query.hasWhereConditions()) {
-                                                    Object value = null;
-                                                    if (!((MutablePropertyData<?>) prop).getValues().isEmpty()) {
-                                                        value = ((MutablePropertyData<?>) prop).getValues().get(0);
-                                                    }
-                                                    isMatch = query.isWhereMatch(type.getPropertyDefinitions().get(prop.getId()).getQueryName(),
-                                                            value);
-                                                    if (isMatch) break;
-                                                } else {
-                                                    isMatch = true;
-                                                }
-                                            }
-                                        }
-                                        //specific fields selected - extract only the selected properties / fields from the current object type
-                                        else {
-                                            String[] fieldsArray = query.getFieldsArray();
-
-                                            if ((type.getPropertyDefinitions().get(prop.getId()) != null)) {
-                                                //only include the requested fields
-                                                for (int i = 0; i < fieldsArray.length; i++) {
-
-                                                    if (type.getPropertyDefinitions().get(prop.getId()).getQueryName().equals(fieldsArray[i])) {
-                                                        ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
-
-                                                        if (query.hasWhereConditions()) {
-                                                            Object value = null;
-                                                            if (!((MutablePropertyData<?>) prop).getValues().isEmpty()) {
-                                                                value = ((MutablePropertyData<?>) prop).getValues().get(0);
-                                                            }
-                                                            if (!isMatch) isMatch = query.isWhereMatch(
-                                                                    type.getPropertyDefinitions().get(prop.getId()).getQueryName(),
-                                                                    value);
-                                                        } else {
-                                                            isMatch = true;
-                                                        }
-
-                                                    }
-
-                                                }
-                                            }
-
-                                        }
+                    if ((type.getPropertyDefinitions().get(prop.getId()) != null)) {
+                        //only include the requested fields
+                        for (int i = 0; i < fieldsArray.length; i++) {
 
-                                    }
+                            if (type.getPropertyDefinitions().get(prop.getId()).getQueryName().equals(fieldsArray[i])) {
+                                ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
 
-                                    if (isMatch) result.getObjects().add(object);
+                                if (query.hasWhereConditions()) {
+                                    Object value = null;
+                                    if (!((MutablePropertyData<?>) prop).getValues().isEmpty()) {
+                                        value = ((MutablePropertyData<?>) prop).getValues().get(0);
+                                    }
+                                    if (!isMatch) isMatch = query.isWhereMatch(
+                                            type.getPropertyDefinitions().get(prop.getId()).getQueryName(),
+                                            value);
+                                } else {
+                                    isMatch = true;
                                 }
-                                //END "repX/data" folder
-                                //**********************************************************
+
                             }
+
                         }
-                        //END "rep1, rep2" folder
-                        //**********************************************************
                     }
-                    //END "representations" folder
-                    //**********************************************************
+
                 }
-            }
-            //END AIP root folder
-            //**********************************************************
 
-            //END - AIP FILE BRIDGE
-            //************************************************************************************
+            }
 
+            if (isMatch) result.getObjects().add(object);
         }
 
         result.setNumItems(BigInteger.valueOf(count));
@@ -586,15 +846,11 @@ public class FileBridgeRepository {
                             BigInteger skipCount, ObjectInfoHandler objectInfos) {
         boolean userReadOnly = checkUser(context, false);
 
-        //Query the objects database for results
-        List<String> objectPaths = database.query(statement);
-
-        //get the objects type from the query: cmis:folder / cmis:document / cmis:rodaDocument
-        TypeDefinition type = typeManager.getInternalTypeDefinition(database.getLastQuery().getTypeId());
-        if (type == null) { throw new CmisInvalidArgumentException("Unknown CMIS object type. The supported CMIS object types are: cmis:folder, cmis:document or cmis:rodaDocument."); }
-
-        // set defaults if values not set
-        boolean iaa = FileBridgeUtils.getBooleanParameter(includeAllowableActions, false);
+        // the index is still being built
+        IndexState indexState = indexer.getState();
+        if ((indexState == IndexState.NOT_READY || indexState == IndexState.INDEXING) && "error".equalsIgnoreCase(queryWhileIndexing)) {
+            throw new CmisRuntimeException("The index is warming up (" + indexState.value() + "), try again later.");
+        }
 
         // skip and max
         int skip = (skipCount == null ? 0 : skipCount.intValue());
@@ -603,78 +859,127 @@ public class FileBridgeRepository {
         int max = (maxItems == null ? Integer.MAX_VALUE : maxItems.intValue());
         if (max < 0) { max = Integer.MAX_VALUE; }
 
+        //Query the objects database for the requested page, plus one result to know if there are more items
+        List<Map<String, String>> rows = database.queryRows(statement, skip, (max == Integer.MAX_VALUE ? -1 : max + 1));
+        Query query = database.getLastQuery();
+
+        //get the objects type from the query: cmis:folder / cmis:document / cmis:rodaDocument
+        TypeDefinition type = typeManager.getInternalTypeDefinition(query.getTypeId());
+        if (type == null) { throw new CmisInvalidArgumentException("Unknown CMIS object type. The supported CMIS object types are: cmis:folder, cmis:document or cmis:rodaDocument."); }
+
+        // set defaults if values not set
+        boolean iaa = FileBridgeUtils.getBooleanParameter(includeAllowableActions, false);
+
         // prepare result
         ObjectListImpl result = new ObjectListImpl();
         result.setObjects(new ArrayList<ObjectData>());
-        result.setHasMoreItems(false);
-        int count = 0;
+        result.setHasMoreItems(rows.size() > max);
 
-        ArrayList<String> queryProperties = database.getLastQuery().getFieldsArrayList();
+        //create objects straight from the database rows, the file system is not read
+        for (Map<String, String> row : rows) {
+            if (result.getObjects().size() >= max) { break; }
+            ObjectData objectData = compileObjectData(context, row, query, iaa, userReadOnly, objectInfos);
+            if (objectData != null) { result.getObjects().add(objectData); }
+        }
 
-        //create objects straight from the database results
-        for (String objectPath : objectPaths) {
-            count++;
-            if (skip > 0) { skip--; continue; }
-            if (result.getObjects().size() >= max) { result.setHasMoreItems(true); continue; }
+        //the total is known on the last page, otherwise it is counted (or taken from the counts cache)
+        long count;
+        if (!result.hasMoreItems() && (!rows.isEmpty() || skip == 0)) {
+            count = skip + rows.size();
+        } else {
+            // the counts cache may lag behind the page just read
+            count = Math.max(database.count(statement), skip + rows.size());
+        }
+        result.setNumItems(BigInteger.valueOf(count));
 
-            File resultFile = new File(root.getPath() + objectPath);
+        // flag the results of an incomplete index
+        if (indexState != IndexState.READY) {
+            result.setExtensions(compileIndexExtensions());
+        }
 
-            // build and add object
-            ObjectData object = compileObjectData(context, resultFile, null, iaa, false, userReadOnly, objectInfos, false);
+        return result;
+    }
 
-            // set query names
-            for (PropertyData<?> prop : object.getProperties().getPropertyList()) {
-                if (database.getLastQuery().searchAllFields()) {
-                    //try to extract as many properties / fields as possible from the current object type
-                    //if a property is not present (the object type might not have it) do not include it
-                    if (type.getPropertyDefinitions().get(prop.getId()) != null) {
-                        ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
-                    }
-                } else {
-                    //extract only the properties requested in the query for the current object type
-                    //if a property is not present (the object type might not have it) do not include it
-                    if ((type.getPropertyDefinitions().get(prop.getId()) != null) && queryProperties.contains(prop.getId())) {
-                        ((MutablePropertyData<?>) prop).setQueryName(type.getPropertyDefinitions().get(prop.getId()).getQueryName());
-                    }
-                }
-            }
-            result.getObjects().add(object);
-        }
-        result.setNumItems(BigInteger.valueOf(count));
+    /**
+     * Function responsible for compiling the CMIS extensions describing the index state and its counters, along with
+     * the index database connection pool metrics and the counters of the compiled properties and queries caches.
+     * @return The "index" extension element.
+     */
+    private List<CmisExtensionElement> compileIndexExtensions() {
+        List<CmisExtensionElement> children = new ArrayList<CmisExtensionElement>();
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "state", null, indexer.getState().value()));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "aipsIndexed", null, String.valueOf(indexer.getAipsIndexed())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "foldersIndexed", null, String.valueOf(indexer.getFoldersIndexed())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "documentsIndexed", null, String.valueOf(indexer.getDocumentsIndexed())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "indexErrors", null, String.valueOf(indexer.getIndexErrors())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "lastIndexDuration", null, String.valueOf(indexer.getLastIndexDuration())));
+
+        ConnectionPool connectionPool = database.getConnectionPool();
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "activeConnections", null, String.valueOf(connectionPool.getActiveConnections())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "peakActiveConnections", null, String.valueOf(connectionPool.getPeakActiveConnections())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "connectionWaitAverage", null, String.valueOf(connectionPool.getAverageWaitMillis())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "connectionWaitMax", null, String.valueOf(connectionPool.getMaxWaitMillis())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "connectionTimeouts", null, String.valueOf(connectionPool.getAcquireTimeouts())));
+
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "propertiesCacheObjects", null, String.valueOf(propertiesCache.getCachedObjects())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "propertiesCacheHits", null, String.valueOf(propertiesCache.getHits())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "propertiesCacheMisses", null, String.valueOf(propertiesCache.getMisses())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "propertiesCacheEvictions", null, String.valueOf(propertiesCache.getEvictions())));
+
+        QueryCompiler queryCompiler = database.getQueryCompiler();
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "queryCacheHits", null, String.valueOf(queryCompiler.getCacheHits())));
+        children.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "queryCacheMisses", null, String.valueOf(queryCompiler.getCacheMisses())));
+
+        List<CmisExtensionElement> extensions = new ArrayList<CmisExtensionElement>();
+        extensions.add(new CmisExtensionElementImpl(EXTENSION_NAMESPACE, "index", null, children));
+        return extensions;
+    }
+
+    /**
+     * Function responsible for explaining how the objects database runs a CMIS query, to check which indexes it uses.
+     * @param statement The CMIS query statement.
+     * @return The SQL statement, its parameters and the lines of its query plan.
+     */
+    public List<String> explainQuery(CallContext context, String statement) {
+        checkUser(context, false);
 
-        return result;
+        return database.explain(statement);
     }
 
     // --- helpers ---
 
     /**
-     * [Function Signature #1] Compiles an object type object from a file or folder.
+     * Compiles an object type object from a file or folder. Read-only: the index is never updated.
      */
     private ObjectData compileObjectData(CallContext context, File file,
                                          Set<String> filter, boolean includeAllowableActions,
                                          boolean includeAcl, boolean userReadOnly,
                                          ObjectInfoHandler objectInfos) {
-        return this.compileObjectData(context, file, filter, includeAllowableActions, includeAcl, userReadOnly, objectInfos, true);
+        if (file == null) {
+            throw new IllegalArgumentException("File must not be null!");
+        }
+        return compileObjectData(context, FileBridgeEntry.read(file), filter, includeAllowableActions, includeAcl,
+                userReadOnly, objectInfos);
     }
 
     /**
-     * [Function Signature #2] Compiles an object type object from a file or folder.
+     * Compiles an object type object from a listed file or folder, without reading its attributes again.
      */
-    private ObjectData compileObjectData(CallContext context, File file,
+    private ObjectData compileObjectData(CallContext context, FileBridgeEntry entry,
                                          Set<String> filter, boolean includeAllowableActions,
                                          boolean includeAcl, boolean userReadOnly,
-                                         ObjectInfoHandler objectInfos, Boolean updateProperties) {
+                                         ObjectInfoHandler objectInfos) {
         ObjectDataImpl result = new ObjectDataImpl();
         ObjectInfoImpl objectInfo = new ObjectInfoImpl();
 
-        result.setProperties(compileProperties(context, file, filter, objectInfo, updateProperties));
+        result.setProperties(getProperties(context, entry, filter, objectInfo));
 
         if (includeAllowableActions) {
-            result.setAllowableActions(compileAllowableActions(file, userReadOnly));
+            result.setAllowableActions(compileAllowableActions(entry, userReadOnly));
         }
 
         if (includeAcl) {
-            result.setAcl(compileAcl(file));
+            result.setAcl(compileAcl(entry.getFile()));
             result.setIsExactAcl(true);
         }
 
@@ -687,36 +992,169 @@ public class FileBridgeRepository {
     }
 
     /**
-     * [Function Signature #1] Gathers all base properties of a file or folder.
+     * Function responsible for compiling a query result from its database row, without reading the file system.
+     * Only the properties selected by the query are returned, all the properties of the object's type for 'SELECT *'.
+     * @param row The object's database row, keyed by column name.
+     * @param query The parsed query.
+     * @return The query result, null if the allowable actions are requested and the object no longer exists.
      */
-    private Properties compileProperties(CallContext context, File file, Set<String> orgfilter,
-                                         ObjectInfoImpl objectInfo) {
-        return this.compileProperties(context, file, orgfilter, objectInfo, true);
+    private ObjectData compileObjectData(CallContext context, Map<String, String> row, Query query,
+                                         boolean includeAllowableActions, boolean userReadOnly,
+                                         ObjectInfoHandler objectInfos) {
+        ObjectDataImpl result = new ObjectDataImpl();
+        ObjectInfoImpl objectInfo = new ObjectInfoImpl();
+
+        String typeId = row.get(PropertyIds.OBJECT_TYPE_ID);
+        boolean isFolder = BaseTypeId.CMIS_FOLDER.value().equals(typeId);
+        compileObjectInfoType(objectInfo, isFolder);
+        FileBridgePropertyTemplate template = typeManager.getPropertyTemplate(typeId);
+        if (template == null) { throw new CmisRuntimeException("Unknown type: " + typeId); }
+
+        List<String> selected = (query.searchAllFields() ? null : query.getFieldsArrayList());
+        boolean cmis10 = (context != null && context.getCmisVersion() == CmisVersion.CMIS_1_0);
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        PropertiesImpl properties = new PropertiesImpl();
+        for (Map.Entry<String, String> column : row.entrySet()) {
+            String id = column.getKey();
+            String value = column.getValue();
+            int position = template.indexOf(id);
+            if (position < 0 || (selected != null && !selected.contains(id))) { continue; }
+            // CMIS 1.1 properties, the same for every object of the type, as getObject returns them
+            if (id.equals(PropertyIds.DESCRIPTION) || id.equals(PropertyIds.SECONDARY_OBJECT_TYPE_IDS)
+                    || id.equals(PropertyIds.IS_PRIVATE_WORKING_COPY)) {
+                if (cmis10) { continue; }
+                value = (id.equals(PropertyIds.IS_PRIVATE_WORKING_COPY) ? "0" : null);
+            }
+            // metadata fields are only set when the AIP has metadata
+            if (value == null && !id.startsWith("cmis:")) { continue; }
+
+            AbstractPropertyData<?> property;
+            switch (template.getPropertyType(position)) {
+                case ID:
+                    property = (template.getCardinality(position) == Cardinality.MULTI ?
+                            new PropertyIdImpl(id, (List<String>) null) : new PropertyIdImpl(id, value));
+                    break;
+                case BOOLEAN:
+                    property = new PropertyBooleanImpl(id, value == null ? null : ("1".equals(value) || "true".equals(value)));
+                    break;
+                case INTEGER:
+                    property = new PropertyIntegerImpl(id, value == null ? null : new BigInteger(value));
+                    break;
+                case DATETIME:
+                    GregorianCalendar date = null;
+                    if (value != null) {
+                        try {
+                            date = FileBridgeUtils.millisToCalendar(sdf.parse(value).getTime());
+                        } catch (ParseException ignored) { /* fail silently */ }
+                    }
+                    property = new PropertyDateTimeImpl(id, date);
+                    break;
+                default:
+                    // the date only metadata fields are kept as timestamps, for comparison
+                    if (value != null && DATE_ONLY_FIELDS.contains(id) && value.endsWith(" 00:00:00")) {
+                        value = value.substring(0, value.length() - " 00:00:00".length());
+                    }
+                    property = new PropertyStringImpl(id, value);
+            }
+            property.setQueryName(template.getQueryName(position));
+            properties.addProperty(property);
+        }
+        result.setProperties(properties);
+
+        objectInfo.setId(row.get(PropertyIds.OBJECT_ID));
+        objectInfo.setName(row.get(PropertyIds.NAME));
+        objectInfo.setCreatedBy(row.get(PropertyIds.CREATED_BY));
+        try {
+            if (row.get(PropertyIds.CREATION_DATE) != null) {
+                objectInfo.setCreationDate(FileBridgeUtils.millisToCalendar(sdf.parse(row.get(PropertyIds.CREATION_DATE)).getTime()));
+            }
+            if (row.get(PropertyIds.LAST_MODIFICATION_DATE) != null) {
+                objectInfo.setLastModificationDate(FileBridgeUtils.millisToCalendar(sdf.parse(row.get(PropertyIds.LAST_MODIFICATION_DATE)).getTime()));
+            }
+        } catch (ParseException ignored) { /* fail silently */ }
+        if (isFolder) {
+            objectInfo.setHasParent(row.get(PropertyIds.PARENT_ID) != null);
+        } else {
+            boolean hasContent = (row.get(PropertyIds.CONTENT_STREAM_LENGTH) != null);
+            objectInfo.setHasContent(hasContent);
+            objectInfo.setContentType(hasContent ? row.get(PropertyIds.CONTENT_STREAM_MIME_TYPE) : null);
+            objectInfo.setFileName(hasContent ? row.get(PropertyIds.CONTENT_STREAM_FILE_NAME) : null);
+        }
+
+        if (includeAllowableActions) {
+            // the write permissions are only known by the file system
+            FileBridgeEntry entry = FileBridgeEntry.read(new File(root.getPath() + row.get(PropertyIds.PATH)));
+            // removed since it was indexed
+            if (entry == null) { return null; }
+            result.setAllowableActions(compileAllowableActions(entry, userReadOnly));
+        }
+
+        if (context != null && context.isObjectInfoRequired()) {
+            objectInfo.setObject(result);
+            objectInfos.addObjectInfo(objectInfo);
+        }
+
+        return result;
     }
 
     /**
-     * [Function Signature #2] Gathers all base properties of a file or folder.
+     * Function responsible for returning the folder an object is listed in: the root folder for the children of the
+     * AIPs' data folders ("aip/representations/rep/data/*"), which getChildren exposes at the root, and the parent
+     * folder otherwise. The folders in between are not listed, so no object has them as parent.
+     * @param file The object's file or folder, not the root folder.
+     * @return The object's parent folder.
      */
-    private Properties compileProperties(CallContext context, File file, Set<String> orgfilter,
-                                         ObjectInfoImpl objectInfo, Boolean updateProperties) {
-        if (file == null) {
-            throw new IllegalArgumentException("File must not be null!");
-        }
+    private File getNavigationParent(File file) {
+        File parent = file.getParentFile();
+        if (parent == null || !DATA.equals(parent.getName())) { return parent; }
 
-        // we can't gather properties if the file or folder doesn't exist
-        if (!file.exists()) {
-            throw new CmisObjectNotFoundException("Object not found!");
+        File representations = parent.getParentFile();
+        representations = (representations == null ? null : representations.getParentFile());
+        if (representations != null && REPRESENTATIONS.equals(representations.getName())
+                && representations.getParentFile() != null && root.equals(representations.getParentFile().getParentFile())) {
+            return root;
         }
+        return parent;
+    }
 
-        // copy filter
-        Set<String> filter = (orgfilter == null ? null : new HashSet<String>(
-                orgfilter));
+    /**
+     * Function responsible for compiling the database row of a file or folder. Used by the indexer only.
+     * @param file The object's file or folder.
+     * @return The object's fields, keyed by column name.
+     */
+    Map<String, String> compileIndexRow(FileBridgeEntry entry) {
+        Map<String, String> row = new LinkedHashMap<String, String>();
+        compileProperties(null, entry, null, new ObjectInfoImpl(), row);
+        return row;
+    }
 
-        // find base type
-        String typeId = null;
+    /**
+     * Function responsible for listing the ids and paths of the folders holding a file or folder, up to the
+     * repository root. Used by the indexer only.
+     * @param file The object's file or folder.
+     * @return The ancestors' repository paths keyed by id, starting with the parent folder.
+     */
+    Map<String, String> compileAncestors(File file) {
+        Map<String, String> ancestors = new LinkedHashMap<String, String>();
+        if (root.equals(file)) { return ancestors; }
 
-        // identify if the file is a doc or a folder/directory
-        if (file.isDirectory()) {
+        for (File ancestor = file.getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+            ancestors.put(getId(ancestor), getRepositoryPath(ancestor));
+            if (root.equals(ancestor)) { break; }
+        }
+        return ancestors;
+    }
+
+    /**
+     * Function responsible for setting the type related object info of a folder or a document.
+     * @param objectInfo The object info.
+     * @param isFolder True for a folder, false for a document.
+     * @return The object's type id.
+     */
+    private String compileObjectInfoType(ObjectInfoImpl objectInfo, boolean isFolder) {
+        String typeId;
+        if (isFolder) {
             typeId = BaseTypeId.CMIS_FOLDER.value();
             objectInfo.setBaseType(BaseTypeId.CMIS_FOLDER);
             objectInfo.setTypeId(typeId);
@@ -754,87 +1192,188 @@ public class FileBridgeRepository {
             objectInfo.setWorkingCopyId(null);
             objectInfo.setWorkingCopyOriginalId(null);
         }
+        return typeId;
+    }
+
+    /**
+     * Function responsible for returning the properties of a file or folder selected by a filter. All the object's
+     * properties are compiled once and cached, until the object or its AIP metadata change.
+     * @param entry The file or folder, with the attributes read when it was listed. Null if it does not exist.
+     */
+    private Properties getProperties(CallContext context, FileBridgeEntry entry, Set<String> filter,
+                                     ObjectInfoImpl objectInfo) {
+        if (entry == null) {
+            throw new CmisObjectNotFoundException("Object not found!");
+        }
+        if (propertiesCache.getSize() == 0) {
+            return compileProperties(context, entry, filter, objectInfo, null);
+        }
+
+        // the version is read first, so properties compiled from newer metadata are discarded, never the opposite
+        String objectPath = entry.getFile().getPath();
+        long metadataVersion = getAipMetadataVersion(entry);
+        FileBridgePropertiesCache.CachedProperties cached = propertiesCache.get(context, objectPath,
+                entry.lastModified(), entry.length(), metadataVersion);
+        if (cached == null) {
+            ObjectInfoImpl compiledObjectInfo = new ObjectInfoImpl();
+            Properties properties = compileProperties(context, entry, null, compiledObjectInfo, null);
+            cached = new FileBridgePropertiesCache.CachedProperties(entry, metadataVersion, properties,
+                    compiledObjectInfo, typeManager);
+            propertiesCache.put(context, objectPath, cached);
+        }
+
+        compileObjectInfoType(objectInfo, cached.isFolder());
+        cached.setObjectInfo(objectInfo);
+        return cached.getProperties(filter);
+    }
+
+    /**
+     * Function responsible for returning the version of the metadata of the AIP holding a document.
+     * @param entry The file or folder.
+     * @return The AIP's metadata version, 0 for folders, which have no metadata properties.
+     */
+    private long getAipMetadataVersion(FileBridgeEntry entry) {
+        if (entry.isDirectory()) { return 0; }
+
+        File aip = entry.getFile();
+        while (aip.getParentFile() != null && !root.equals(aip.getParentFile())) {
+            aip = aip.getParentFile();
+        }
+        return getAipMetadataVersion(aip.getName());
+    }
+
+    /**
+     * Function responsible for returning the version of an AIP's metadata. If the AIP's "aip.json" file changed since
+     * the metadata was loaded, the stored metadata is dropped, to be loaded again on use, and the AIP gets a new
+     * version.
+     * @param aipId The AIP's unique ID.
+     * @return The AIP's metadata version.
+     */
+    private long getAipMetadataVersion(String aipId) {
+        long[] stamp = aipMetadataStamps.get(aipId);
+        if (stamp != null) {
+            AipDescriptor aipDescriptor = FileBridgeUtils.getAipDescriptor(
+                    new File(new File(root, aipId), "aip.json").getPath());
+            if (!aipDescriptor.isCurrent(stamp[0], stamp[1])
+                    && aipMetadataStamps.remove(aipId, stamp)) {
+                aipMetadataStore.remove(aipId);
+                metadataSnapshotStale = true;
+                aipMetadataVersions.put(aipId, aipMetadataVersion.incrementAndGet());
+            }
+        }
+        Long version = aipMetadataVersions.get(aipId);
+        return (version == null ? 0 : version);
+    }
+
+    /**
+     * Gathers all base properties of a file or folder.
+     * @param entry The file or folder, with the attributes read when it was listed. Null if it does not exist.
+     * @param indexRow When not null, it is filled with the object's database row. Null on the read path.
+     */
+    private Properties compileProperties(CallContext context, FileBridgeEntry entry, Set<String> filter,
+                                         ObjectInfoImpl objectInfo, Map<String, String> indexRow) {
+        // we can't gather properties if the file or folder doesn't exist
+        if (entry == null) {
+            throw new CmisObjectNotFoundException("Object not found!");
+        }
+        File file = entry.getFile();
+
+        // find base type
+        String typeId = null;
+
+        // identify if the file is a doc or a folder/directory
+        typeId = compileObjectInfoType(objectInfo, entry.isDirectory());
+        FileBridgePropertyTemplate template = typeManager.getPropertyTemplate(typeId);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown type: " + typeId);
+        }
+        boolean[] selected = template.select(filter);
 
         // let's do it
         try {
             PropertiesImpl result = new PropertiesImpl();
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
+            // database row holding the object's fields, only kept when indexing
+            Map<String, String> row = (indexRow != null ? indexRow : new HashMap<String, String>());
+
             // id
             String id = fileToId(file);
-            addPropertyId(result, typeId, filter, PropertyIds.OBJECT_ID, id);
+            addPropertyId(result, template, selected, PropertyIds.OBJECT_ID, id);
             objectInfo.setId(id);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.createObject(typeId, id); }
+            row.put(PropertyIds.OBJECT_ID, id);
 
             // name
             String name = file.getName();
-            addPropertyString(result, typeId, filter, PropertyIds.NAME, name);
+            addPropertyString(result, template, selected, PropertyIds.NAME, name);
             objectInfo.setName(name);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.NAME, name); }
+            row.put(PropertyIds.NAME, name);
 
             // created and modified by
-            addPropertyString(result, typeId, filter, PropertyIds.CREATED_BY, USER_UNKNOWN);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.CREATED_BY, USER_UNKNOWN); }
-            addPropertyString(result, typeId, filter, PropertyIds.LAST_MODIFIED_BY, USER_UNKNOWN);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.LAST_MODIFIED_BY, USER_UNKNOWN); }
+            addPropertyString(result, template, selected, PropertyIds.CREATED_BY, USER_UNKNOWN);
+            row.put(PropertyIds.CREATED_BY, USER_UNKNOWN);
+            addPropertyString(result, template, selected, PropertyIds.LAST_MODIFIED_BY, USER_UNKNOWN);
+            row.put(PropertyIds.LAST_MODIFIED_BY, USER_UNKNOWN);
             objectInfo.setCreatedBy(USER_UNKNOWN);
 
             // creation and modification date
-            GregorianCalendar lastModified = FileBridgeUtils.millisToCalendar(file.lastModified());
-            addPropertyDateTime(result, typeId, filter, PropertyIds.CREATION_DATE, lastModified);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.CREATION_DATE, sdf.format(lastModified.getTime())); }
-            addPropertyDateTime(result, typeId, filter, PropertyIds.LAST_MODIFICATION_DATE, lastModified);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.LAST_MODIFICATION_DATE, sdf.format(lastModified.getTime())); }
+            GregorianCalendar lastModified = FileBridgeUtils.millisToCalendar(entry.lastModified());
+            addPropertyDateTime(result, template, selected, PropertyIds.CREATION_DATE, lastModified);
+            row.put(PropertyIds.CREATION_DATE, sdf.format(lastModified.getTime()));
+            addPropertyDateTime(result, template, selected, PropertyIds.LAST_MODIFICATION_DATE, lastModified);
+            row.put(PropertyIds.LAST_MODIFICATION_DATE, sdf.format(lastModified.getTime()));
             objectInfo.setCreationDate(lastModified);
             objectInfo.setLastModificationDate(lastModified);
 
             // change token - always null
-            addPropertyString(result, typeId, filter, PropertyIds.CHANGE_TOKEN, null);
-            if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.CHANGE_TOKEN, null); }
+            addPropertyString(result, template, selected, PropertyIds.CHANGE_TOKEN, null);
+            row.put(PropertyIds.CHANGE_TOKEN, null);
 
             // CMIS 1.1 properties
             if (context != null && context.getCmisVersion() != CmisVersion.CMIS_1_0) {
-                addPropertyString(result, typeId, filter, PropertyIds.DESCRIPTION, null);
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.DESCRIPTION, null); }
-                addPropertyIdList(result, typeId, filter, PropertyIds.SECONDARY_OBJECT_TYPE_IDS, null);
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.SECONDARY_OBJECT_TYPE_IDS, null); }
+                addPropertyString(result, template, selected, PropertyIds.DESCRIPTION, null);
+                row.put(PropertyIds.DESCRIPTION, null);
+                addPropertyIdList(result, template, selected, PropertyIds.SECONDARY_OBJECT_TYPE_IDS, null);
+                row.put(PropertyIds.SECONDARY_OBJECT_TYPE_IDS, null);
             }
 
             // directory or file
-            if (file.isDirectory()) {
+            if (entry.isDirectory()) {
                 // base type and type name
-                addPropertyId(result, typeId, filter, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_FOLDER.value()); }
-                addPropertyId(result, typeId, filter, PropertyIds.OBJECT_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.OBJECT_TYPE_ID, BaseTypeId.CMIS_FOLDER.value()); }
+                addPropertyId(result, template, selected, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
+                row.put(PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
+                addPropertyId(result, template, selected, PropertyIds.OBJECT_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
+                row.put(PropertyIds.OBJECT_TYPE_ID, BaseTypeId.CMIS_FOLDER.value());
                 String path = getRepositoryPath(file);
-                addPropertyString(result, typeId, filter, PropertyIds.PATH, path);
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.PATH, path); }
+                addPropertyString(result, template, selected, PropertyIds.PATH, path);
+                row.put(PropertyIds.PATH, path);
 
                 // folder properties
                 if (!root.equals(file)) {
-                    addPropertyId(result, typeId, filter, PropertyIds.PARENT_ID,
-                            (root.equals(file.getParentFile()) ? ROOT_ID : fileToId(file.getParentFile())));
+                    addPropertyId(result, template, selected, PropertyIds.PARENT_ID,
+                            fileToId(getNavigationParent(file)));
                     objectInfo.setHasParent(true);
-                    if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.PARENT_ID,
-                            (root.equals(file.getParentFile()) ? ROOT_ID : fileToId(file.getParentFile()))); }
+                    row.put(PropertyIds.PARENT_ID,
+                            fileToId(getNavigationParent(file)));
                 } else {
-                    addPropertyId(result, typeId, filter, PropertyIds.PARENT_ID, null);
+                    addPropertyId(result, template, selected, PropertyIds.PARENT_ID, null);
                     objectInfo.setHasParent(false);
-                    if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.PARENT_ID, null); }
+                    row.put(PropertyIds.PARENT_ID, null);
                 }
 
-                addPropertyIdList(result, typeId, filter, PropertyIds.ALLOWED_CHILD_OBJECT_TYPE_IDS, null);
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.ALLOWED_CHILD_OBJECT_TYPE_IDS, null); }
+                addPropertyIdList(result, template, selected, PropertyIds.ALLOWED_CHILD_OBJECT_TYPE_IDS, null);
+                row.put(PropertyIds.ALLOWED_CHILD_OBJECT_TYPE_IDS, null);
             } else {
                 // base type and type name
-                addPropertyId(result, typeId, filter, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_DOCUMENT.value());
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_DOCUMENT.value()); }
-                addPropertyId(result, typeId, filter, PropertyIds.OBJECT_TYPE_ID, FileBridgeCmisTypeId.CMIS_RODA_DOCUMENT.value());
+                addPropertyId(result, template, selected, PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_DOCUMENT.value());
+                row.put(PropertyIds.BASE_TYPE_ID, BaseTypeId.CMIS_DOCUMENT.value());
+                addPropertyId(result, template, selected, PropertyIds.OBJECT_TYPE_ID, FileBridgeCmisTypeId.CMIS_RODA_DOCUMENT.value());
                 //BaseTypeId.CMIS_DOCUMENT.value());
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.OBJECT_TYPE_ID, FileBridgeCmisTypeId.CMIS_RODA_DOCUMENT.value()); }
+                row.put(PropertyIds.OBJECT_TYPE_ID, FileBridgeCmisTypeId.CMIS_RODA_DOCUMENT.value());
                 String path = getRepositoryPath(file);
-                if (!id.equals(ROOT_ID) && updateProperties) { database.updateField(typeId, id, PropertyIds.PATH, path); }
+                row.put(PropertyIds.PATH, path);
+                // not a document property, kept for the IN_FOLDER queries
+                row.put(PropertyIds.PARENT_ID, fileToId(getNavigationParent(file)));
 
                 // load file's metadata from the AIP
                 String aipMetadataId = null;
@@ -842,340 +1381,341 @@ public class FileBridgeRepository {
                     aipMetadataId = file.getPath().split("aip/")[1].split("/")[0];
                 }
 
-                if ((aipMetadataId != null) && aipMetadataMap.containsKey(aipMetadataId)) {
-                    AipMetadata aipMetadata = aipMetadataMap.get(aipMetadataId);
+                AipMetadata aipMetadata = (aipMetadataId != null ? getAipMetadata(aipMetadataId) : null);
+                if (aipMetadata != null) {
 
                     // load EAD metadata into RODA Document properties
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_UNIT_ID.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_UNIT_ID.value(),
+                            aipMetadata.getEad2002Metadata().getUnitId());
+                    row.put(MetadataEadFieldId.METADATA_EAD_UNIT_ID.value(),
                             aipMetadata.getEad2002Metadata().getUnitId());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_UNIT_ID.value(),
-                            aipMetadata.getEad2002Metadata().getUnitId()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_UNIT_TITLE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_UNIT_TITLE.value(),
                             aipMetadata.getEad2002Metadata().getUnitTitle());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_UNIT_TITLE.value(),
-                            aipMetadata.getEad2002Metadata().getUnitTitle()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_UNIT_TITLE.value(),
+                            aipMetadata.getEad2002Metadata().getUnitTitle());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE.value(),
+                            aipMetadata.getEad2002Metadata().getCountryCode());
+                    row.put(MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE.value(),
                             aipMetadata.getEad2002Metadata().getCountryCode());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE.value(),
-                            aipMetadata.getEad2002Metadata().getCountryCode()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE.value(),
                             aipMetadata.getEad2002Metadata().getRepositoryCode());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE.value(),
-                            aipMetadata.getEad2002Metadata().getRepositoryCode()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_UNIT_DATE.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE.value(),
+                            aipMetadata.getEad2002Metadata().getRepositoryCode());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_UNIT_DATE.value(),
+                            aipMetadata.getEad2002Metadata().getUnitDate());
+                    row.put(MetadataEadFieldId.METADATA_EAD_UNIT_DATE.value(),
                             aipMetadata.getEad2002Metadata().getUnitDate());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_UNIT_DATE.value(),
-                            aipMetadata.getEad2002Metadata().getUnitDate()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL.value(),
                             aipMetadata.getEad2002Metadata().getUnitDateLabel());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL.value(),
-                            aipMetadata.getEad2002Metadata().getUnitDateLabel()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL.value(),
+                            aipMetadata.getEad2002Metadata().getUnitDateLabel());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL.value(),
+                            aipMetadata.getEad2002Metadata().getUnitDateNormal());
+                    row.put(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL.value(),
                             aipMetadata.getEad2002Metadata().getUnitDateNormal());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL.value(),
-                            aipMetadata.getEad2002Metadata().getUnitDateNormal()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION.value(),
                             aipMetadata.getEad2002Metadata().getPhysicalDescription());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION.value(),
-                            aipMetadata.getEad2002Metadata().getPhysicalDescription()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION.value(),
+                            aipMetadata.getEad2002Metadata().getPhysicalDescription());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT.value(),
+                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionExtent());
+                    row.put(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT.value(),
                             aipMetadata.getEad2002Metadata().getPhysicalDescriptionExtent());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT.value(),
-                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionExtent()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS.value(),
                             aipMetadata.getEad2002Metadata().getPhysicalDescriptionDimensions());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS.value(),
-                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionDimensions()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS.value(),
+                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionDimensions());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE.value(),
+                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionAppearance());
+                    row.put(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE.value(),
                             aipMetadata.getEad2002Metadata().getPhysicalDescriptionAppearance());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE.value(),
-                            aipMetadata.getEad2002Metadata().getPhysicalDescriptionAppearance()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME.value(),
                             aipMetadata.getEad2002Metadata().getRepositoryName());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME.value(),
-                            aipMetadata.getEad2002Metadata().getRepositoryName()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME.value(),
+                            aipMetadata.getEad2002Metadata().getRepositoryName());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL.value(),
+                            aipMetadata.getEad2002Metadata().getLangMaterial());
+                    row.put(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL.value(),
                             aipMetadata.getEad2002Metadata().getLangMaterial());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL.value(),
-                            aipMetadata.getEad2002Metadata().getLangMaterial()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE.value(),
                             aipMetadata.getEad2002Metadata().getLangMaterialLanguage());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE.value(),
-                            aipMetadata.getEad2002Metadata().getLangMaterialLanguage()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE.value(),
+                            aipMetadata.getEad2002Metadata().getLangMaterialLanguage());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION.value(),
+                            aipMetadata.getEad2002Metadata().getNoteSourcesDescription());
+                    row.put(MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION.value(),
                             aipMetadata.getEad2002Metadata().getNoteSourcesDescription());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION.value(),
-                            aipMetadata.getEad2002Metadata().getNoteSourcesDescription()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE.value(),
                             aipMetadata.getEad2002Metadata().getNoteGeneralNote());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE.value(),
-                            aipMetadata.getEad2002Metadata().getNoteGeneralNote()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ORIGINATION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE.value(),
+                            aipMetadata.getEad2002Metadata().getNoteGeneralNote());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ORIGINATION.value(),
+                            aipMetadata.getEad2002Metadata().getOrigination());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ORIGINATION.value(),
                             aipMetadata.getEad2002Metadata().getOrigination());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ORIGINATION.value(),
-                            aipMetadata.getEad2002Metadata().getOrigination()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION.value(),
                             aipMetadata.getEad2002Metadata().getOriginationCreator());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION.value(),
-                            aipMetadata.getEad2002Metadata().getOriginationCreator()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION.value(),
+                            aipMetadata.getEad2002Metadata().getOriginationCreator());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION.value(),
+                            aipMetadata.getEad2002Metadata().getOriginationProducer());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION.value(),
                             aipMetadata.getEad2002Metadata().getOriginationProducer());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION.value(),
-                            aipMetadata.getEad2002Metadata().getOriginationProducer()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION.value(),
                             aipMetadata.getEad2002Metadata().getArchiveDescription());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION.value(),
-                            aipMetadata.getEad2002Metadata().getArchiveDescription()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION.value(),
+                            aipMetadata.getEad2002Metadata().getArchiveDescription());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION.value(),
+                            aipMetadata.getEad2002Metadata().getMaterialSpecification());
+                    row.put(MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION.value(),
                             aipMetadata.getEad2002Metadata().getMaterialSpecification());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION.value(),
-                            aipMetadata.getEad2002Metadata().getMaterialSpecification()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL.value(),
                             aipMetadata.getEad2002Metadata().getOddLevelOfDetail());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL.value(),
-                            aipMetadata.getEad2002Metadata().getOddLevelOfDetail()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL.value(),
+                            aipMetadata.getEad2002Metadata().getOddLevelOfDetail());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION.value(),
+                            aipMetadata.getEad2002Metadata().getOddStatusDescription());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION.value(),
                             aipMetadata.getEad2002Metadata().getOddStatusDescription());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION.value(),
-                            aipMetadata.getEad2002Metadata().getOddStatusDescription()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT.value(),
                             aipMetadata.getEad2002Metadata().getScopeContent());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT.value(),
-                            aipMetadata.getEad2002Metadata().getScopeContent()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ARRANGEMENT.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT.value(),
+                            aipMetadata.getEad2002Metadata().getScopeContent());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ARRANGEMENT.value(),
+                            aipMetadata.getEad2002Metadata().getArrangement());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ARRANGEMENT.value(),
                             aipMetadata.getEad2002Metadata().getArrangement());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ARRANGEMENT.value(),
-                            aipMetadata.getEad2002Metadata().getArrangement()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_APPRAISAL.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_APPRAISAL.value(),
                             aipMetadata.getEad2002Metadata().getAppraisal());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_APPRAISAL.value(),
-                            aipMetadata.getEad2002Metadata().getAppraisal()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_APPRAISAL.value(),
+                            aipMetadata.getEad2002Metadata().getAppraisal());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO.value(),
+                            aipMetadata.getEad2002Metadata().getAcquisitionInfo());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO.value(),
                             aipMetadata.getEad2002Metadata().getAcquisitionInfo());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO.value(),
-                            aipMetadata.getEad2002Metadata().getAcquisitionInfo()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ACCRUALS.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ACCRUALS.value(),
                             aipMetadata.getEad2002Metadata().getAccruals());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ACCRUALS.value(),
-                            aipMetadata.getEad2002Metadata().getAccruals()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ACCRUALS.value(),
+                            aipMetadata.getEad2002Metadata().getAccruals());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY.value(),
+                            aipMetadata.getEad2002Metadata().getCustodialHistory());
+                    row.put(MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY.value(),
                             aipMetadata.getEad2002Metadata().getCustodialHistory());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY.value(),
-                            aipMetadata.getEad2002Metadata().getCustodialHistory()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
                             aipMetadata.getEad2002Metadata().getProcessInfoDate());
-                    if (updateProperties) {
+                    if (indexRow != null) {
                         try {
                             SimpleDateFormat sdfProcessInfoDate = new SimpleDateFormat("yyyy-MM-dd");
                             Date parseProcessInfoDate = sdfProcessInfoDate.parse(aipMetadata.getEad2002Metadata().getProcessInfoDate());
-                            database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
+                            row.put(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
                                     sdf.format(parseProcessInfoDate));
                         } catch (ParseException ignored ) { /* fail silently */ }
                     }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES.value(),
                             aipMetadata.getEad2002Metadata().getProcessInfoArchivistNotes());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES.value(),
-                            aipMetadata.getEad2002Metadata().getProcessInfoArchivistNotes()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES.value(),
+                            aipMetadata.getEad2002Metadata().getProcessInfoArchivistNotes());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION.value(),
+                            aipMetadata.getEad2002Metadata().getOriginalsLocation());
+                    row.put(MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION.value(),
                             aipMetadata.getEad2002Metadata().getOriginalsLocation());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION.value(),
-                            aipMetadata.getEad2002Metadata().getOriginalsLocation()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE.value(),
                             aipMetadata.getEad2002Metadata().getAlternativeFormAvailable());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE.value(),
-                            aipMetadata.getEad2002Metadata().getAlternativeFormAvailable()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE.value(),
+                            aipMetadata.getEad2002Metadata().getAlternativeFormAvailable());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL.value(),
+                            aipMetadata.getEad2002Metadata().getRelatedMaterial());
+                    row.put(MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL.value(),
                             aipMetadata.getEad2002Metadata().getRelatedMaterial());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL.value(),
-                            aipMetadata.getEad2002Metadata().getRelatedMaterial()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS.value(),
                             aipMetadata.getEad2002Metadata().getAccessRestrictions());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS.value(),
-                            aipMetadata.getEad2002Metadata().getAccessRestrictions()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS.value(),
+                            aipMetadata.getEad2002Metadata().getAccessRestrictions());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS.value(),
+                            aipMetadata.getEad2002Metadata().getUseRestrictions());
+                    row.put(MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS.value(),
                             aipMetadata.getEad2002Metadata().getUseRestrictions());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS.value(),
-                            aipMetadata.getEad2002Metadata().getUseRestrictions()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID.value(),
                             aipMetadata.getEad2002Metadata().getOtherFindAid());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID.value(),
-                            aipMetadata.getEad2002Metadata().getOtherFindAid()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID.value(),
+                            aipMetadata.getEad2002Metadata().getOtherFindAid());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH.value(),
+                            aipMetadata.getEad2002Metadata().getPhysicalTech());
+                    row.put(MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH.value(),
                             aipMetadata.getEad2002Metadata().getPhysicalTech());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH.value(),
-                            aipMetadata.getEad2002Metadata().getPhysicalTech()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY.value(),
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY.value(),
                             aipMetadata.getEad2002Metadata().getBibliography());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY.value(),
-                            aipMetadata.getEad2002Metadata().getBibliography()); }
-                    addPropertyString(result, typeId, filter, MetadataEadFieldId.METADATA_EAD_PREFER_CITE.value(),
+                    row.put(MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY.value(),
+                            aipMetadata.getEad2002Metadata().getBibliography());
+                    addPropertyString(result, template, selected, MetadataEadFieldId.METADATA_EAD_PREFER_CITE.value(),
+                            aipMetadata.getEad2002Metadata().getPreferCite());
+                    row.put(MetadataEadFieldId.METADATA_EAD_PREFER_CITE.value(),
                             aipMetadata.getEad2002Metadata().getPreferCite());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataEadFieldId.METADATA_EAD_PREFER_CITE.value(),
-                            aipMetadata.getEad2002Metadata().getPreferCite()); }
 
                     // load Dublin Core metadata into RODA Document properties
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getTitle());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getTitle()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getTitle());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getIdentifier());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER.value(),
                             aipMetadata.getDublinCore20021212Metadata().getIdentifier());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getIdentifier()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR.value(),
                             aipMetadata.getDublinCore20021212Metadata().getCreator());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getCreator()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getCreator());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getInitialDate());
-                    if (updateProperties) {
+                    if (indexRow != null) {
                         try {
                             SimpleDateFormat sdfInitialDate = new SimpleDateFormat("yyyy-MM-dd");
                             Date parseInitialDate = sdfInitialDate.parse(aipMetadata.getDublinCore20021212Metadata().getInitialDate());
-                            database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
+                            row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
                                     sdf.format(parseInitialDate));
                         } catch (ParseException ignored ) { /* fail silently */ }
                     }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getFinalDate());
-                    if (updateProperties) {
+                    if (indexRow != null) {
                         try {
                             SimpleDateFormat sdfFinalDate = new SimpleDateFormat("yyyy-MM-dd");
                             Date parseFinalDate = sdfFinalDate.parse(aipMetadata.getDublinCore20021212Metadata().getFinalDate());
-                            database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
+                            row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
                                     sdf.format(parseFinalDate));
                         } catch (ParseException ignored ) { /* fail silently */ }
                     }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getDescription());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION.value(),
                             aipMetadata.getDublinCore20021212Metadata().getDescription());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getDescription()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER.value(),
                             aipMetadata.getDublinCore20021212Metadata().getPublisher());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getPublisher()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getPublisher());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getContributor());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR.value(),
                             aipMetadata.getDublinCore20021212Metadata().getContributor());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getContributor()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS.value(),
                             aipMetadata.getDublinCore20021212Metadata().getRights());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getRights()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getRights());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getLanguage());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getLanguage());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getLanguage()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getCoverage());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getCoverage()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getCoverage());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getFormat());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT.value(),
                             aipMetadata.getDublinCore20021212Metadata().getFormat());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getFormat()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION.value(),
                             aipMetadata.getDublinCore20021212Metadata().getRelation());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getRelation()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getRelation());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getSubject());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT.value(),
                             aipMetadata.getDublinCore20021212Metadata().getSubject());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getSubject()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE.value(),
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getType());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getType()); }
-                    addPropertyString(result, typeId, filter, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE.value(),
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getType());
+                    addPropertyString(result, template, selected, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE.value(),
+                            aipMetadata.getDublinCore20021212Metadata().getSource());
+                    row.put(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE.value(),
                             aipMetadata.getDublinCore20021212Metadata().getSource());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE.value(),
-                            aipMetadata.getDublinCore20021212Metadata().getSource()); }
 
                     // load Key-Value metadata into RODA Document properties
-                    addPropertyString(result, typeId, filter, MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID.value(),
+                    addPropertyString(result, template, selected, MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID.value(),
                             aipMetadata.getKeyValueMetadata().getId());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID.value(),
-                            aipMetadata.getKeyValueMetadata().getId()); }
-                    addPropertyString(result, typeId, filter, MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE.value(),
+                    row.put(MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID.value(),
+                            aipMetadata.getKeyValueMetadata().getId());
+                    addPropertyString(result, template, selected, MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE.value(),
+                            aipMetadata.getKeyValueMetadata().getTitle());
+                    row.put(MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE.value(),
                             aipMetadata.getKeyValueMetadata().getTitle());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE.value(),
-                            aipMetadata.getKeyValueMetadata().getTitle()); }
-                    addPropertyString(result, typeId, filter, MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER.value(),
+                    addPropertyString(result, template, selected, MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER.value(),
                             aipMetadata.getKeyValueMetadata().getProducer());
-                    if (updateProperties) { database.updateField(typeId, id, MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER.value(),
-                            aipMetadata.getKeyValueMetadata().getProducer()); }
-                    addPropertyString(result, typeId, filter, MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value(),
+                    row.put(MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER.value(),
+                            aipMetadata.getKeyValueMetadata().getProducer());
+                    addPropertyString(result, template, selected, MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value(),
                             aipMetadata.getKeyValueMetadata().getDate());
-                    if (updateProperties) {
+                    if (indexRow != null) {
                         try {
                             SimpleDateFormat sdfKeyValueDate = new SimpleDateFormat("yyyy-MM-dd");
                             Date parseKeyValueDate = sdfKeyValueDate.parse(aipMetadata.getKeyValueMetadata().getDate());
-                            database.updateField(typeId, id, MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value(),
+                            row.put(MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value(),
                                     sdf.format(parseKeyValueDate));
                         } catch (ParseException ignored ) { /* fail silently */ }
                     }
                 }
 
                 // file properties
-                addPropertyBoolean(result, typeId, filter, PropertyIds.IS_IMMUTABLE, false);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_IMMUTABLE, "0"); }
+                addPropertyBoolean(result, template, selected, PropertyIds.IS_IMMUTABLE, false);
+                row.put(PropertyIds.IS_IMMUTABLE, "0");
 
-                addPropertyBoolean(result, typeId, filter, PropertyIds.IS_LATEST_VERSION, true);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_LATEST_VERSION, "1"); }
+                addPropertyBoolean(result, template, selected, PropertyIds.IS_LATEST_VERSION, true);
+                row.put(PropertyIds.IS_LATEST_VERSION, "1");
 
-                addPropertyBoolean(result, typeId, filter, PropertyIds.IS_MAJOR_VERSION, true);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_MAJOR_VERSION, "1"); }
+                addPropertyBoolean(result, template, selected, PropertyIds.IS_MAJOR_VERSION, true);
+                row.put(PropertyIds.IS_MAJOR_VERSION, "1");
 
-                addPropertyBoolean(result, typeId, filter, PropertyIds.IS_LATEST_MAJOR_VERSION, true);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_LATEST_MAJOR_VERSION, "1"); }
+                addPropertyBoolean(result, template, selected, PropertyIds.IS_LATEST_MAJOR_VERSION, true);
+                row.put(PropertyIds.IS_LATEST_MAJOR_VERSION, "1");
 
-                addPropertyString(result, typeId, filter, PropertyIds.VERSION_LABEL, file.getName());
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.VERSION_LABEL, file.getName()); }
+                addPropertyString(result, template, selected, PropertyIds.VERSION_LABEL, file.getName());
+                row.put(PropertyIds.VERSION_LABEL, file.getName());
 
-                addPropertyId(result, typeId, filter, PropertyIds.VERSION_SERIES_ID, fileToId(file));
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.VERSION_SERIES_ID, fileToId(file)); }
+                addPropertyId(result, template, selected, PropertyIds.VERSION_SERIES_ID, fileToId(file));
+                row.put(PropertyIds.VERSION_SERIES_ID, fileToId(file));
 
-                addPropertyBoolean(result, typeId, filter, PropertyIds.IS_VERSION_SERIES_CHECKED_OUT, false);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_VERSION_SERIES_CHECKED_OUT, "0"); }
+                addPropertyBoolean(result, template, selected, PropertyIds.IS_VERSION_SERIES_CHECKED_OUT, false);
+                row.put(PropertyIds.IS_VERSION_SERIES_CHECKED_OUT, "0");
 
-                addPropertyString(result, typeId, filter, PropertyIds.VERSION_SERIES_CHECKED_OUT_BY, null);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.VERSION_SERIES_CHECKED_OUT_BY, null); }
+                addPropertyString(result, template, selected, PropertyIds.VERSION_SERIES_CHECKED_OUT_BY, null);
+                row.put(PropertyIds.VERSION_SERIES_CHECKED_OUT_BY, null);
 
-                addPropertyString(result, typeId, filter, PropertyIds.VERSION_SERIES_CHECKED_OUT_ID, null);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.VERSION_SERIES_CHECKED_OUT_ID, null); }
+                addPropertyString(result, template, selected, PropertyIds.VERSION_SERIES_CHECKED_OUT_ID, null);
+                row.put(PropertyIds.VERSION_SERIES_CHECKED_OUT_ID, null);
 
-                addPropertyString(result, typeId, filter, PropertyIds.CHECKIN_COMMENT, "");
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.CHECKIN_COMMENT, ""); }
+                addPropertyString(result, template, selected, PropertyIds.CHECKIN_COMMENT, "");
+                row.put(PropertyIds.CHECKIN_COMMENT, "");
 
                 if (context != null && context.getCmisVersion() != CmisVersion.CMIS_1_0) {
-                    addPropertyBoolean(result, typeId, filter, PropertyIds.IS_PRIVATE_WORKING_COPY, false);
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.IS_PRIVATE_WORKING_COPY, "0"); }
+                    addPropertyBoolean(result, template, selected, PropertyIds.IS_PRIVATE_WORKING_COPY, false);
                 }
-
-                if (file.length() == 0) {
-                    addPropertyBigInteger(result, typeId, filter, PropertyIds.CONTENT_STREAM_LENGTH, null);
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_LENGTH, null); }
-                    addPropertyString(result, typeId, filter, PropertyIds.CONTENT_STREAM_MIME_TYPE, null);
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_MIME_TYPE, null); }
-                    addPropertyString(result, typeId, filter, PropertyIds.CONTENT_STREAM_FILE_NAME, null);
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_FILE_NAME, null); }
+                // indexed for every version, the queries compile the row with the client's version
+                row.put(PropertyIds.IS_PRIVATE_WORKING_COPY, "0");
+
+                if (entry.length() == 0) {
+                    addPropertyBigInteger(result, template, selected, PropertyIds.CONTENT_STREAM_LENGTH, null);
+                    row.put(PropertyIds.CONTENT_STREAM_LENGTH, null);
+                    addPropertyString(result, template, selected, PropertyIds.CONTENT_STREAM_MIME_TYPE, null);
+                    row.put(PropertyIds.CONTENT_STREAM_MIME_TYPE, null);
+                    addPropertyString(result, template, selected, PropertyIds.CONTENT_STREAM_FILE_NAME, null);
+                    row.put(PropertyIds.CONTENT_STREAM_FILE_NAME, null);
                     objectInfo.setHasContent(false);
                     objectInfo.setContentType(null);
                     objectInfo.setFileName(null);
                 } else {
-                    addPropertyInteger(result, typeId, filter, PropertyIds.CONTENT_STREAM_LENGTH, file.length());
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_LENGTH, String.valueOf(file.length())); }
-                    addPropertyString(result, typeId, filter, PropertyIds.CONTENT_STREAM_MIME_TYPE, MimeTypes.getMIMEType(file));
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_MIME_TYPE, MimeTypes.getMIMEType(file)); }
-                    addPropertyString(result, typeId, filter, PropertyIds.CONTENT_STREAM_FILE_NAME, file.getName());
-                    if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_FILE_NAME, file.getName()); }
+                    addPropertyInteger(result, template, selected, PropertyIds.CONTENT_STREAM_LENGTH, entry.length());
+                    row.put(PropertyIds.CONTENT_STREAM_LENGTH, String.valueOf(entry.length()));
+                    addPropertyString(result, template, selected, PropertyIds.CONTENT_STREAM_MIME_TYPE, MimeTypes.getMIMEType(file));
+                    row.put(PropertyIds.CONTENT_STREAM_MIME_TYPE, MimeTypes.getMIMEType(file));
+                    addPropertyString(result, template, selected, PropertyIds.CONTENT_STREAM_FILE_NAME, file.getName());
+                    row.put(PropertyIds.CONTENT_STREAM_FILE_NAME, file.getName());
                     objectInfo.setHasContent(true);
                     objectInfo.setContentType(MimeTypes.getMIMEType(file));
                     objectInfo.setFileName(file.getName());
                 }
 
-                addPropertyId(result, typeId, filter, PropertyIds.CONTENT_STREAM_ID, null);
-                if (updateProperties) { database.updateField(typeId, id, PropertyIds.CONTENT_STREAM_ID, null); }
+                addPropertyId(result, template, selected, PropertyIds.CONTENT_STREAM_ID, null);
+                row.put(PropertyIds.CONTENT_STREAM_ID, null);
             }
 
             return result;
@@ -1229,7 +1769,7 @@ public class FileBridgeRepository {
         capabilities.setCapabilityRendition(CapabilityRenditions.NONE);
 
         if (cmisVersion != CmisVersion.CMIS_1_0) {
-            capabilities.setOrderByCapability(CapabilityOrderBy.NONE);
+            capabilities.setOrderByCapability(CapabilityOrderBy.CUSTOM);
 
             NewTypeSettableAttributesImpl typeSetAttributes = new NewTypeSettableAttributesImpl();
             typeSetAttributes.setCanSetControllableAcl(false);
@@ -1333,6 +1873,34 @@ public class FileBridgeRepository {
         return repositoryId;
     }
 
+    /**
+     * Returns the index database of this repository.
+     */
+    public Database getDatabase() {
+        return database;
+    }
+
+    /**
+     * Returns the indexer of this repository.
+     */
+    public FileBridgeIndexer getIndexer() {
+        return indexer;
+    }
+
+    /**
+     * Returns the compiled properties cache of this repository.
+     */
+    public FileBridgePropertiesCache getPropertiesCache() {
+        return propertiesCache;
+    }
+
+    /**
+     * Returns the navigation tree of this repository.
+     */
+    public FileBridgeNavigationTree getNavigationTree() {
+        return navigationTree;
+    }
+
     /**
      * Returns the root directory of this repository
      */
@@ -1370,11 +1938,12 @@ public class FileBridgeRepository {
     public RepositoryInfo getRepositoryInfo(CallContext context) {
         checkUser(context, false);
 
-        if (context.getCmisVersion() == CmisVersion.CMIS_1_0) {
-            return repositoryInfo10;
-        } else {
-            return repositoryInfo11;
-        }
+        // the index state changes over time, so every call gets its own copy of the info with fresh extensions
+        RepositoryInfoImpl repositoryInfo = new RepositoryInfoImpl(context.getCmisVersion() == CmisVersion.CMIS_1_0 ?
+                repositoryInfo10 : repositoryInfo11);
+        repositoryInfo.setExtensions(compileIndexExtensions());
+
+        return repositoryInfo;
     }
 
     /**
@@ -1484,6 +2053,10 @@ public class FileBridgeRepository {
             writeContent(newFile, contentStream.getStream());
         }
 
+        // update the index and the navigation tree
+        indexer.indexObject(newFile);
+        navigationTree.refreshObject(newFile);
+
         return getId(newFile);
     }
 
@@ -1547,6 +2120,10 @@ public class FileBridgeRepository {
                     + e.getMessage(), e);
         }
 
+        // update the index and the navigation tree
+        indexer.indexObject(newFile);
+        navigationTree.refreshObject(newFile);
+
         return getId(newFile);
     }
 
@@ -1601,6 +2178,10 @@ public class FileBridgeRepository {
             throw new CmisStorageException("Could not create folder!");
         }
 
+        // update the index and the navigation tree
+        indexer.indexObject(newFolder);
+        navigationTree.refreshObject(newFolder);
+
         return getId(newFolder);
     }
 
@@ -1633,6 +2214,13 @@ public class FileBridgeRepository {
             objectId.setValue(getId(newFile));
         }
 
+        // update the index, the ids and the navigation tree
+        indexer.removeObject(file);
+        objectIds.remove(file);
+        indexer.indexObject(newFile);
+        navigationTree.refreshObject(file);
+        navigationTree.refreshObject(newFile);
+
         return compileObjectData(context, newFile, null, false, false,
                 userReadOnly, objectInfos);
     }
@@ -1689,6 +2277,10 @@ public class FileBridgeRepository {
             IOUtils.closeQuietly(out);
             IOUtils.closeQuietly(in);
         }
+
+        // update the index and the sorted listings
+        indexer.indexObject(file);
+        navigationTree.refreshContent(file);
     }
 
     /**
@@ -1712,6 +2304,11 @@ public class FileBridgeRepository {
         if (!file.delete()) {
             throw new CmisStorageException("Deletion failed!");
         }
+
+        // update the index, the ids and the navigation tree
+        indexer.removeObject(file);
+        objectIds.remove(file);
+        navigationTree.refreshObject(file);
     }
 
     /**
@@ -1737,6 +2334,12 @@ public class FileBridgeRepository {
             throw new CmisConstraintException("Object is not a folder!");
         }
 
+        // update the index and the ids (what could not be deleted is indexed again) and the navigation tree
+        indexer.removeObject(file);
+        objectIds.remove(file);
+        indexer.indexObject(file);
+        navigationTree.refreshObject(file);
+
         return result;
     }
 
@@ -1819,6 +2422,16 @@ public class FileBridgeRepository {
             }
         }
 
+        // update the index, the ids and the navigation tree
+        if (isRename) {
+            indexer.removeObject(file);
+            objectIds.remove(file);
+        }
+        indexer.indexObject(newFile);
+        if (isRename) { navigationTree.refreshObject(file); }
+        navigationTree.refreshObject(newFile);
+        navigationTree.refreshContent(newFile);
+
         return compileObjectData(context, newFile, null, false, false,
                 userReadOnly, objectInfos);
     }
@@ -1901,12 +2514,12 @@ public class FileBridgeRepository {
         boolean userReadOnly = checkUser(context, false);
 
         // get the file or folder
-        File file = getFile(objectId);
-        if (!file.exists()) {
+        FileBridgeEntry entry = FileBridgeEntry.read(getFile(objectId));
+        if (entry == null) {
             throw new CmisObjectNotFoundException("Object not found!");
         }
 
-        return compileAllowableActions(file, userReadOnly);
+        return compileAllowableActions(entry, userReadOnly);
     }
 
     /**
@@ -2007,58 +2620,192 @@ public class FileBridgeRepository {
                     userReadOnly, objectInfos);
         }
 
-        // get the tree
+        // the folders above the AIPs' data folders are not browsed: their descendants are the ones of the root folder,
+        // the children of the readable AIPs' data folders, as in getChildren
+        String relativePath = folder.getPath().replace(root.getPath(), "");
+        int pathLength = (relativePath.length() == 0 ? 0 : relativePath.substring(1).split("/").length);
+        if (pathLength < 5) {
+            folder = root;
+        }
+
+        // the object infos are added by the threads gathering the subtrees
+        final ObjectInfoHandler handler = objectInfos;
+        ObjectInfoHandler synchronizedObjectInfos = new ObjectInfoHandler() {
+            @Override
+            public synchronized ObjectInfo getObjectInfo(String repositoryId, String objectId) {
+                return handler.getObjectInfo(repositoryId, objectId);
+            }
+
+            @Override
+            public synchronized void addObjectInfo(ObjectInfo objectInfo) {
+                handler.addObjectInfo(objectInfo);
+            }
+        };
+
+        // get the tree, gathering the subtrees in parallel within the objects and time budget
         List<ObjectInFolderContainer> result = new ArrayList<ObjectInFolderContainer>();
-        gatherDescendants(context, folder, result, foldersOnly, d,
-                filterCollection, iaa, ips, userReadOnly, objectInfos);
+        DescendantsRequest request = new DescendantsRequest(context, foldersOnly, filterCollection, iaa, ips,
+                userReadOnly, synchronizedObjectInfos);
+        ForkJoinTask<Void> task = descendantsPool.submit(new DescendantsTask(request, folder, result, d));
+        try {
+            // the time budget starts when the tree starts being gathered, the time queued on the pool is not part of it
+            if (!request.awaitStart(descendantsTimeout)) {
+                task.cancel(true);
+                throw request.saturationException();
+            }
+            task.get(request.getRemainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw request.timeoutException();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CmisRuntimeException("Interrupted while gathering the descendants!", e);
+        } catch (ExecutionException e) {
+            // the exception thrown by a subtree may be wrapped in a copy made by the thread joining it
+            Throwable cause = e.getCause();
+            while (cause.getCause() instanceof CmisBaseException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof CmisBaseException) {
+                throw (CmisBaseException) cause;
+            }
+            throw new CmisRuntimeException(cause.getMessage(), cause);
+        }
 
         return result;
     }
 
     /**
-     * Gather the children of a folder.
+     * The parameters and the budget shared by the subtrees of a getDescendants or getFolderTree request.
      */
-    private void gatherDescendants(CallContext context, File folder,
-                                   List<ObjectInFolderContainer> list, boolean foldersOnly, int depth,
-                                   Set<String> filter, boolean includeAllowableActions,
-                                   boolean includePathSegments, boolean userReadOnly,
-                                   ObjectInfoHandler objectInfos) {
-        assert folder != null;
-        assert list != null;
-
-        // iterate through children
-        for (File child : folder.listFiles()) {
-            // skip hidden and shadow files
-            if (child.isHidden()) {
-                continue;
+    private final class DescendantsRequest {
+        private final CallContext context;
+        private final boolean foldersOnly;
+        private final Set<String> filter;
+        private final boolean includeAllowableActions;
+        private final boolean includePathSegments;
+        private final boolean userReadOnly;
+        private final ObjectInfoHandler objectInfos;
+        private final AtomicInteger items = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long deadline;
+
+        DescendantsRequest(CallContext context, boolean foldersOnly, Set<String> filter,
+                           boolean includeAllowableActions, boolean includePathSegments, boolean userReadOnly,
+                           ObjectInfoHandler objectInfos) {
+            this.context = context;
+            this.foldersOnly = foldersOnly;
+            this.filter = filter;
+            this.includeAllowableActions = includeAllowableActions;
+            this.includePathSegments = includePathSegments;
+            this.userReadOnly = userReadOnly;
+            this.objectInfos = objectInfos;
+        }
+
+        /**
+         * Method responsible for starting the time budget, once the root folder's task runs. The subtrees' tasks are
+         * only created after it, so they find the budget started.
+         */
+        void start() {
+            if (started.getCount() > 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(descendantsTimeout);
+                started.countDown();
             }
+        }
 
-            // folders only?
-            if (foldersOnly && !child.isDirectory()) {
-                continue;
-            }
+        /**
+         * Function responsible for waiting until the root folder's task runs.
+         * @param timeout The maximum time to wait, in milliseconds.
+         * @return True if the task runs. False if it is still queued on the pool.
+         */
+        boolean awaitStart(long timeout) throws InterruptedException {
+            return started.await(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        long getRemainingNanos() {
+            return Math.max(0, deadline - System.nanoTime());
+        }
 
-            // add to list
-            ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
-            objectInFolder.setObject(compileObjectData(context, child, filter,
-                    includeAllowableActions, false, userReadOnly, objectInfos));
-            if (includePathSegments) {
-                objectInFolder.setPathSegment(child.getName());
+        /**
+         * Method responsible for counting an object in the budget, failing once the tree has too many objects or
+         * took too long, so the other subtrees stop too.
+         */
+        void addItem() {
+            if (items.incrementAndGet() > descendantsMaxItems) {
+                throw new CmisConstraintException("The tree has more than " + descendantsMaxItems
+                        + " objects, request a smaller depth!");
+            }
+            if (System.nanoTime() > deadline) {
+                throw timeoutException();
             }
+        }
+
+        CmisConstraintException timeoutException() {
+            return new CmisConstraintException("The tree could not be gathered in " + descendantsTimeout
+                    + " ms, request a smaller depth!");
+        }
+
+        CmisRuntimeException saturationException() {
+            return new CmisRuntimeException("The server is busy: the tree could not start being gathered in "
+                    + descendantsTimeout + " ms, try again later!");
+        }
+    }
+
+    /**
+     * Gathers the children of a folder, and their subtrees in parallel.
+     */
+    private final class DescendantsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DescendantsRequest request;
+        private final File folder;
+        private final List<ObjectInFolderContainer> list;
+        private final int depth;
+
+        DescendantsTask(DescendantsRequest request, File folder, List<ObjectInFolderContainer> list, int depth) {
+            this.request = request;
+            this.folder = folder;
+            this.list = list;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            request.start();
+
+            // iterate through children (hidden and shadow files are not listed), the root's are the exposed ones
+            List<FileBridgeEntry> children = (root.equals(folder) ? navigationTree.list(0, Integer.MAX_VALUE)
+                    : FileBridgeEntry.list(folder));
+
+            List<DescendantsTask> subtasks = new ArrayList<DescendantsTask>();
+            for (FileBridgeEntry child : children) {
+                // folders only?
+                if (request.foldersOnly && !child.isDirectory()) {
+                    continue;
+                }
+                request.addItem();
+
+                // add to list
+                ObjectInFolderDataImpl objectInFolder = new ObjectInFolderDataImpl();
+                objectInFolder.setObject(compileObjectData(request.context, child, request.filter,
+                        request.includeAllowableActions, false, request.userReadOnly, request.objectInfos));
+                if (request.includePathSegments) {
+                    objectInFolder.setPathSegment(child.getName());
+                }
 
-            ObjectInFolderContainerImpl container = new ObjectInFolderContainerImpl();
-            container.setObject(objectInFolder);
+                ObjectInFolderContainerImpl container = new ObjectInFolderContainerImpl();
+                container.setObject(objectInFolder);
 
-            list.add(container);
+                list.add(container);
 
-            // move to next level
-            if (depth != 1 && child.isDirectory()) {
-                container.setChildren(new ArrayList<ObjectInFolderContainer>());
-                gatherDescendants(context, child, container.getChildren(),
-                        foldersOnly, depth - 1, filter,
-                        includeAllowableActions, includePathSegments,
-                        userReadOnly, objectInfos);
+                // the next level is gathered by a subtask
+                if (depth != 1 && child.isDirectory()) {
+                    container.setChildren(new ArrayList<ObjectInFolderContainer>());
+                    subtasks.add(new DescendantsTask(request, child.getFile(), container.getChildren(), depth - 1));
+                }
             }
+            invokeAll(subtasks);
         }
     }
 
@@ -2109,8 +2856,8 @@ public class FileBridgeRepository {
                     objectInfos);
         }
 
-        // get parent folder
-        File parent = file.getParentFile();
+        // get parent folder, the root folder for the children it exposes
+        File parent = getNavigationParent(file);
         ObjectData object = compileObjectData(context, parent,
                 filterCollection, iaa, false, userReadOnly, objectInfos);
 
@@ -2319,68 +3066,68 @@ public class FileBridgeRepository {
         }
     }
 
-    private void addPropertyId(PropertiesImpl props, String typeId,
-                               Set<String> filter, String id, String value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyId(PropertiesImpl props, FileBridgePropertyTemplate template,
+                               boolean[] selected, String id, String value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyIdImpl(id, value));
     }
 
-    private void addPropertyIdList(PropertiesImpl props, String typeId,
-                                   Set<String> filter, String id, List<String> value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyIdList(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                   boolean[] selected, String id, List<String> value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyIdImpl(id, value));
     }
 
-    private void addPropertyString(PropertiesImpl props, String typeId,
-                                   Set<String> filter, String id, String value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyString(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                   boolean[] selected, String id, String value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyStringImpl(id, value));
     }
 
-    private void addPropertyInteger(PropertiesImpl props, String typeId,
-                                    Set<String> filter, String id, long value) {
-        addPropertyBigInteger(props, typeId, filter, id,
+    private void addPropertyInteger(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                    boolean[] selected, String id, long value) {
+        addPropertyBigInteger(props, template, selected, id,
                 BigInteger.valueOf(value));
     }
 
-    private void addPropertyBigInteger(PropertiesImpl props, String typeId,
-                                       Set<String> filter, String id, BigInteger value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyBigInteger(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                       boolean[] selected, String id, BigInteger value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyIntegerImpl(id, value));
     }
 
-    private void addPropertyBoolean(PropertiesImpl props, String typeId,
-                                    Set<String> filter, String id, boolean value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyBoolean(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                    boolean[] selected, String id, boolean value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyBooleanImpl(id, value));
     }
 
-    private void addPropertyDateTime(PropertiesImpl props, String typeId,
-                                     Set<String> filter, String id, GregorianCalendar value) {
-        if (!checkAddProperty(props, typeId, filter, id)) {
+    private void addPropertyDateTime(PropertiesImpl props, FileBridgePropertyTemplate template,
+                                     boolean[] selected, String id, GregorianCalendar value) {
+        if (!checkAddProperty(props, template, selected, id)) {
             return;
         }
 
         props.addProperty(new PropertyDateTimeImpl(id, value));
     }
 
-    private boolean checkAddProperty(Properties properties, String typeId,
-                                     Set<String> filter, String id) {
+    private boolean checkAddProperty(Properties properties, FileBridgePropertyTemplate template,
+                                     boolean[] selected, String id) {
         if ((properties == null) || (properties.getProperties() == null)) {
             throw new IllegalArgumentException("Properties must not be null!");
         }
@@ -2389,43 +3136,27 @@ public class FileBridgeRepository {
             throw new IllegalArgumentException("Id must not be null!");
         }
 
-        TypeDefinition type = typeManager.getInternalTypeDefinition(typeId);
-        if (type == null) {
-            throw new IllegalArgumentException("Unknown type: " + typeId);
-        }
-        if (!type.getPropertyDefinitions().containsKey(id)) {
+        int position = template.indexOf(id);
+        if (position < 0) {
             throw new IllegalArgumentException("Unknown property: " + id);
         }
 
-        String queryName = type.getPropertyDefinitions().get(id).getQueryName();
-
-        if ((queryName != null) && (filter != null)) {
-            if (!filter.contains(queryName)) {
-                return false;
-            } else {
-                filter.remove(queryName);
-            }
-        }
-
-        return true;
+        return (selected == null || selected[position]);
     }
 
     /**
      * Compiles the allowable actions for a file or folder.
      */
-    private AllowableActions compileAllowableActions(File file,
+    private AllowableActions compileAllowableActions(FileBridgeEntry entry,
                                                      boolean userReadOnly) {
-        if (file == null) {
-            throw new IllegalArgumentException("File must not be null!");
-        }
-
         // we can't gather allowable actions if the file or folder doesn't exist
-        if (!file.exists()) {
+        if (entry == null) {
             throw new CmisObjectNotFoundException("Object not found!");
         }
+        File file = entry.getFile();
 
         boolean isReadOnly = !file.canWrite();
-        boolean isFolder = file.isDirectory();
+        boolean isFolder = entry.isDirectory();
         boolean isRoot = root.equals(file);
 
         Set<Action> aas = EnumSet.noneOf(Action.class);
@@ -2448,7 +3179,7 @@ public class FileBridgeRepository {
             addAction(aas, Action.CAN_CREATE_FOLDER, !userReadOnly);
             addAction(aas, Action.CAN_DELETE_TREE, !userReadOnly && !isReadOnly);
         } else {
-            addAction(aas, Action.CAN_GET_CONTENT_STREAM, file.length() > 0);
+            addAction(aas, Action.CAN_GET_CONTENT_STREAM, entry.length() > 0);
             addAction(aas, Action.CAN_SET_CONTENT_STREAM, !userReadOnly
                     && !isReadOnly);
             addAction(aas, Action.CAN_DELETE_CONTENT_STREAM, !userReadOnly
@@ -2570,19 +3301,10 @@ public class FileBridgeRepository {
     }
 
     /**
-     * Converts an id to a File object. A simple and insecure implementation,
-     * but good enough for now.
+     * Converts an id, compact or legacy, to a File object.
      */
-    private File idToFile(String id) throws IOException {
-        if (id == null || id.length() == 0) {
-            throw new CmisInvalidArgumentException("Id is not valid!");
-        }
-
-        if (id.equals(ROOT_ID)) {
-            return root;
-        }
-
-        return new File(root, (new String(Base64.decode(id.getBytes("US-ASCII")), "UTF-8")).replace('/', File.separatorChar));
+    private File idToFile(String id) {
+        return objectIds.getFile(id);
     }
 
     /**
@@ -2597,21 +3319,10 @@ public class FileBridgeRepository {
     }
 
     /**
-     * Creates a File object from an id. A simple and insecure implementation,
-     * but good enough for now.
+     * Returns the compact id of a File object, see {@link FileBridgeObjectIds}.
      */
-    private String fileToId(File file) throws IOException {
-        if (file == null) {
-            throw new IllegalArgumentException("File is not valid!");
-        }
-
-        if (root.equals(file)) {
-            return ROOT_ID;
-        }
-
-        String path = getRepositoryPath(file);
-
-        return Base64.encodeBytes(path.getBytes("UTF-8"));
+    private String fileToId(File file) {
+        return objectIds.getId(file);
     }
 
     private String getRepositoryPath(File file) {
@@ -21,6 +21,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages the type definitions for all FileShare repositories.
@@ -33,6 +34,7 @@ public class FileBridgeTypeManager {
 
     private final TypeDefinitionFactory typeDefinitionFactory;
     private final Map<String, TypeDefinition> typeDefinitions;
+    private volatile Map<String, FileBridgePropertyTemplate> propertyTemplates;
 
     public FileBridgeTypeManager() {
         // set up TypeDefinitionFactory
@@ -45,7 +47,7 @@ public class FileBridgeTypeManager {
         typeDefinitionFactory.setDefaultTypeMutability(typeDefinitionFactory.createTypeMutability(false, false, false));
 
         // set up definitions map
-        typeDefinitions = new HashMap<String, TypeDefinition>();
+        typeDefinitions = new ConcurrentHashMap<String, TypeDefinition>();
 
         // add base folder type
         MutableFolderTypeDefinition folderType = typeDefinitionFactory.createBaseFolderTypeDefinition(CmisVersion.CMIS_1_1);
@@ -191,6 +193,13 @@ public class FileBridgeTypeManager {
                 this.createPropertyStringDefinition(MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value(), "Key-Value Date", "Date"));
 
         typeDefinitions.put(rodaDocumentType.getId(), rodaDocumentType);
+
+        // the children of a folder can be sorted by these properties
+        setOrderableFlags(folderType);
+        setOrderableFlags(baseDocumentType);
+        setOrderableFlags(rodaDocumentType);
+
+        compilePropertyTemplates();
     }
 
     /**
@@ -224,6 +233,7 @@ public class FileBridgeTypeManager {
         }
 
         typeDefinitions.put(newType.getId(), newType);
+        compilePropertyTemplates();
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Added type '{}'.", type.getId());
@@ -243,20 +253,53 @@ public class FileBridgeTypeManager {
         }
     }
 
+    /**
+     * Method responsible for setting the orderable flag of the properties getChildren can sort the children by.
+     */
+    private void setOrderableFlags(MutableTypeDefinition type) {
+        for (String propertyId : FileBridgeChildrenSnapshot.ORDERABLE_PROPERTIES) {
+            PropertyDefinition<?> propDef = type.getPropertyDefinitions().get(propertyId);
+            if (propDef != null) {
+                ((MutablePropertyDefinition<?>) propDef).setIsOrderable(true);
+            }
+        }
+    }
+
+    /**
+     * Method responsible for building the property templates of all the types. The templates are replaced as a whole,
+     * so readers never see a partially built map.
+     */
+    private void compilePropertyTemplates() {
+        Map<String, FileBridgePropertyTemplate> templates = new HashMap<String, FileBridgePropertyTemplate>();
+        for (TypeDefinition type : typeDefinitions.values()) {
+            templates.put(type.getId(), new FileBridgePropertyTemplate(type));
+        }
+        propertyTemplates = templates;
+    }
+
     /**
      * Returns the internal type definition.
      */
-    public synchronized TypeDefinition getInternalTypeDefinition(String typeId) {
+    public TypeDefinition getInternalTypeDefinition(String typeId) {
         return typeDefinitions.get(typeId);
     }
 
     /**
      * Returns all internal type definitions.
      */
-    public synchronized Collection<TypeDefinition> getInternalTypeDefinitions() {
+    public Collection<TypeDefinition> getInternalTypeDefinitions() {
         return typeDefinitions.values();
     }
 
+    /**
+     * Function responsible for returning the property template of a type.
+     * @param typeId The type id.
+     * @return The type's property template, or null if the type is unknown.
+     */
+    public FileBridgePropertyTemplate getPropertyTemplate(String typeId) {
+        return propertyTemplates.get(typeId);
+    }
+
     // --- service methods ---
 
     public TypeDefinition getTypeDefinition(CallContext context, String typeId) {
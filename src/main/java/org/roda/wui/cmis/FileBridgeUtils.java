@@ -1,5 +1,6 @@
 package org.roda.wui.cmis;
 
+import org.roda.wui.cmis.metadata.AipDescriptor;
 import org.roda.wui.cmis.metadata.Ead2002Metadata;
 import org.roda.wui.cmis.metadata.DublinCore20021212Metadata;
 import org.roda.wui.cmis.metadata.KeyValueMetadata;
@@ -10,19 +11,11 @@ import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.data.*;
 import org.apache.chemistry.opencmis.commons.data.Properties;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class FileBridgeUtils {
 
@@ -41,6 +34,65 @@ public final class FileBridgeUtils {
         return value.booleanValue();
     }
 
+    /**
+     * Returns the integer value of a repository option or the default value if
+     * the option is not set or is not a valid integer.
+     */
+    public static int getIntegerOption(Map<String, String> options, String name, int def) {
+        if (options == null || options.get(name) == null) {
+            return def;
+        }
+
+        try {
+            return Integer.parseInt(options.get(name).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /**
+     * Returns the boolean value of a repository option or the default value if
+     * the option is not set.
+     */
+    public static boolean getBooleanOption(Map<String, String> options, String name, boolean def) {
+        if (options == null || options.get(name) == null || options.get(name).trim().length() == 0) {
+            return def;
+        }
+
+        return Boolean.parseBoolean(options.get(name).trim());
+    }
+
+    /**
+     * Returns the value of a repository option or the default value if the
+     * option is not set.
+     */
+    public static String getStringOption(Map<String, String> options, String name, String def) {
+        if (options == null || options.get(name) == null || options.get(name).trim().length() == 0) {
+            return def;
+        }
+
+        return options.get(name).trim();
+    }
+
+    /**
+     * Returns the comma separated values of a repository option or the default
+     * value if the option is not set.
+     */
+    public static List<String> getListOption(Map<String, String> options, String name, List<String> def) {
+        if (options == null || options.get(name) == null || options.get(name).trim().length() == 0) {
+            return def;
+        }
+
+        List<String> result = new ArrayList<String>();
+        for (String value : options.get(name).split(",")) {
+            if (value.trim().length() > 0) {
+                result.add(value.trim());
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Converts milliseconds into a {@link GregorianCalendar} object, setting
      * the timezone to GMT and cutting milliseconds off.
@@ -148,29 +200,94 @@ public final class FileBridgeUtils {
     /******************************************************************************************************************/
 
     /**
-     * Method responsible for checking if a given AIP has CMIS reading permissions.
+     * Shared JSON mapper. An ObjectMapper is thread-safe once configured, and expensive to create.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Parsed "aip.json" files, by file path. An entry is parsed again when the file's modification time or size
+     * changes, as RODA rewrites the "aip.json" file on every change to the AIP.
+     */
+    private static final Map<String, AipDescriptor> AIP_DESCRIPTORS = new ConcurrentHashMap<String, AipDescriptor>();
+
+    /**
+     * Method responsible for returning the parsed "aip.json" file of an AIP, parsing it only if it changed since it
+     * was last parsed.
      * @param aipFilePath The path to the "aip.json" file.
-     * @return True if the AIP has CMIS read permissions, false otherwise.
+     * @return The AIP descriptor. Not readable if the file does not exist or cannot be parsed.
      */
-    public static boolean canReadAIP(String aipFilePath) {
+    public static AipDescriptor getAipDescriptor(String aipFilePath) {
+        File aipFile = new File(aipFilePath);
+        long lastModified = aipFile.lastModified();
+        long size = aipFile.length();
+
+        AipDescriptor aipDescriptor = AIP_DESCRIPTORS.get(aipFilePath);
+        if (aipDescriptor == null || !aipDescriptor.isCurrent(lastModified, size)) {
+            aipDescriptor = parseAipDescriptor(aipFilePath, lastModified, size);
+            AIP_DESCRIPTORS.put(aipFilePath, aipDescriptor);
+        }
+        return aipDescriptor;
+    }
+
+    /**
+     * Method responsible for dropping the parsed "aip.json" file of a removed AIP.
+     * @param aipFilePath The path to the "aip.json" file.
+     */
+    public static void removeAipDescriptor(String aipFilePath) {
+        AIP_DESCRIPTORS.remove(aipFilePath);
+    }
+
+    /**
+     * Method responsible for parsing an "aip.json" file, reading it once.
+     * @param aipFilePath The path to the "aip.json" file.
+     * @param lastModified The modification time of the file.
+     * @param size The size of the file.
+     * @return The AIP descriptor.
+     */
+    private static AipDescriptor parseAipDescriptor(String aipFilePath, long lastModified, long size) {
+        AipDescriptor aipDescriptor = new AipDescriptor(aipFilePath, lastModified, size);
         try {
-            String json = new String(Files.readAllBytes(Paths.get(aipFilePath)));
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(json);
+            JsonNode node = MAPPER.readTree(new File(aipFilePath));
+            if (node == null) { return aipDescriptor; }
 
             // check for reading permissions on this aip files
-            if ((node.get("permissions") != null) && (node.get("permissions").get("groups") != null) &&
-                    (node.get("permissions").get("groups").get("READ") != null) &&
-                    node.get("permissions").get("groups").get("READ").isArray()) {
+            JsonNode readPermissions = node.path("permissions").path("groups").path("READ");
+            if (readPermissions.isArray()) {
+                for (JsonNode groupPermission : readPermissions) {
+                    if (groupPermission.asText().equals("cmis")) { aipDescriptor.setReadable(true); }
+                }
+            }
+
+            // check for descriptive metadata files
+            if (node.path("descriptiveMetadata").isArray()) {
+                for (JsonNode metadataFile : node.get("descriptiveMetadata")) {
+                    if (metadataFile.get("id") != null) {
+                        aipDescriptor.getDescriptiveMetadataIds().add(metadataFile.get("id").asText());
+                    }
+                }
+            }
 
-                for (JsonNode groupPermission : node.get("permissions").get("groups").get("READ")) {
-                    if (groupPermission.asText().equals("cmis")) { return true; }
+            // check for representations
+            if (node.path("representations").isArray()) {
+                for (JsonNode representation : node.get("representations")) {
+                    if (representation.get("id") != null) {
+                        aipDescriptor.getRepresentationIds().add(representation.get("id").asText());
+                    }
                 }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return false;
+        return aipDescriptor;
+    }
+
+    /**
+     * Method responsible for checking if a given AIP has CMIS reading permissions.
+     * @param aipFilePath The path to the "aip.json" file.
+     * @return True if the AIP has CMIS read permissions, false otherwise.
+     */
+    public static boolean canReadAIP(String aipFilePath) {
+        return getAipDescriptor(aipFilePath).isReadable();
     }
 
     /**
@@ -180,32 +297,14 @@ public final class FileBridgeUtils {
      */
     public static Ead2002Metadata getEAD2002Metadata(String aipFilePath) {
         Ead2002Metadata ead2002Metadata = new Ead2002Metadata();
-        try {
-            String json = new String(Files.readAllBytes(Paths.get(aipFilePath)));
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(json);
+        AipDescriptor aipDescriptor = getAipDescriptor(aipFilePath);
+        for (String metadataFilename : aipDescriptor.getDescriptiveMetadataIds()) {
+            String metadataFilePath = aipDescriptor.getDescriptiveMetadataPath(metadataFilename);
 
-            // check for descriptive metadata files
-            if ((node.get("descriptiveMetadata") != null) && node.get("descriptiveMetadata").isArray()) {
-                for (JsonNode metadataFiles : node.get("descriptiveMetadata")) {
-                    if (metadataFiles.get("id") != null) {
-                        String metadataFilename = metadataFiles.get("id").asText();
-                        String metadataFilePath = aipFilePath.replace("aip.json", "") + "metadata/descriptive/" + metadataFilename;
-
-                        //Parse EAD 2002 Files
-                        if (metadataFilename.equals("ead2002.xml") || metadataFilename.equals("ead_2002.xml")) {
-                            try {
-                                File ead2002File = new File(metadataFilePath);
-                                ead2002Metadata = FileBridgeUtils.parseEAD2002(ead2002File);
-                            } catch (NullPointerException e) {
-                                System.err.println("Error reading XML EAD 2002 file '" + metadataFilePath + "'");
-                            }
-                        }
-                    }
-                }
+            //Parse EAD 2002 Files
+            if (metadataFilename.equals("ead2002.xml") || metadataFilename.equals("ead_2002.xml")) {
+                ead2002Metadata = FileBridgeUtils.parseEAD2002(new File(metadataFilePath));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
         return ead2002Metadata;
     }
@@ -217,32 +316,14 @@ public final class FileBridgeUtils {
      */
     public static DublinCore20021212Metadata getDublinCore20021212Metadata(String aipFilePath) {
         DublinCore20021212Metadata dublinCore20021212Metadata = new DublinCore20021212Metadata();
-        try {
-            String json = new String(Files.readAllBytes(Paths.get(aipFilePath)));
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(json);
+        AipDescriptor aipDescriptor = getAipDescriptor(aipFilePath);
+        for (String metadataFilename : aipDescriptor.getDescriptiveMetadataIds()) {
+            String metadataFilePath = aipDescriptor.getDescriptiveMetadataPath(metadataFilename);
 
-            // check for descriptive metadata files
-            if ((node.get("descriptiveMetadata") != null) && node.get("descriptiveMetadata").isArray()) {
-                for (JsonNode metadataFiles : node.get("descriptiveMetadata")) {
-                    if (metadataFiles.get("id") != null) {
-                        String metadataFilename = metadataFiles.get("id").asText();
-                        String metadataFilePath = aipFilePath.replace("aip.json", "") + "metadata/descriptive/" + metadataFilename;
-
-                        //Parse Dublin Core Simple 2002-12-12 File
-                        if (metadataFilename.equals("dc_SimpleDC20021212.xml")) {
-                            try {
-                                File dcSimpleDC20021212File = new File(metadataFilePath);
-                                dublinCore20021212Metadata = FileBridgeUtils.parseDublinCoreSimple20021212(dcSimpleDC20021212File);
-                            } catch (NullPointerException e) {
-                                System.out.println("Error reading XML Dublin Core Simple 2002-12-12 file '" + metadataFilePath + "'");
-                            }
-                        }
-                    }
-                }
+            //Parse Dublin Core Simple 2002-12-12 File
+            if (metadataFilename.equals("dc_SimpleDC20021212.xml")) {
+                dublinCore20021212Metadata = FileBridgeUtils.parseDublinCoreSimple20021212(new File(metadataFilePath));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
         return dublinCore20021212Metadata;
     }
@@ -254,32 +335,14 @@ public final class FileBridgeUtils {
      */
     public static KeyValueMetadata getKeyValueMetadata(String aipFilePath) {
         KeyValueMetadata keyValueMetadata = new KeyValueMetadata();
-        try {
-            String json = new String(Files.readAllBytes(Paths.get(aipFilePath)));
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(json);
+        AipDescriptor aipDescriptor = getAipDescriptor(aipFilePath);
+        for (String metadataFilename : aipDescriptor.getDescriptiveMetadataIds()) {
+            String metadataFilePath = aipDescriptor.getDescriptiveMetadataPath(metadataFilename);
 
-            // check for descriptive metadata files
-            if ((node.get("descriptiveMetadata") != null) && node.get("descriptiveMetadata").isArray()) {
-                for (JsonNode metadataFiles : node.get("descriptiveMetadata")) {
-                    if (metadataFiles.get("id") != null) {
-                        String metadataFilename = metadataFiles.get("id").asText();
-                        String metadataFilePath = aipFilePath.replace("aip.json", "") + "metadata/descriptive/" + metadataFilename;
-
-                        //Parse Key-value File
-                        if (metadataFilename.equals("key-value.xml") || metadataFilename.equals("metadata.xml")) {
-                            try {
-                                File keyValueFile = new File(metadataFilePath);
-                                keyValueMetadata = FileBridgeUtils.parseKeyValue(keyValueFile);
-                            } catch (NullPointerException e) {
-                                System.out.println("Error reading XML Key-value file '" + metadataFilePath + "'");
-                            }
-                        }
-                    }
-                }
+            //Parse Key-value File
+            if (metadataFilename.equals("key-value.xml") || metadataFilename.equals("metadata.xml")) {
+                keyValueMetadata = FileBridgeUtils.parseKeyValue(new File(metadataFilePath));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
         return keyValueMetadata;
     }
@@ -293,365 +356,7 @@ public final class FileBridgeUtils {
      * @param file The filename of the file to be parsed.
      */
     public static Ead2002Metadata parseEAD2002(File file) {
-
-        Ead2002Metadata ead2002Metadata = new Ead2002Metadata();
-
-        try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(file);
-            doc.getDocumentElement().normalize();
-
-            String rootElement = doc.getDocumentElement().getNodeName();
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println("EAD2002 Parser");
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println(rootElement);
-
-            // *********************************************************************************************************
-            //archdesc element
-            Node archdescNode = doc.getElementsByTagName("archdesc").item(0);
-            //System.out.println(".." + archdescNode.getNodeName());
-            for (int i = 0; i < archdescNode.getAttributes().getLength(); i++) {
-                Node archdescAttributeNode = archdescNode.getAttributes().item(i);
-
-                if (archdescAttributeNode.getNodeName().equals("level")) {
-                    ead2002Metadata.setArchiveDescription(archdescAttributeNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println(".." + archdescNode.getNodeName() + " level: " + ead2002Metadata.getArchiveDescription());
-                }
-            }
-
-            // *********************************************************************************************************
-            //did element
-            Node didNode = archdescNode.getChildNodes().item(1);
-            //System.out.println(".." + didNode.getNodeName());
-
-            //did child nodes
-            NodeList didNodeChildren = didNode.getChildNodes();
-
-            for (int i = 0; i < didNodeChildren.getLength(); i++) {
-                Node didNodeChild = didNodeChildren.item(i);
-                String didNodeName = didNodeChild.getNodeName();
-
-                if (didNodeName.equals("unittitle")) {
-                    ead2002Metadata.setUnitTitle(didNodeChild.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("....unittitle: " + ead2002Metadata.getUnitTitle());
-                }
-
-                if (didNodeName.equals("unitid")) {
-                    ead2002Metadata.setUnitId(didNodeChild.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("....unitid: " + ead2002Metadata.getUnitId());
-
-                    for (int j = 0; j < didNodeChild.getAttributes().getLength(); j++) {
-                        Node unitidNode = didNodeChild.getAttributes().item(j);
-                        String unitidNodeName = unitidNode.getNodeName();
-
-                        if (unitidNodeName.equals("countrycode")) {
-                            ead2002Metadata.setCountryCode(unitidNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....unitid countrycode: " + ead2002Metadata.getCountryCode());
-                        }
-
-                        if (unitidNodeName.equals("repositorycode")) {
-                            ead2002Metadata.setRepositoryCode(unitidNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....unitid repositorycode: " + ead2002Metadata.getRepositoryCode());
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("unitdate")) {
-                    ead2002Metadata.setUnitDate(didNodeChild.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("....unitdate: " + ead2002Metadata.getUnitDate());
-
-                    for (int j = 0; j < didNodeChild.getAttributes().getLength(); j++) {
-                        Node unitdateNode = didNodeChild.getAttributes().item(j);
-                        String unitdateNodeName = unitdateNode.getNodeName();
-
-                        if (unitdateNodeName.equals("label")) {
-                            ead2002Metadata.setUnitDateLabel(unitdateNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....unitdate label: " + ead2002Metadata.getUnitDateLabel());
-                        }
-
-                        if (unitdateNodeName.equals("normal")) {
-                            ead2002Metadata.setUnitDateNormal(unitdateNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....unitdate normal: " + ead2002Metadata.getUnitDateNormal());
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("physdesc")) {
-                    for (int j = 0; j < didNodeChild.getChildNodes().getLength(); j++) {
-                        Node physdescNode = didNodeChild.getChildNodes().item(j);
-                        String physdescNodeName = physdescNode.getNodeName();
-
-                        if (physdescNodeName.equals("extent")) {
-                            ead2002Metadata.setPhysicalDescriptionExtent(physdescNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....physdesc extent: " + ead2002Metadata.getPhysicalDescriptionExtent());
-                        }
-
-                        if (physdescNodeName.equals("dimensions")) {
-                            ead2002Metadata.setPhysicalDescriptionDimensions(physdescNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....physdesc dimensions: " + ead2002Metadata.getPhysicalDescriptionDimensions());
-                        }
-
-                        if (physdescNodeName.equals("physfacet")) {
-                            ead2002Metadata.setPhysicalDescriptionAppearance(physdescNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....physdesc physfacet: " + ead2002Metadata.getPhysicalDescriptionAppearance());
-                        }
-
-                        if (physdescNodeName.equals("#text")) {
-                            String physdesc = physdescNode.getNodeValue().replaceAll("\\n", "").trim();
-                            if (physdesc.length() > 0) {
-                                ead2002Metadata.setPhysicalDescription(physdesc);
-                                //System.out.println("....physdesc: " + ead2002Metadata.getPhysicalDescription());
-                            }
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("repository")) {
-                    for (int j = 0; j < didNodeChild.getChildNodes().getLength(); j++) {
-                        Node repositoryNode = didNodeChild.getChildNodes().item(j);
-                        String repositoryNodeName = repositoryNode.getNodeName();
-
-                        if (repositoryNodeName.equals("corpname")) {
-                            ead2002Metadata.setRepositoryName(repositoryNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....repository corpname: " + ead2002Metadata.getRepositoryName());
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("langmaterial")) {
-                    for (int j = 0; j < didNodeChild.getChildNodes().getLength(); j++) {
-                        Node langmaterialNode = didNodeChild.getChildNodes().item(j);
-                        String langmaterialNodeName = langmaterialNode.getNodeName();
-
-                        if (langmaterialNodeName.equals("language")) {
-                            ead2002Metadata.setLangMaterialLanguage(langmaterialNode.getChildNodes().item(0)
-                                    .getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....langmaterial language: " + ead2002Metadata.getLangMaterialLanguage());
-                        }
-
-                        if (langmaterialNodeName.equals("#text")) {
-                            String langmaterial = langmaterialNode.getNodeValue().replaceAll("\\n", "").trim();
-                            if (langmaterial.length() > 0) {
-                                ead2002Metadata.setLangMaterial(langmaterial);
-                                //System.out.println("....langmaterial: " + ead2002Metadata.getLangMaterial());
-                            }
-                        }
-                    }
-                }
-                if (didNodeName.equals("note")) {
-                    for (int j = 0; j < didNodeChild.getAttributes().getLength(); j++) {
-                        Node noteAttributeNode = didNodeChild.getAttributes().item(j);
-                        String noteAttributeNodeValue = noteAttributeNode.getNodeValue();
-
-                        if (noteAttributeNodeValue.equals("sourcesDescription")) {
-                            ead2002Metadata.setNoteSourcesDescription(didNodeChild.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....note sourcesDescription: " + ead2002Metadata.getNoteSourcesDescription());
-                        }
-
-                        if (noteAttributeNodeValue.equals("generalNote")) {
-                            ead2002Metadata.setNoteGeneralNote(didNodeChild.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....note generalNote: " + ead2002Metadata.getNoteGeneralNote());
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("origination")) {
-                    String origination = didNodeChild.getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim();
-                    if (origination.length() > 0) {
-                        ead2002Metadata.setOrigination(origination);
-                        //System.out.println("....origination: " + ead2002Metadata.getOrigination());
-                    }
-
-                    for (int j = 0; j < didNodeChild.getAttributes().getLength(); j++) {
-                        Node originationAttributeNode = didNodeChild.getAttributes().item(j);
-                        String originationAttributeNodeName = originationAttributeNode.getNodeValue();
-
-                        if (originationAttributeNodeName.equals("creator")) {
-                            ead2002Metadata.setOriginationCreator(didNodeChild.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....origination creator: " + ead2002Metadata.getOriginationCreator());
-                        }
-
-                        if (originationAttributeNodeName.equals("producer")) {
-                            ead2002Metadata.setOriginationProducer(didNodeChild.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("....origination producer: " + ead2002Metadata.getOriginationProducer());
-                        }
-                    }
-                }
-
-                if (didNodeName.equals("materialspec")) {
-                    ead2002Metadata.setMaterialSpecification(didNodeChild.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("....materialspec: " + ead2002Metadata.getMaterialSpecification());
-                }
-            }
-
-            // *********************************************************************************************************
-
-            for (int i = 0; i < archdescNode.getChildNodes().getLength(); i++) {
-                Node archdescChildNode = archdescNode.getChildNodes().item(i);
-                String archdescChildNodeName = archdescChildNode.getNodeName();
-
-                if (archdescChildNodeName.equals("odd")) {
-                    for (int j = 0; j < archdescChildNode.getAttributes().getLength(); j++) {
-                        Node oddAttributeNode = archdescChildNode.getAttributes().item(j);
-                        String oddAttributeNodeName = oddAttributeNode.getNodeValue();
-
-                        if (oddAttributeNodeName.equals("levelOfDetail")) {
-                            ead2002Metadata.setOddLevelOfDetail(archdescChildNode.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("..odd levelOfDetail: " + ead2002Metadata.getOddLevelOfDetail());
-                        }
-
-                        if (oddAttributeNodeName.equals("statusDescription")) {
-                            ead2002Metadata.setOddStatusDescription(archdescChildNode.getChildNodes().item(1)
-                                    .getChildNodes().item(0).getNodeValue().replaceAll("\\n", "").trim());
-                            //System.out.println("..odd statusDescription: " + ead2002Metadata.getOddStatusDescription());
-                        }
-                    }
-
-                }
-
-                if (archdescChildNodeName.equals("scopecontent")) {
-                    ead2002Metadata.setScopeContent(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..scopecontent: " + ead2002Metadata.getScopeContent());
-                }
-
-                if (archdescChildNodeName.equals("arrangement")) {
-                    ead2002Metadata.setArrangement(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..arrangement: " + ead2002Metadata.getArrangement());
-                }
-
-                if (archdescChildNodeName.equals("appraisal")) {
-                    ead2002Metadata.setAppraisal(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..appraisal: " + ead2002Metadata.getAppraisal());
-                }
-
-                if (archdescChildNodeName.equals("acqinfo")) {
-                    ead2002Metadata.setAcquisitionInfo(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..acqinfo: " + ead2002Metadata.getAcquisitionInfo());
-                }
-
-                if (archdescChildNodeName.equals("accruals")) {
-                    ead2002Metadata.setAccruals(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..accruals: " + ead2002Metadata.getAccruals());
-                }
-
-                if (archdescChildNodeName.equals("custodhist")) {
-                    ead2002Metadata.setCustodialHistory(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..custodhist: " + ead2002Metadata.getCustodialHistory());
-                }
-
-                if (archdescChildNodeName.equals("processinfo")) {
-                    for (int j = 0; j < archdescChildNode.getChildNodes().getLength(); j++) {
-                        Node processinfoNode = archdescChildNode.getChildNodes().item(j);
-                        if (processinfoNode.getChildNodes().getLength() > 0) {
-                            if ((processinfoNode.getChildNodes().item(0) != null) &&
-                                    processinfoNode.getChildNodes().item(0).getNodeName().equals("date")) {
-                                ead2002Metadata.setProcessInfoDate(processinfoNode.getChildNodes().item(0).getChildNodes().item(0)
-                                        .getNodeValue().replaceAll("\\n", "").trim());
-                                //System.out.println("..processinfo date: " + ead2002Metadata.getProcessInfoDate());
-                            } else if ((processinfoNode.getChildNodes().item(1) != null) &&
-                                    processinfoNode.getChildNodes().item(1).getNodeName().equals("date")) {
-                                ead2002Metadata.setProcessInfoDate(processinfoNode.getChildNodes().item(1).getChildNodes().item(0)
-                                        .getNodeValue().replaceAll("\\n", "").trim());
-                                //System.out.println("..processinfo date: " + ead2002Metadata.getProcessInfoDate());
-                            } else {
-                                ead2002Metadata.setProcessInfoArchivistNotes(processinfoNode.getChildNodes().item(0)
-                                        .getNodeValue().replaceAll("\\n", "").trim());
-                                //System.out.println("..processinfo archivist notes: " + ead2002Metadata.getProcessInfoArchivistNotes());
-                            }
-                        }
-                    }
-                }
-
-                if (archdescChildNodeName.equals("originalsloc")) {
-                    ead2002Metadata.setOriginalsLocation(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..originalsloc: " + ead2002Metadata.getOriginalsLocation());
-                }
-
-                if (archdescChildNodeName.equals("altformavail")) {
-                    ead2002Metadata.setAlternativeFormAvailable(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..altformavail: " + ead2002Metadata.getAlternativeFormAvailable());
-                }
-
-                if (archdescChildNodeName.equals("relatedmaterial")) {
-                    ead2002Metadata.setRelatedMaterial(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..relatedmaterial: " + ead2002Metadata.getRelatedMaterial());
-                }
-
-                if (archdescChildNodeName.equals("accessrestrict")) {
-                    ead2002Metadata.setAccessRestrictions(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..accessrestrict: " + ead2002Metadata.getAccessRestrictions());
-                }
-
-                if (archdescChildNodeName.equals("userestrict")) {
-                    ead2002Metadata.setUseRestrictions(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..userestrict: " + ead2002Metadata.getUseRestrictions());
-                }
-
-                if (archdescChildNodeName.equals("otherfindaid")) {
-                    ead2002Metadata.setOtherFindAid(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..otherfindaid: " + ead2002Metadata.getOtherFindAid());
-                }
-
-                if (archdescChildNodeName.equals("phystech")) {
-                    ead2002Metadata.setPhysicalTech(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..phystech: " + ead2002Metadata.getPhysicalTech());
-                }
-
-                if (archdescChildNodeName.equals("bibliography")) {
-                    ead2002Metadata.setBibliography(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..bibliography: " + ead2002Metadata.getBibliography());
-                }
-
-                if (archdescChildNodeName.equals("prefercite")) {
-                    ead2002Metadata.setPreferCite(archdescChildNode.getChildNodes().item(1).getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..prefercite: " + ead2002Metadata.getPreferCite());
-                }
-            }
-
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (SAXException e) {
-            e.printStackTrace();
-        }
-
-        return ead2002Metadata;
+        return FileBridgeMetadataParser.parseEAD2002(file);
     }
 
     /**
@@ -659,135 +364,7 @@ public final class FileBridgeUtils {
      * @param file The filename of the file to be parsed.
      */
     public static DublinCore20021212Metadata parseDublinCoreSimple20021212(File file) {
-
-        DublinCore20021212Metadata dublinCore20021212Metadata = new DublinCore20021212Metadata();
-
-        try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(file);
-            doc.getDocumentElement().normalize();
-
-            String rootElement = doc.getDocumentElement().getNodeName();
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println("Dublin Core Simple 2002-12-12 Parser");
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println("Root element: " + rootElement);
-
-            // *********************************************************************************************************
-            //simpledc root element
-            //System.out.println(rootElement);
-
-            for (int i = 0; i < doc.getDocumentElement().getChildNodes().getLength(); i++) {
-                Node simpledcNode = doc.getDocumentElement().getChildNodes().item(i);
-                String nodeName = simpledcNode.getNodeName();
-
-                if (nodeName.equals("title")) {
-                    dublinCore20021212Metadata.setTitle(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..title: " + dublinCore20021212Metadata.getTitle());
-                }
-
-                if (nodeName.equals("identifier")) {
-                    dublinCore20021212Metadata.setIdentifier(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..identifier: " + dublinCore20021212Metadata.getIdentifier());
-                }
-
-                if (nodeName.equals("creator")) {
-                    dublinCore20021212Metadata.setCreator(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..creator: " + dublinCore20021212Metadata.getCreator());
-                }
-
-                if (nodeName.equals("date")) {
-                    if (dublinCore20021212Metadata.getInitialDate().equals("")) {
-                        dublinCore20021212Metadata.setInitialDate(simpledcNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..initial date: " + dublinCore20021212Metadata.getInitialDate());
-                    } else {
-                        dublinCore20021212Metadata.setFinalDate(simpledcNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..final date: " + dublinCore20021212Metadata.getFinalDate());
-                    }
-                }
-
-                if (nodeName.equals("description")) {
-                    dublinCore20021212Metadata.setDescription(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..description: " + dublinCore20021212Metadata.getDescription());
-                }
-
-                if (nodeName.equals("publisher")) {
-                    dublinCore20021212Metadata.setPublisher(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..publisher: " + dublinCore20021212Metadata.getPublisher());
-                }
-
-                if (nodeName.equals("contributor")) {
-                    dublinCore20021212Metadata.setContributor(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..contributor: " + dublinCore20021212Metadata.getContributor());
-                }
-
-                if (nodeName.equals("rights")) {
-                    dublinCore20021212Metadata.setRights(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..rights: " + dublinCore20021212Metadata.getRights());
-                }
-
-                if (nodeName.equals("language")) {
-                    dublinCore20021212Metadata.setLanguage(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..language: " + dublinCore20021212Metadata.getLanguage());
-                }
-
-                if (nodeName.equals("coverage")) {
-                    dublinCore20021212Metadata.setCoverage(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..coverage: " + dublinCore20021212Metadata.getCoverage());
-                }
-
-                if (nodeName.equals("format")) {
-                    dublinCore20021212Metadata.setFormat(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..format: " + dublinCore20021212Metadata.getFormat());
-                }
-
-                if (nodeName.equals("relation")) {
-                    dublinCore20021212Metadata.setRelation(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..relation: " + dublinCore20021212Metadata.getRelation());
-                }
-
-                if (nodeName.equals("subject")) {
-                    dublinCore20021212Metadata.setSubject(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..subject: " + dublinCore20021212Metadata.getSubject());
-                }
-
-                if (nodeName.equals("type")) {
-                    dublinCore20021212Metadata.setType(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..type: " + dublinCore20021212Metadata.getType());
-                }
-
-                if (nodeName.equals("source")) {
-                    dublinCore20021212Metadata.setSource(simpledcNode.getChildNodes().item(0)
-                            .getNodeValue().replaceAll("\\n", "").trim());
-                    //System.out.println("..source: " + dublinCore20021212Metadata.getSource());
-                }
-            }
-
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (SAXException e) {
-            e.printStackTrace();
-        }
-
-        return dublinCore20021212Metadata;
+        return FileBridgeMetadataParser.parseDublinCoreSimple20021212(file);
     }
 
     /**
@@ -795,67 +372,7 @@ public final class FileBridgeUtils {
      * @param file The filename of the file to be parsed.
      */
     public static KeyValueMetadata parseKeyValue(File file) {
-
-        KeyValueMetadata keyValueMetadata = new KeyValueMetadata();
-
-        try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            Document doc = dBuilder.parse(file);
-            doc.getDocumentElement().normalize();
-
-            String rootElement = doc.getDocumentElement().getNodeName();
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println("Key-value Parser");
-            //System.out.println("---------------------------------------------------------------------------------------");
-            //System.out.println("Root element: " + rootElement);
-
-            // *********************************************************************************************************
-            //metadata root element
-            //System.out.println(rootElement);
-
-            for (int i = 0; i < doc.getDocumentElement().getChildNodes().getLength(); i++) {
-                Node metadataNode = doc.getDocumentElement().getChildNodes().item(i);
-
-                if (metadataNode.getNodeName().equals("field")) {
-
-                    String attributeName = metadataNode.getAttributes().item(0).getNodeValue();
-
-                    if (attributeName.equals("id")) {
-                        keyValueMetadata.setId(metadataNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..field id: " + keyValueMetadata.getId());
-                    }
-
-                    if (attributeName.equals("title")) {
-                        keyValueMetadata.setTitle(metadataNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..field title: " + keyValueMetadata.getTitle());
-                    }
-
-                    if (attributeName.equals("producer")) {
-                        keyValueMetadata.setProducer(metadataNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..field producer: " + keyValueMetadata.getProducer());
-                    }
-
-                    if (attributeName.equals("date")) {
-                        keyValueMetadata.setDate(metadataNode.getChildNodes().item(0)
-                                .getNodeValue().replaceAll("\\n", "").trim());
-                        //System.out.println("..field date: " + keyValueMetadata.getDate());
-                    }
-                }
-            }
-
-        } catch (ParserConfigurationException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (SAXException e) {
-            e.printStackTrace();
-        }
-
-        return keyValueMetadata;
+        return FileBridgeMetadataParser.parseKeyValue(file);
     }
 
     // -----------------------------------------------------------------------------------------------------------------
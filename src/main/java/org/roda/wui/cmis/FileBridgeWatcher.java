@@ -0,0 +1,404 @@
+package org.roda.wui.cmis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the repository's metadata index up to date while RODA writes to the repository, without a full crawl.
+ *
+ * In "watch" mode the AIP folders, their "aip.json" files and their "representations" trees are watched through a
+ * {@link WatchService} (inotify on Linux). The events of a burst are coalesced, by waiting until no event arrives
+ * for the configured delay, and the AIPs they touch are re-indexed in a single batch. If the file system does not
+ * support watching (or the watches cannot be registered) the watcher falls back to "poll" mode, where the AIP
+ * folders are scanned periodically and the AIPs whose files' modification time or size changed are re-indexed.
+ */
+public class FileBridgeWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileBridgeWatcher.class);
+
+    private static final String AIP_JSON = "aip.json";
+    private static final String REPRESENTATIONS = "representations";
+    private static final String METADATA = "metadata";
+
+    /**
+     * Watcher modes.
+     */
+    public static final String MODE_WATCH = "watch";
+    public static final String MODE_POLL = "poll";
+    public static final String MODE_NONE = "none";
+
+    /**
+     * Default time, in milliseconds, without events after which a burst of events is re-indexed.
+     */
+    public static final int DEFAULT_DELAY = 1000;
+
+    /**
+     * Default interval, in seconds, between the scans of the "poll" mode.
+     */
+    public static final int DEFAULT_SCAN_INTERVAL = 60;
+
+    /**
+     * Maximum time a burst of events is held, in number of delays, so a steady stream of events is still indexed.
+     */
+    private static final int MAX_BATCH_DELAYS = 10;
+
+    private final FileBridgeRepository repository;
+    private final FileBridgeIndexer indexer;
+    private final Path root;
+
+    private volatile String mode = MODE_WATCH;
+    private int delay = DEFAULT_DELAY;
+    private int scanInterval = DEFAULT_SCAN_INTERVAL;
+
+    private volatile boolean running = false;
+    private Thread watcherThread = null;
+    private WatchService watchService = null;
+
+    /**
+     * Watched folders, by watch key.
+     */
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<WatchKey, Path>();
+
+    /**
+     * Signature of each AIP at the last scan of the "poll" mode, by AIP id.
+     */
+    private Map<String, Long> aipSignatures = new HashMap<String, Long>();
+
+    public FileBridgeWatcher(FileBridgeRepository repository, FileBridgeIndexer indexer) {
+        this.repository = repository;
+        this.indexer = indexer;
+        this.root = repository.getRootDirectory().toPath();
+    }
+
+    /**
+     * Method responsible for starting to watch the repository in a background thread. Does nothing in "none" mode
+     * or if the watcher is already running.
+     */
+    public synchronized void start() {
+        if (MODE_NONE.equalsIgnoreCase(mode) || (watcherThread != null && watcherThread.isAlive())) { return; }
+
+        running = true;
+        watcherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (MODE_WATCH.equalsIgnoreCase(mode) && openWatchService()) {
+                    watch();
+                } else {
+                    mode = MODE_POLL;
+                    poll();
+                }
+            }
+        }, "roda-cmis-watcher-" + repository.getRepositoryId());
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Method responsible for stopping the watcher.
+     */
+    public synchronized void stop() {
+        running = false;
+        closeWatchService();
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+    }
+
+    // --- watch mode ---
+
+    /**
+     * Function responsible for creating the watch service and registering the repository folders.
+     * @return True if the repository is watched. False if the file system does not support it.
+     */
+    private boolean openWatchService() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerRepository();
+            LOG.info("Watching repository '{}' ({} folders)", repository.getRepositoryId(), watchedFolders.size());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Could not watch repository '{}', scanning it every {} s instead: {}",
+                    repository.getRepositoryId(), scanInterval, e.getMessage());
+            closeWatchService();
+            return false;
+        }
+    }
+
+    /**
+     * Method responsible for closing the watch service, if it is open.
+     */
+    private void closeWatchService() {
+        if (watchService == null) { return; }
+        try {
+            watchService.close();
+        } catch (IOException ignored) { /* already closed */ }
+        watchService = null;
+        watchedFolders.clear();
+    }
+
+    /**
+     * Method responsible for registering the repository's root folder and all of its AIPs.
+     */
+    private void registerRepository() throws IOException {
+        register(root);
+        for (FileBridgeEntry aip : FileBridgeEntry.list(root.toFile())) {
+            if (aip.isDirectory()) { registerAip(aip.getFile()); }
+        }
+    }
+
+    /**
+     * Method responsible for registering an AIP folder and the folders of its "representations" tree.
+     * @param aip The AIP folder.
+     */
+    private void registerAip(File aip) throws IOException {
+        register(aip.toPath());
+        registerTree(new File(aip, REPRESENTATIONS));
+    }
+
+    /**
+     * Method responsible for registering a folder and its sub-folders, metadata folders excluded.
+     * @param folder The folder.
+     */
+    private void registerTree(File folder) throws IOException {
+        if (folder.getName().equalsIgnoreCase(METADATA) || !folder.isDirectory()) { return; }
+        register(folder.toPath());
+
+        final IOException[] failure = new IOException[1];
+        FileBridgeEntry.walk(folder, new FileBridgeEntry.Visitor() {
+            @Override
+            public boolean visit(FileBridgeEntry entry, int depth) {
+                if (!entry.isDirectory() || entry.getName().equalsIgnoreCase(METADATA) || failure[0] != null) {
+                    return false;
+                }
+                try {
+                    register(entry.getFile().toPath());
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+                return failure[0] == null;
+            }
+        });
+        if (failure[0] != null) { throw failure[0]; }
+    }
+
+    /**
+     * Method responsible for registering a single folder in the watch service.
+     * @param folder The folder.
+     */
+    private void register(Path folder) throws IOException {
+        WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedFolders.put(key, folder);
+    }
+
+    /**
+     * Method responsible for waiting for the watch events, coalescing them in batches and re-indexing the AIPs they
+     * touch.
+     */
+    private void watch() {
+        while (running) {
+            try {
+                WatchKey key = watchService.poll(1, TimeUnit.SECONDS);
+                if (key == null) { continue; }
+
+                // coalesce the burst: take events until none arrives for the delay, or the batch is held too long
+                Set<String> aipIds = new HashSet<String>();
+                boolean overflow = false;
+                long batchStart = System.currentTimeMillis();
+                while (key != null) {
+                    overflow |= processEvents(key, aipIds);
+                    if (System.currentTimeMillis() - batchStart >= (long) delay * MAX_BATCH_DELAYS) { break; }
+                    key = watchService.poll(delay, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    // events were lost: register the folders created meanwhile and reconcile the whole index
+                    LOG.warn("Repository '{}' changed faster than it could be watched, reconciling the index",
+                            repository.getRepositoryId());
+                    registerRepository();
+                    indexer.indexRepository();
+                } else if (!aipIds.isEmpty()) {
+                    indexer.reindexAips(aipIds);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (IOException e) {
+                LOG.warn("Could not watch repository '{}': {}", repository.getRepositoryId(), e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.error("Could not update the index of repository '" + repository.getRepositoryId() + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Function responsible for collecting the AIPs touched by the pending events of a watch key. The folders
+     * created inside the watched trees are registered as well.
+     * @param key The watch key.
+     * @param aipIds The set receiving the touched AIP ids.
+     * @return True if events were lost. False otherwise.
+     */
+    private boolean processEvents(WatchKey key, Set<String> aipIds) throws IOException {
+        boolean overflow = false;
+        Path folder = watchedFolders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (folder == null) { continue; }
+
+            Path path = folder.resolve((Path) event.context());
+            Path relativePath = root.relativize(path);
+            String name = path.getFileName().toString();
+
+            // skip hidden files, for example '.DS_Store'
+            if (name.startsWith(".")) { continue; }
+
+            String aipId = relativePath.getName(0).toString();
+            if (relativePath.getNameCount() == 1) {
+                // an AIP folder was added or removed
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && path.toFile().isDirectory()) {
+                    registerAip(path.toFile());
+                }
+                aipIds.add(aipId);
+            } else if (relativePath.getNameCount() == 2) {
+                // only the "aip.json" file and the "representations" folder of an AIP are indexed
+                if (name.equals(AIP_JSON)) {
+                    aipIds.add(aipId);
+                } else if (name.equals(REPRESENTATIONS)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) { registerTree(path.toFile()); }
+                    aipIds.add(aipId);
+                }
+            } else if (!name.equalsIgnoreCase(METADATA)) {
+                // an object of a representation was added, changed or removed
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) { registerTree(path.toFile()); }
+                aipIds.add(aipId);
+            }
+        }
+        if (!key.reset()) {
+            // the folder was removed
+            watchedFolders.remove(key);
+        }
+        return overflow;
+    }
+
+    // --- poll mode ---
+
+    /**
+     * Method responsible for scanning the repository periodically and re-indexing the AIPs that changed since the
+     * previous scan.
+     */
+    private void poll() {
+        aipSignatures = scanRepository();
+        while (running) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(scanInterval));
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            try {
+                Map<String, Long> signatures = scanRepository();
+                Set<String> aipIds = new HashSet<String>();
+                for (Map.Entry<String, Long> signature : signatures.entrySet()) {
+                    if (!signature.getValue().equals(aipSignatures.get(signature.getKey()))) {
+                        aipIds.add(signature.getKey());
+                    }
+                }
+                for (String aipId : aipSignatures.keySet()) {
+                    if (!signatures.containsKey(aipId)) { aipIds.add(aipId); }
+                }
+                aipSignatures = signatures;
+
+                if (!aipIds.isEmpty()) { indexer.reindexAips(aipIds); }
+            } catch (RuntimeException e) {
+                LOG.error("Could not update the index of repository '" + repository.getRepositoryId() + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Function responsible for computing the signature of every AIP in the repository.
+     * @return The signatures, by AIP id.
+     */
+    private Map<String, Long> scanRepository() {
+        Map<String, Long> signatures = new HashMap<String, Long>();
+        for (FileBridgeEntry aip : FileBridgeEntry.list(root.toFile())) {
+            if (aip.isDirectory()) { signatures.put(aip.getName(), scanAip(aip.getFile())); }
+        }
+        return signatures;
+    }
+
+    /**
+     * Function responsible for computing the signature of an AIP: a hash of the path, modification time and size of
+     * its "aip.json" file and of every object of its "representations" tree. Adding, removing, changing or renaming
+     * any of them changes the signature.
+     * @param aip The AIP folder.
+     * @return The AIP's signature.
+     */
+    private long scanAip(File aip) {
+        final long[] signature = new long[1];
+        FileBridgeEntry.walk(aip, new FileBridgeEntry.Visitor() {
+            @Override
+            public boolean visit(FileBridgeEntry entry, int depth) {
+                if (depth == 1 && !entry.getName().equals(AIP_JSON) && !entry.getName().equals(REPRESENTATIONS)) {
+                    return false;
+                }
+                if (entry.getName().equalsIgnoreCase(METADATA)) { return false; }
+
+                long hash = entry.getFile().getPath().hashCode();
+                hash = 31 * hash + entry.lastModified();
+                hash = 31 * hash + entry.length();
+                // the sum does not depend on the listing order
+                signature[0] += hash;
+                return true;
+            }
+        });
+        return signature[0];
+    }
+
+    // --- getters ---
+
+    public String getMode() {
+        return mode;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public int getScanInterval() {
+        return scanInterval;
+    }
+
+    // --- setters ---
+
+    public void setMode(String mode) {
+        this.mode = (mode == null ? MODE_WATCH : mode.trim());
+    }
+
+    public void setDelay(int delay) {
+        this.delay = Math.max(1, delay);
+    }
+
+    public void setScanInterval(int scanInterval) {
+        this.scanInterval = Math.max(1, scanInterval);
+    }
+}
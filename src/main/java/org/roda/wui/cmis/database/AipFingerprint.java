@@ -0,0 +1,71 @@
+package org.roda.wui.cmis.database;
+
+import java.io.File;
+
+/**
+ * POJO class for representing the fingerprint of an indexed AIP: the modification time and size of its "aip.json"
+ * file. RODA rewrites the "aip.json" file on every change to the AIP, so an AIP whose fingerprint did not change
+ * since it was indexed does not need to be indexed again.
+ */
+public class AipFingerprint {
+
+    private String aipId = null;
+    private long lastModified = 0;
+    private long size = 0;
+
+    /**
+     * Constructor.
+     * @param aipId The AIP's unique ID.
+     * @param lastModified The modification time of the "aip.json" file.
+     * @param size The size of the "aip.json" file.
+     */
+    public AipFingerprint(String aipId, long lastModified, long size) {
+        this.aipId = aipId;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    /**
+     * Constructor.
+     * @param aipId The AIP's unique ID.
+     * @param aipJson The "aip.json" file.
+     */
+    public AipFingerprint(String aipId, File aipJson) {
+        this(aipId, aipJson.lastModified(), aipJson.length());
+    }
+
+    /**
+     * Function responsible for checking if two fingerprints describe the same version of an AIP.
+     * @param fingerprint The other fingerprint.
+     * @return True if both fingerprints match. False otherwise.
+     */
+    public boolean matches(AipFingerprint fingerprint) {
+        return (fingerprint != null) && (this.lastModified == fingerprint.lastModified) && (this.size == fingerprint.size);
+    }
+
+    // --- getters and setters ---
+
+    public String getAipId() {
+        return aipId;
+    }
+
+    public void setAipId(String aipId) {
+        this.aipId = aipId;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,135 @@
+package org.roda.wui.cmis.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for handing out database connections to the request threads.
+ *
+ * Connections are acquired either for reading or for writing and must always be released with the same mode.
+ * The pool keeps track of the time spent waiting for a connection and of the connections in use.
+ */
+public abstract class ConnectionPool {
+
+    /**
+     * Default time, in milliseconds, to wait for a free connection.
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private long timeout = DEFAULT_TIMEOUT;
+
+    // --- metrics ---
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger peakActiveConnections = new AtomicInteger();
+
+    /**
+     * Function responsible for acquiring a connection from the pool, waiting for one to be released if needed.
+     * @param write True if the connection will be used to change the database.
+     * @return The connection.
+     * @throws SQLException If no connection could be acquired within the timeout.
+     */
+    public Connection acquire(boolean write) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = doAcquire(write, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        long wait = System.nanoTime() - start;
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+        long max;
+        while (wait > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, wait)) { /* retry */ }
+
+        if (connection == null) {
+            acquireTimeouts.incrementAndGet();
+            throw new SQLException("Timeout waiting for a " + (write ? "write" : "read") + " database connection.");
+        }
+
+        int active = activeConnections.incrementAndGet();
+        int peak;
+        while (active > (peak = peakActiveConnections.get()) && !peakActiveConnections.compareAndSet(peak, active)) { /* retry */ }
+
+        return connection;
+    }
+
+    /**
+     * Method responsible for giving a connection back to the pool. Null connections are ignored.
+     * @param connection The connection.
+     * @param write True if the connection was acquired for writing.
+     */
+    public void release(Connection connection, boolean write) {
+        if (connection == null) { return; }
+
+        activeConnections.decrementAndGet();
+        doRelease(connection, write);
+    }
+
+    /**
+     * Method responsible for closing all the pooled connections.
+     */
+    public abstract void close();
+
+    /**
+     * Function responsible for acquiring a connection from the underlying pool.
+     * @param write True if the connection will be used to change the database.
+     * @param timeout The time to wait, in milliseconds.
+     * @return The connection, or null if none was available within the timeout.
+     */
+    protected abstract Connection doAcquire(boolean write, long timeout) throws SQLException, InterruptedException;
+
+    /**
+     * Method responsible for giving a connection back to the underlying pool.
+     * @param connection The connection.
+     * @param write True if the connection was acquired for writing.
+     */
+    protected abstract void doRelease(Connection connection, boolean write);
+
+    // --- getters and setters ---
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    public long getAcquireTimeouts() {
+        return acquireTimeouts.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitNanos.get() / 1000000;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000;
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquireCount.get();
+        return (count == 0 ? 0 : (totalWaitNanos.get() / 1000000.0) / count);
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public int getPeakActiveConnections() {
+        return peakActiveConnections.get();
+    }
+}
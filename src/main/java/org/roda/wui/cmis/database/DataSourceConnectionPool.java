@@ -0,0 +1,102 @@
+package org.roda.wui.cmis.database;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool backed by a JDBC DataSource, for example a pooled DataSource configured in the servlet container
+ * and looked up through JNDI. Pooling itself is left to the DataSource: acquiring opens a connection and releasing
+ * closes it, giving it back to the DataSource's pool.
+ *
+ * The statements of {@link Database} are written in the SQLite dialect, so the DataSource must connect to a SQLite
+ * database. This is checked when the pool is created. SQLite only allows one writer at a time, so the write
+ * connections take turns, as in {@link SQLiteConnectionPool}; the read connections are limited by the DataSource.
+ */
+public class DataSourceConnectionPool extends ConnectionPool {
+
+    private final DataSource dataSource;
+
+    private final Semaphore writerLock = new Semaphore(1, true);
+
+    /**
+     * Database product name reported by the SQLite JDBC driver.
+     */
+    private static final String SQLITE = "SQLite";
+
+    /**
+     * Constructor.
+     * @param dataSource The DataSource, connecting to a SQLite database.
+     * @throws IllegalArgumentException If the DataSource does not connect to a SQLite database.
+     */
+    public DataSourceConnectionPool(DataSource dataSource) {
+        this.dataSource = dataSource;
+        checkDialect();
+    }
+
+    /**
+     * Method responsible for checking that the DataSource connects to a SQLite database, the only dialect the
+     * database statements are written in.
+     * @throws IllegalArgumentException If the DataSource connects to another database or cannot connect at all.
+     */
+    private void checkDialect() {
+        String product;
+        try (Connection connection = dataSource.getConnection()) {
+            product = connection.getMetaData().getDatabaseProductName();
+        } catch (SQLException e) {
+            throw new IllegalArgumentException("Could not connect to the DataSource: " + e.getMessage(), e);
+        }
+        if (!SQLITE.equalsIgnoreCase(product)) {
+            throw new IllegalArgumentException("Unsupported index database '" + product + "': the jndi DataSource "
+                    + "must connect to a SQLite database.");
+        }
+    }
+
+    /**
+     * Function responsible for creating a pool from a DataSource bound in JNDI.
+     * @param jndiName The DataSource's JNDI name, for example "java:comp/env/jdbc/roda-cmis".
+     * @return The connection pool.
+     */
+    public static DataSourceConnectionPool lookup(String jndiName) {
+        try {
+            return new DataSourceConnectionPool((DataSource) new InitialContext().lookup(jndiName));
+        } catch (NamingException e) {
+            throw new IllegalArgumentException("DataSource '" + jndiName + "' not found: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Connection doAcquire(boolean write, long timeout) throws SQLException, InterruptedException {
+        // the read-only flag of a SQLite connection cannot change once it is open, so the connections are used as
+        // the DataSource opens them
+        if (!write) { return dataSource.getConnection(); }
+
+        if (!writerLock.tryAcquire(timeout, TimeUnit.MILLISECONDS)) { return null; }
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            writerLock.release();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doRelease(Connection connection, boolean write) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            if (write) { writerLock.release(); }
+        }
+    }
+
+    @Override
+    public void close() {
+        /* connections are owned by the DataSource */
+    }
+}
@@ -1,20 +1,102 @@
 package org.roda.wui.cmis.database;
 
 import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisRuntimeException;
+import org.apache.chemistry.opencmis.server.support.TypeManager;
 import org.roda.wui.cmis.enums.MetadataDublinCoreFieldId;
 import org.roda.wui.cmis.enums.MetadataEadFieldId;
 import org.roda.wui.cmis.enums.MetadataKeyValueFieldId;
-import org.sqlite.SQLiteException;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class responsible for interacting with the database.
  */
 public class Database {
 
+    /**
+     * Default number of objects written to the database in a single transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Version of the database schema. Must be increased on every change to the tables, so that an existing index
+     * built with an older schema is dropped and rebuilt on startup.
+     */
+    public static final int SCHEMA_VERSION = 5;
+
+    /**
+     * Table holding the schema version of the database.
+     */
+    public static final String SCHEMA_TABLE = "roda:schema";
+
+    /**
+     * Table holding the fingerprint of every indexed AIP.
+     */
+    public static final String AIP_TABLE = "roda:aip";
+
+    /**
+     * AIP fingerprint fields.
+     */
+    public static final String AIP_ID = "roda:aipId";
+    public static final String AIP_LAST_MODIFIED = "roda:lastModified";
+    public static final String AIP_SIZE = "roda:size";
+
+    /**
+     * Table holding the folder hierarchy as a closure table: one row for each object and each one of its ancestor
+     * folders, up to the repository root.
+     */
+    public static final String ANCESTOR_TABLE = "roda:ancestor";
+
+    /**
+     * Ancestor fields.
+     */
+    public static final String ANCESTOR_OBJECT_ID = "roda:objectId";
+    public static final String ANCESTOR_ID = "roda:ancestorId";
+
+    /**
+     * Table holding the repository path of every object id handed out for the indexed objects and their ancestor
+     * folders, to resolve the ids after a restart.
+     */
+    public static final String OBJECT_PATH_TABLE = "roda:objectPath";
+
+    /**
+     * Prefix of the names of the indexes managed by the database, the ones not in the indexed fields are dropped.
+     */
+    public static final String INDEX_PREFIX = "roda:index:";
+
+    /**
+     * Fields indexed by default: the folder hierarchy, the names and dates and the commonly searched metadata.
+     */
+    public static final List<String> DEFAULT_INDEXED_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            PropertyIds.PATH,
+            PropertyIds.PARENT_ID,
+            PropertyIds.NAME,
+            PropertyIds.CREATION_DATE,
+            PropertyIds.LAST_MODIFICATION_DATE,
+            MetadataEadFieldId.METADATA_EAD_UNIT_ID.value(),
+            MetadataEadFieldId.METADATA_EAD_UNIT_TITLE.value(),
+            MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE.value(),
+            MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE.value(),
+            MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE.value(),
+            MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID.value(),
+            MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE.value(),
+            MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE.value()));
+
     /**
      * JDBC Driver.
      */
@@ -31,67 +113,168 @@ public class Database {
     private String connectionUrl = null;
 
     /**
-     * Database connection.
+     * Database connection pool.
+     */
+    private ConnectionPool connectionPool = null;
+
+    /**
+     * Query compiler, turns the CMIS queries into SQL statements.
      */
-    private Connection connection = null;
+    private final QueryCompiler queryCompiler;
 
     /**
-     * Query parser.
+     * Parsed query of the last query run by each thread.
      */
-    private Query queryParser = null;
+    private final ThreadLocal<Query> queryParser = new ThreadLocal<>();
+
+    /**
+     * Version of the index contents, incremented on every write. Cached query counts are only valid for the
+     * version they were computed on.
+     */
+    private final AtomicLong indexVersion = new AtomicLong();
+
+    /**
+     * Cached query counts, keyed by statement, in least recently used order. Each entry holds the index version
+     * and the count.
+     */
+    private final LinkedHashMap<String, long[]> countCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Indicates if the query counts are cached.
+     */
+    private boolean countCacheEnabled = true;
+
+    /**
+     * Number of queued objects that triggers a write to the database.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Objects waiting to be written to the database, grouped by table.
+     */
+    private final Map<String, List<Map<String, String>>> pendingObjects = new LinkedHashMap<>();
+
+    /**
+     * Number of objects waiting to be written to the database.
+     */
+    private int pendingObjectsCount = 0;
+
+    /**
+     * Fields with an index, on every table having them.
+     */
+    private List<String> indexedFields = DEFAULT_INDEXED_FIELDS;
+
+    /**
+     * Constructor.
+     *
+     * @param provider The database provider name.
+     * @param typeManager The type manager the queries are resolved against.
+     */
+    public Database(String provider, TypeManager typeManager) {
+        this(provider, SQLiteConnectionPool.DEFAULT_READERS, null, typeManager);
+    }
 
     /**
      * Constructor.
      *
      * @param provider The database provider name.
+     * @param readers The number of read-only connections, for the SQLite provider.
+     * @param dataSource The JNDI name of a pooled DataSource connecting to a SQLite database, for the "jndi" provider.
+     * @param typeManager The type manager the queries are resolved against.
      */
-    public Database(String provider) {
+    public Database(String provider, int readers, String dataSource, TypeManager typeManager) {
+        this.queryCompiler = new QueryCompiler(typeManager, getMetadataFields());
         switch (provider.toLowerCase()) {
             //TODO: implement in the future
             //case "mysql":
             //    break;
+            case "jndi":
+                this.connectionPool = DataSourceConnectionPool.lookup(dataSource);
+                break;
             case "sqlite":
             default:
                 this.jdbcDriver = "org.sqlite.JDBC";
                 this.databaseName = "roda-cmis.db";
                 this.connectionUrl = "jdbc:sqlite:" + this.databaseName;
+                try {
+                    Class.forName(this.jdbcDriver);
+                } catch (ClassNotFoundException e) {
+                    System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                }
+                this.connectionPool = new SQLiteConnectionPool(this.connectionUrl, readers);
                 break;
         }
         this.initialize();
+        this.createIndexes();
     }
 
     /**
-     * Function responsible for opening a newconnection to the database.
-     * otherwise returns the existing one.
+     * Method responsible for closing all the database connections.
      */
-    public void connect() {
-        try {
-            if ((this.connection == null) || (this.connection.isClosed())) {
-                Class.forName(this.jdbcDriver);
-                this.connection = DriverManager.getConnection(this.connectionUrl);
-            }
-        } catch (Exception e) {
-            System.err.println(e.getClass().getName() + ": " + e.getMessage());
-        }
+    public void close() {
+        this.flush();
+        connectionPool.close();
     }
 
     /**
-     * Method responsible for initializing the database.
+     * Method responsible for initializing the database. The existing index is kept across restarts, unless it
+     * was built with a different schema version, in which case all the tables are dropped and created again.
      */
     private void initialize() {
+        Connection connection = null;
         Statement stmt;
         try {
-            this.connect();
-            stmt = this.connection.createStatement();
+            connection = connectionPool.acquire(true);
+            stmt = connection.createStatement();
 
-            //Drop the "cmis:folder" table
-            String sql = "DROP TABLE [cmis:folder]";
-            try {
-                stmt.executeUpdate(sql);
-            } catch (SQLiteException e) { /* table does not exist, fail silently */ }
+            //Create the schema version table and check the version of the existing index
+            String sql = "CREATE TABLE IF NOT EXISTS [" + SCHEMA_TABLE + "] ([version] INTEGER NOT NULL)";
+            stmt.executeUpdate(sql);
+
+            int version = 0;
+            ResultSet rs = stmt.executeQuery("SELECT MAX([version]) FROM [" + SCHEMA_TABLE + "]");
+            if (rs.next()) { version = rs.getInt(1); }
+            rs.close();
+
+            if (version != SCHEMA_VERSION) {
+                //Drop the tables of the outdated (or missing) index
+                stmt.executeUpdate("DROP TABLE IF EXISTS [cmis:folder]");
+                stmt.executeUpdate("DROP TABLE IF EXISTS [cmis:rodaDocument]");
+                stmt.executeUpdate("DROP TABLE IF EXISTS [" + AIP_TABLE + "]");
+                stmt.executeUpdate("DROP TABLE IF EXISTS [" + ANCESTOR_TABLE + "]");
+                stmt.executeUpdate("DROP TABLE IF EXISTS [" + OBJECT_PATH_TABLE + "]");
+                stmt.executeUpdate("DELETE FROM [" + SCHEMA_TABLE + "]");
+                stmt.executeUpdate("INSERT INTO [" + SCHEMA_TABLE + "] ([version]) VALUES (" + SCHEMA_VERSION + ")");
+            }
+
+            //Create the "roda:aip" table
+            sql = "CREATE TABLE IF NOT EXISTS [" + AIP_TABLE + "] (" +
+                " [" + AIP_ID + "] VARCHAR(500) PRIMARY KEY NOT NULL," +
+                " [" + AIP_LAST_MODIFIED + "] INTEGER, " +
+                " [" + AIP_SIZE + "] INTEGER" +
+                ")";
+            stmt.executeUpdate(sql);
+
+            //Create the "roda:ancestor" table, the primary key serves the IN_TREE lookups
+            sql = "CREATE TABLE IF NOT EXISTS [" + ANCESTOR_TABLE + "] (" +
+                " [" + ANCESTOR_ID + "] VARCHAR(500) NOT NULL," +
+                " [" + ANCESTOR_OBJECT_ID + "] VARCHAR(500) NOT NULL," +
+                " PRIMARY KEY ([" + ANCESTOR_ID + "], [" + ANCESTOR_OBJECT_ID + "])" +
+                ") WITHOUT ROWID";
+            stmt.executeUpdate(sql);
+            sql = "CREATE INDEX IF NOT EXISTS [" + INDEX_PREFIX + ANCESTOR_TABLE + ":" + ANCESTOR_OBJECT_ID + "]" +
+                " ON [" + ANCESTOR_TABLE + "] ([" + ANCESTOR_OBJECT_ID + "])";
+            stmt.executeUpdate(sql);
+
+            //Create the "roda:objectPath" table
+            sql = "CREATE TABLE IF NOT EXISTS [" + OBJECT_PATH_TABLE + "] (" +
+                " [cmis:objectId] VARCHAR(500) PRIMARY KEY NOT NULL," +
+                " [cmis:path] VARCHAR(500) NOT NULL" +
+                ") WITHOUT ROWID";
+            stmt.executeUpdate(sql);
 
             //Create the "cmis:folder" table
-            sql = "CREATE TABLE [cmis:folder] (" +
+            sql = "CREATE TABLE IF NOT EXISTS [cmis:folder] (" +
                 " [cmis:objectId] VARCHAR(500) PRIMARY KEY NOT NULL," +
                 " [cmis:name] VARCHAR(500), " +
                 " [cmis:createdBy] VARCHAR(500), " +
@@ -107,18 +290,10 @@ public class Database {
                 " [cmis:parentId] VARCHAR(500), " +
                 " [cmis:allowedChildObjectTypeIds] VARCHAR(500)" +
                 ")";
-            try {
-                stmt.executeUpdate(sql);
-            } catch (SQLiteException e) { /* table already exists, fail silently */ }
-
-            //Drop the "cmis:rodaDocument" table
-            sql = "DROP TABLE [cmis:rodaDocument]";
-            try {
-                stmt.executeUpdate(sql);
-            } catch (SQLiteException e) { /* table does not exist, fail silently */ }
+            stmt.executeUpdate(sql);
 
             //Create the "cmis:rodaDocument" table
-            sql = "CREATE TABLE [cmis:rodaDocument] (" +
+            sql = "CREATE TABLE IF NOT EXISTS [cmis:rodaDocument] (" +
                 " [cmis:objectId] VARCHAR(500) PRIMARY KEY NOT NULL," +
                 " [cmis:name] VARCHAR(500), " +
                 " [cmis:createdBy] VARCHAR(500), " +
@@ -131,6 +306,7 @@ public class Database {
                 " [cmis:baseTypeId] VARCHAR(500), " +
                 " [cmis:objectTypeId] VARCHAR(500), " +
                 " [cmis:path] VARCHAR(5000), " +
+                " [cmis:parentId] VARCHAR(500), " +
                 " [cmis:isImmutable] BOOLEAN, " +
                 " [cmis:isLatestVersion] BOOLEAN, " +
                 " [cmis:isMajorVersion] BOOLEAN, " +
@@ -207,15 +383,65 @@ public class Database {
                 " [metadata:keyValue:producer] VARCHAR(500), " +
                 " [metadata:keyValue:date] DATETIME" +
                 ")";
-            try {
-                stmt.executeUpdate(sql);
-            } catch (SQLiteException e) { /* table already exists, fail silently */ }
+            stmt.executeUpdate(sql);
 
             stmt.close();
-            this.connection.close();
 
         } catch (SQLException e) {
             System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, true);
+        }
+    }
+
+    /**
+     * Method responsible for creating the indexes of the indexed fields, on every table having them, and for
+     * dropping the managed indexes of the fields no longer indexed.
+     */
+    private void createIndexes() {
+        Connection connection = null;
+        Statement stmt;
+        try {
+            connection = connectionPool.acquire(true);
+            stmt = connection.createStatement();
+
+            for (String table : new String[]{"cmis:folder", "cmis:rodaDocument"}) {
+                //Columns of the table
+                List<String> columns = new ArrayList<>();
+                ResultSet rs = stmt.executeQuery("PRAGMA table_info([" + table + "])");
+                while (rs.next()) { columns.add(rs.getString("name")); }
+                rs.close();
+
+                //Managed indexes of the table
+                List<String> indexes = new ArrayList<>();
+                rs = stmt.executeQuery("SELECT [name] FROM [sqlite_master] WHERE [type] = 'index' AND [tbl_name] = '" + table + "'");
+                while (rs.next()) {
+                    if (rs.getString(1).startsWith(INDEX_PREFIX)) { indexes.add(rs.getString(1)); }
+                }
+                rs.close();
+
+                List<String> wantedIndexes = new ArrayList<>();
+                for (String field : indexedFields) {
+                    if (!columns.contains(field)) { continue; }
+                    String index = INDEX_PREFIX + table + ":" + field;
+                    wantedIndexes.add(index);
+                    if (!indexes.contains(index)) {
+                        stmt.executeUpdate("CREATE INDEX IF NOT EXISTS [" + index + "] ON [" + table + "] ([" + field + "])");
+                    }
+                }
+                for (String index : indexes) {
+                    if (!wantedIndexes.contains(index)) {
+                        stmt.executeUpdate("DROP INDEX IF EXISTS [" + index + "]");
+                    }
+                }
+            }
+
+            stmt.close();
+
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, true);
         }
     }
 
@@ -223,7 +449,7 @@ public class Database {
      * Function responsible for returning a full list of metadata fields.
      * @return The list of metadata fields.
      */
-    private ArrayList<String> getMetadataFields() {
+    private static ArrayList<String> getMetadataFields() {
         ArrayList<String> metadataFields = new ArrayList<>();
 
         //CMIS base fields
@@ -327,149 +553,548 @@ public class Database {
     }
 
     /**
-     * Method responsible for inserting a new object into the correct table given its objectId.
+     * Method responsible for inserting or replacing a batch of objects in a table in a single transaction.
+     * Each object is given as a map of field names to field values and is written with one prepared
+     * "INSERT OR REPLACE" statement.
      * @param table The table name.
-     * @param objectId The new object's objectId.
+     * @param objects The objects to be written.
      */
-    public void createObject(String table, String objectId) {
-        if (table == null) { System.err.println("Missing parameter 'table' for the Database.createObject method."); return; }
-        if (objectId == null) { System.err.println("Missing parameter 'objectId' for the Database.createObject method."); return; }
+    public void upsertObjects(String table, List<Map<String, String>> objects) {
+        if (table == null) { System.err.println("Missing parameter 'table' for the Database.upsertObjects method."); return; }
+        if ((objects == null) || objects.isEmpty()) { return; }
 
-        Statement stmt;
+        this.upsertObjects(Collections.singletonMap(table, objects));
+    }
+
+    /**
+     * Method responsible for inserting or replacing the objects of several tables in a single transaction.
+     * @param tableObjects The objects to be written, grouped by table name.
+     */
+    private void upsertObjects(Map<String, List<Map<String, String>>> tableObjects) {
+        Connection connection = null;
         try {
-            this.connect();
-            stmt = this.connection.createStatement();
+            connection = connectionPool.acquire(true);
+            connection.setAutoCommit(false);
 
-            //Insert the new record
-            String sql = "INSERT INTO [" + table + "] ([cmis:objectId])" +
-                    " VALUES ('" + objectId + "') ";
-            try { stmt.executeUpdate(sql); }
-            catch (SQLiteException e) { /* fail silently */ }
+            //objects with the same set of fields share the same prepared statement
+            Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<String, List<Map<String, String>>> entry : tableObjects.entrySet()) {
+                    String table = entry.getKey();
+                    String keyField = (AIP_TABLE.equals(table) ? AIP_ID :
+                            (ANCESTOR_TABLE.equals(table) ? ANCESTOR_OBJECT_ID : PropertyIds.OBJECT_ID));
 
-            stmt.close();
-            this.connection.close();
+                    for (Map<String, String> fields : entry.getValue()) {
+                        if (fields.get(keyField) == null) {
+                            System.err.println("Missing field '" + keyField + "' for the Database.upsertObjects method.");
+                            continue;
+                        }
+
+                        StringBuilder columns = new StringBuilder();
+                        StringBuilder values = new StringBuilder();
+                        for (String fieldName : fields.keySet()) {
+                            if (columns.length() > 0) { columns.append(", "); values.append(", "); }
+                            columns.append("[").append(fieldName).append("]");
+                            values.append("?");
+                        }
+                        String sql = "INSERT OR REPLACE INTO [" + table + "] (" + columns + ") VALUES (" + values + ")";
+
+                        PreparedStatement stmt = statements.get(sql);
+                        if (stmt == null) {
+                            stmt = connection.prepareStatement(sql);
+                            statements.put(sql, stmt);
+                        }
+
+                        int index = 1;
+                        for (String value : fields.values()) {
+                            stmt.setString(index++, value);
+                        }
+                        stmt.addBatch();
+                    }
+                }
+
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.executeBatch();
+                }
+                connection.commit();
+                indexVersion.incrementAndGet();
+            } catch (SQLException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                connection.rollback();
+            } finally {
+                for (PreparedStatement stmt : statements.values()) {
+                    stmt.close();
+                }
+            }
+
+            connection.setAutoCommit(true);
 
         } catch (SQLException e) {
             System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, true);
         }
     }
 
     /**
-     * Method responsible for updating a metadata field value in a table in the database.
+     * Method responsible for queueing an object to be written to the database. The queued objects are written
+     * in a single transaction as soon as the configured batch size is reached or when the queue is flushed.
      * @param table The table name.
-     * @param objectId The objectId of the object being updated.
-     * @param fieldName the field name of the field being updated.
-     * @param value The new value for the field.
+     * @param fields The object's field names and values.
+     */
+    public synchronized void queueObject(String table, Map<String, String> fields) {
+        if (table == null) { System.err.println("Missing parameter 'table' for the Database.queueObject method."); return; }
+        if (fields == null) { System.err.println("Missing parameter 'fields' for the Database.queueObject method."); return; }
+
+        List<Map<String, String>> tableObjects = pendingObjects.get(table);
+        if (tableObjects == null) {
+            tableObjects = new ArrayList<>();
+            pendingObjects.put(table, tableObjects);
+        }
+        tableObjects.add(fields);
+        pendingObjectsCount++;
+
+        if (pendingObjectsCount >= batchSize) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Method responsible for writing all the queued objects to the database.
      */
-    public void updateField(String table, String objectId, String fieldName, String value) {
-        if (table == null) { System.err.println("Missing parameter 'table' for the Database.updateField method."); return; }
-        if (objectId == null) { System.err.println("Missing parameter 'objectId' for the Database.updateField method."); return; }
-        if (fieldName == null) { System.err.println("Missing parameter 'fieldName' for the Database.updateField method."); return; }
+    public synchronized void flush() {
+        if (pendingObjectsCount > 0) {
+            this.upsertObjects(pendingObjects);
+        }
+        pendingObjects.clear();
+        pendingObjectsCount = 0;
+    }
 
+    /**
+     * Function responsible for reading the fingerprints of all the indexed AIPs.
+     * @return The AIP fingerprints, keyed by AIP id.
+     */
+    public Map<String, AipFingerprint> getAipFingerprints() {
+        Map<String, AipFingerprint> fingerprints = new HashMap<>();
+
+        Connection connection = null;
         Statement stmt;
         try {
-            this.connect();
-            stmt = this.connection.createStatement();
-
-            //Update table
-            String fieldValue = "NULL";
-            if (value != null) { fieldValue = " '" + value + "' "; }
-            String sql = "UPDATE [" + table + "] " +
-                        " SET [" + fieldName+ "] = " + fieldValue +
-                        " WHERE [cmis:objectId] LIKE '" + objectId + "' ";
-            try {
-                stmt.executeUpdate(sql);
-            } catch (SQLiteException e) {
-                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            connection = connectionPool.acquire(false);
+            stmt = connection.createStatement();
+
+            ResultSet rs = stmt.executeQuery("SELECT [" + AIP_ID + "], [" + AIP_LAST_MODIFIED + "], [" + AIP_SIZE + "]" +
+                    " FROM [" + AIP_TABLE + "]");
+            while (rs.next()) {
+                AipFingerprint fingerprint = new AipFingerprint(rs.getString(1), rs.getLong(2), rs.getLong(3));
+                fingerprints.put(fingerprint.getAipId(), fingerprint);
             }
+            rs.close();
 
             stmt.close();
-            this.connection.close();
 
         } catch (SQLException e) {
             System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, false);
         }
+
+        return fingerprints;
     }
 
     /**
-     * Function responsible for running a query against the objects database and retrieving a list of matching results.
-     * @param statement The SQL statement.
-     * @return The list of matching results.
+     * Function responsible for reading the repository path of an object id.
+     * @param objectId The object id.
+     * @return The object's repository path, or null if the id is not in the index.
      */
-    public List<String> query(String statement) {
-        if (statement == null) { System.err.println("Missing parameter 'statement' for the Database.query method."); return null; }
+    public String getObjectPath(String objectId) {
+        String path = null;
 
-        queryParser = new Query(statement);
+        Connection connection = null;
+        PreparedStatement stmt;
+        try {
+            connection = connectionPool.acquire(false);
+            stmt = connection.prepareStatement("SELECT [cmis:path] FROM [" + OBJECT_PATH_TABLE + "]" +
+                    " WHERE [cmis:objectId] = ?");
+            stmt.setString(1, objectId);
 
-        List<String> objects = new ArrayList<>();
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                path = rs.getString(1);
+            }
+            rs.close();
 
-        // query preparation
+            stmt.close();
 
-        // IN_FOLDER
-        if (queryParser.getQueryType().equals("IN_FOLDER")) {
-            String subQuery = "(cmis:path LIKE (SELECT cmis:path FROM cmis:folder WHERE cmis:objectId = '" + queryParser.getFolderId() + "') || '/' || [cmis:name])";
-            statement = statement.replaceAll("(?i)IN_FOLDER\\('" + queryParser.getFolderId() + "'\\)", subQuery);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, false);
         }
 
-        // IN_TREE
-        if (queryParser.getQueryType().equals("IN_TREE")) {
-            String subQuery = "(cmis:path LIKE (SELECT cmis:path FROM cmis:folder WHERE cmis:objectId = '" + queryParser.getFolderId() + "') || '%')";
-            statement = statement.replaceAll("(?i)IN_TREE\\('" + queryParser.getFolderId() + "'\\)", subQuery);
+        return path;
+    }
+
+    /**
+     * Method responsible for queueing an AIP fingerprint to be written to the database, together with the AIP's
+     * objects queued before it.
+     * @param fingerprint The AIP fingerprint.
+     */
+    public void queueAipFingerprint(AipFingerprint fingerprint) {
+        if (fingerprint == null) { System.err.println("Missing parameter 'fingerprint' for the Database.queueAipFingerprint method."); return; }
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(AIP_ID, fingerprint.getAipId());
+        fields.put(AIP_LAST_MODIFIED, String.valueOf(fingerprint.getLastModified()));
+        fields.put(AIP_SIZE, String.valueOf(fingerprint.getSize()));
+        this.queueObject(AIP_TABLE, fields);
+    }
+
+    /**
+     * Method responsible for deleting an AIP from the index: all its folders and documents, their object paths and its
+     * fingerprint.
+     * @param aipId The AIP's unique ID.
+     */
+    public synchronized void deleteAip(String aipId) {
+        if (aipId == null) { System.err.println("Missing parameter 'aipId' for the Database.deleteAip method."); return; }
+
+        this.deletePath("/" + aipId, aipId);
+    }
+
+    /**
+     * Method responsible for deleting an object from the index, after it was deleted, moved or renamed: its row and,
+     * for a folder, the rows of all the objects inside it, with their ancestors and object paths.
+     * @param path The object's repository path, for example "/aip/representations/rep/data/folder".
+     */
+    public synchronized void deleteObject(String path) {
+        if (path == null) { System.err.println("Missing parameter 'path' for the Database.deleteObject method."); return; }
+
+        this.deletePath(path, null);
+    }
+
+    /**
+     * Method responsible for deleting the objects at a repository path and below it in a single transaction.
+     * @param path The repository path.
+     * @param aipId The AIP whose fingerprint is deleted too, null to keep the fingerprints.
+     */
+    private void deletePath(String path, String aipId) {
+        //queued rows of the objects must not be written after the delete
+        this.flush();
+
+        //the objects inside have a path starting with "<path>/" ('0' is the character after '/')
+        String pathFrom = path + "/";
+        String pathTo = path + "0";
+
+        Connection connection = null;
+        try {
+            connection = connectionPool.acquire(true);
+            connection.setAutoCommit(false);
+
+            try {
+                for (String table : new String[]{"cmis:folder", "cmis:rodaDocument"}) {
+                    PreparedStatement stmt = connection.prepareStatement("DELETE FROM [" + ANCESTOR_TABLE + "]" +
+                            " WHERE [" + ANCESTOR_OBJECT_ID + "] IN (SELECT [cmis:objectId] FROM [" + table + "]" +
+                            " WHERE [cmis:path] = ? OR ([cmis:path] >= ? AND [cmis:path] < ?))");
+                    stmt.setString(1, path);
+                    stmt.setString(2, pathFrom);
+                    stmt.setString(3, pathTo);
+                    stmt.executeUpdate();
+                    stmt.close();
+
+                    stmt = connection.prepareStatement("DELETE FROM [" + table + "]" +
+                            " WHERE [cmis:path] = ? OR ([cmis:path] >= ? AND [cmis:path] < ?)");
+                    stmt.setString(1, path);
+                    stmt.setString(2, pathFrom);
+                    stmt.setString(3, pathTo);
+                    stmt.executeUpdate();
+                    stmt.close();
+                }
+
+                PreparedStatement stmt = connection.prepareStatement("DELETE FROM [" + OBJECT_PATH_TABLE + "]" +
+                        " WHERE [cmis:path] = ? OR ([cmis:path] >= ? AND [cmis:path] < ?)");
+                stmt.setString(1, path);
+                stmt.setString(2, pathFrom);
+                stmt.setString(3, pathTo);
+                stmt.executeUpdate();
+                stmt.close();
+
+                if (aipId != null) {
+                    stmt = connection.prepareStatement("DELETE FROM [" + AIP_TABLE + "]" +
+                            " WHERE [" + AIP_ID + "] = ?");
+                    stmt.setString(1, aipId);
+                    stmt.executeUpdate();
+                    stmt.close();
+                }
+
+                connection.commit();
+                indexVersion.incrementAndGet();
+            } catch (SQLException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                connection.rollback();
+            }
+
+            connection.setAutoCommit(true);
+
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, true);
         }
+    }
 
-        // Prepare query for execution
-        for (String metadataField : getMetadataFields()) {
-            statement = statement.replaceAll("(?i)\\[" + metadataField + "\\]", metadataField);
-            statement = statement.replaceAll("(?i)" + metadataField, "[" + metadataField + "]");
+    /**
+     * Function responsible for running a query against the objects database and retrieving a list of matching results.
+     * The CMIS query is parsed into a parameterized SQL statement (or taken from the parsed queries cache) and
+     * executed once.
+     * @param statement The CMIS query statement.
+     * @return The list of matching results.
+     */
+    public List<String> query(String statement) {
+        List<Map<String, String>> rows = this.queryRows(statement, 0, -1);
+        if (rows == null) { return null; }
+
+        List<String> objects = new ArrayList<>();
+        for (Map<String, String> row : rows) {
+            objects.add(row.get(PropertyIds.PATH));
         }
-        statement = statement.replaceAll("(?i)physicalDescription]Extent", "physicalDescriptionExtent");
-        statement = statement.replaceAll("(?i)physicalDescription]Dimensions", "physicalDescriptionDimensions");
-        statement = statement.replaceAll("(?i)physicalDescription]Appearance", "physicalDescriptionAppearance");
-        statement = statement.replaceAll("(?i)langMaterial]Language", "langMaterialLanguage");
-        statement = statement.replaceAll("(?i)origination]Creator", "originationCreator");
-        statement = statement.replaceAll("(?i)origination]Producer", "originationProducer");
-        statement = statement.replaceAll("(?i)\\[\\[", "[");
-
-        statement = statement.replaceAll("(?i)\\[cmis:folder\\]", "cmis:folder").replaceAll("(?i)cmis:folder", "[cmis:folder]");
-        statement = statement.replaceAll("(?i)\\[cmis:document\\]", "cmis:document").replaceAll("(?i)cmis:document", "[cmis:rodaDocument]");
-        statement = statement.replaceAll("(?i)\\[cmis:rodaDocument\\]", "cmis:rodaDocument").replaceAll("(?i)cmis:rodaDocument", "[cmis:rodaDocument]");
-        statement = statement.replaceAll("(?i)FROM", ", [cmis:path] FROM");
-        statement = statement.replaceAll("(?i)\\[cmis:path\\] \\, \\[cmis:path\\]", "[cmis:path]");
-
-        //System.out.println("Statement: " + statement);
+        return objects;
+    }
 
-        Statement stmt;
+    /**
+     * Function responsible for running a query against the objects database and retrieving a page of matching
+     * results. The page is selected by the database (LIMIT / OFFSET), so only its rows are read.
+     * @param statement The CMIS query statement.
+     * @param skip The number of matching results to skip.
+     * @param max The maximum number of results to return, negative for all.
+     * @return The matching rows, each one with the object's path, the selected fields and the fields needed to build
+     *         the object, keyed by column name.
+     * @throws CmisRuntimeException If the query could not be run.
+     */
+    public List<Map<String, String>> queryRows(String statement, int skip, int max) {
+        if (statement == null) { System.err.println("Missing parameter 'statement' for the Database.queryRows method."); return null; }
+
+        Query query = queryCompiler.compile(statement);
+        this.queryParser.set(query);
+
+        List<Map<String, String>> rows = new ArrayList<>();
+
+        Connection connection = null;
+        PreparedStatement stmt;
         try {
-            this.connect();
-            stmt = this.connection.createStatement();
+            connection = connectionPool.acquire(false);
+            String sql = query.getSql();
+            if (max >= 0 || skip > 0) { sql += " LIMIT ? OFFSET ?"; }
+            stmt = connection.prepareStatement(sql);
+
+            int index = 1;
+            for (Object parameter : query.getParameters()) {
+                stmt.setObject(index++, parameter);
+            }
+            if (max >= 0 || skip > 0) {
+                stmt.setInt(index++, max >= 0 ? max : -1);
+                stmt.setInt(index, Math.max(0, skip));
+            }
 
             //execute query
             try {
-                stmt.executeUpdate(statement);
-                ResultSet rs = stmt.executeQuery(statement);
+                ResultSet rs = stmt.executeQuery();
+                ResultSetMetaData metaData = rs.getMetaData();
+                String[] columns = new String[metaData.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = metaData.getColumnLabel(i + 1);
+                }
                 while ( rs.next() ) {
-                    String cmisPath = rs.getString("cmis:path");
-                    objects.add(cmisPath);
+                    Map<String, String> row = new LinkedHashMap<>();
+                    for (int i = 0; i < columns.length; i++) {
+                        row.put(columns[i], rs.getString(i + 1));
+                    }
+                    rows.add(row);
                 }
                 rs.close();
-            } catch (SQLiteException e) {
-                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            } finally {
+                stmt.close();
             }
 
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            throw new CmisRuntimeException("The query could not be run on the index database: " + e.getMessage(), e);
+        } finally {
+            connectionPool.release(connection, false);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Function responsible for counting the results of a query. Counts are cached (if enabled) until the index
+     * changes.
+     * @param statement The CMIS query statement.
+     * @return The number of matching results.
+     * @throws CmisRuntimeException If the query could not be run.
+     */
+    public long count(String statement) {
+        if (statement == null) { System.err.println("Missing parameter 'statement' for the Database.count method."); return -1; }
+
+        Query query = queryCompiler.compile(statement);
+
+        long version = indexVersion.get();
+        if (countCacheEnabled) {
+            synchronized (countCache) {
+                long[] cachedCount = countCache.get(statement);
+                if (cachedCount != null && cachedCount[0] == version) { return cachedCount[1]; }
+            }
+        }
+
+        long count = 0;
+
+        Connection connection = null;
+        PreparedStatement stmt;
+        try {
+            connection = connectionPool.acquire(false);
+            stmt = connection.prepareStatement(query.getCountSql());
+
+            int index = 1;
+            for (Object parameter : query.getParameters()) {
+                stmt.setObject(index++, parameter);
+            }
+
+            try {
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) { count = rs.getLong(1); }
+                rs.close();
+            } finally {
+                stmt.close();
+            }
+
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            throw new CmisRuntimeException("The query could not be counted on the index database: " + e.getMessage(), e);
+        } finally {
+            connectionPool.release(connection, false);
+        }
+
+        if (countCacheEnabled) {
+            synchronized (countCache) {
+                countCache.put(statement, new long[]{version, count});
+                Iterator<String> iterator = countCache.keySet().iterator();
+                while (countCache.size() > queryCompiler.getCacheSize() && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Function responsible for explaining how the database runs a query, to check which indexes it uses.
+     * @param statement The CMIS query statement.
+     * @return The SQL statement, its parameters and the lines of its query plan.
+     */
+    public List<String> explain(String statement) {
+        if (statement == null) { System.err.println("Missing parameter 'statement' for the Database.explain method."); return null; }
+
+        Query query = queryCompiler.compile(statement);
+
+        List<String> plan = new ArrayList<>();
+        plan.add("SQL: " + query.getSql());
+        plan.add("Parameters: " + query.getParameters());
+
+        Connection connection = null;
+        PreparedStatement stmt;
+        try {
+            connection = connectionPool.acquire(false);
+            stmt = connection.prepareStatement("EXPLAIN QUERY PLAN " + query.getSql());
+
+            int index = 1;
+            for (Object parameter : query.getParameters()) {
+                stmt.setObject(index++, parameter);
+            }
+
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+            rs.close();
             stmt.close();
-            this.connection.close();
 
         } catch (SQLException e) {
             System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        } finally {
+            connectionPool.release(connection, false);
         }
 
-        return objects;
+        return plan;
+    }
+
+    /**
+     * Function responsible for returning the parsed query of the last query executed by the current thread.
+     * @return The parsed query.
+     */
+    public Query getLastQuery() { return queryParser.get(); }
+
+    /**
+     * Function responsible for returning the database connection pool, for example to read its metrics.
+     * @return The connection pool.
+     */
+    public ConnectionPool getConnectionPool() { return connectionPool; }
+
+    /**
+     * Function responsible for returning the query compiler, for example to read its cache metrics.
+     * @return The query compiler.
+     */
+    public QueryCompiler getQueryCompiler() { return queryCompiler; }
+
+    /**
+     * Function responsible for returning the number of queued objects that triggers a write to the database.
+     * @return The batch size.
+     */
+    public int getBatchSize() { return batchSize; }
+
+    /**
+     * Function responsible for returning the version of the index contents, incremented on every write.
+     * @return The index version.
+     */
+    public long getIndexVersion() { return indexVersion.get(); }
+
+    /**
+     * Function responsible for checking if the query counts are cached.
+     * @return True if the query counts are cached.
+     */
+    public boolean isCountCacheEnabled() { return countCacheEnabled; }
+
+    /**
+     * Method responsible for enabling or disabling the query counts cache.
+     * @param countCacheEnabled True to cache the query counts.
+     */
+    public void setCountCacheEnabled(boolean countCacheEnabled) {
+        synchronized (countCache) {
+            this.countCacheEnabled = countCacheEnabled;
+            countCache.clear();
+        }
     }
 
     /**
-     * Function responsible for returning the query parse with the last executed query.
-     * @return The FileBridgeQuery query parser.
+     * Method responsible for setting the number of queued objects that triggers a write to the database.
+     * @param batchSize The batch size. Values lower than 1 disable batching.
+     */
+    public synchronized void setBatchSize(int batchSize) { this.batchSize = Math.max(1, batchSize); }
+
+    /**
+     * Function responsible for returning the fields with an index.
+     * @return The indexed fields.
      */
-    public Query getLastQuery() { return queryParser; }
+    public List<String> getIndexedFields() { return indexedFields; }
+
+    /**
+     * Method responsible for setting the fields with an index. The missing indexes are created and the ones of the
+     * fields no longer indexed are dropped.
+     * @param indexedFields The indexed fields.
+     */
+    public synchronized void setIndexedFields(Collection<String> indexedFields) {
+        this.indexedFields = Collections.unmodifiableList(new ArrayList<>(indexedFields));
+        this.createIndexes();
+    }
 
 }
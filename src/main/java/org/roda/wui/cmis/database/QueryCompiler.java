@@ -0,0 +1,182 @@
+package org.roda.wui.cmis.database;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.server.support.TypeManager;
+import org.apache.chemistry.opencmis.server.support.query.CmisQlStrictLexer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for compiling CMIS-QL statements into SQL statements over the objects database.
+ *
+ * The statements are parsed with the OpenCMIS query parser into SQL plans (see {@link QueryPlan}) and the plans are
+ * kept in a cache keyed by the normalized statement: its tokens with the literals replaced by '?' (strings), '#'
+ * (numbers) or 'TIMESTAMP ?', the keywords upper-cased and the whitespace collapsed. The statements that only differ
+ * in their literals, whitespace or keyword case share the same plan, and only their literal values are bound again.
+ */
+public class QueryCompiler {
+
+    /**
+     * Default number of plans kept in the cache.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * Type manager the statements' types and properties are resolved against.
+     */
+    private final TypeManager typeManager;
+
+    /**
+     * Columns of the objects database.
+     */
+    private final Set<String> columns;
+
+    /**
+     * Plans, keyed by normalized statement, in least recently used order.
+     */
+    private final LinkedHashMap<String, QueryPlan> queryCache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param typeManager The type manager the statements' types and properties are resolved against.
+     * @param columns The columns of the objects database.
+     */
+    public QueryCompiler(TypeManager typeManager, Collection<String> columns) {
+        this.typeManager = typeManager;
+        this.columns = new HashSet<>(columns);
+    }
+
+    /**
+     * Function responsible for compiling a CMIS query, reusing a cached plan if available.
+     * @param statement The CMIS query statement.
+     * @return The query, with the statement's literals bound to the plan's parameters.
+     */
+    public Query compile(String statement) {
+        if (statement == null) { throw new CmisInvalidArgumentException("Invalid or unsupported query."); }
+
+        List<String> literals = new ArrayList<>();
+        Map<Integer, Integer> literalTokens = new HashMap<>();
+        String key = normalize(statement, literals, literalTokens);
+
+        if (key != null) {
+            QueryPlan plan;
+            synchronized (queryCache) {
+                plan = queryCache.get(key);
+            }
+            if (plan != null) {
+                cacheHits.incrementAndGet();
+                return new Query(statement, plan, literals);
+            }
+        }
+
+        cacheMisses.incrementAndGet();
+        QueryPlan plan = new QueryPlan(statement, literalTokens, typeManager, columns);
+        if (key == null || !plan.bindsAll(literals.size())) {
+            throw new CmisInvalidArgumentException("Invalid or unsupported query.");
+        }
+        synchronized (queryCache) {
+            queryCache.put(key, plan);
+            trimCache();
+        }
+        return new Query(statement, plan, literals);
+    }
+
+    /**
+     * Function responsible for normalizing a statement into its plan cache key, taking out its literals.
+     * @param statement The CMIS query statement.
+     * @param literals List receiving the literals, as written, in order of appearance.
+     * @param literalTokens Map receiving the position of each literal in the literals list, keyed by token index.
+     * @return The normalized statement, null if the statement could not be tokenized.
+     */
+    static String normalize(String statement, List<String> literals, Map<Integer, Integer> literalTokens) {
+        final boolean[] failed = { false };
+        CmisQlStrictLexer lexer = new CmisQlStrictLexer(new ANTLRStringStream(statement)) {
+            @Override
+            public void reportError(RecognitionException e) {
+                failed[0] = true;
+            }
+        };
+
+        StringBuilder key = new StringBuilder();
+        int index = 0;
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken(), index++) {
+            if (token.getChannel() != Token.DEFAULT_CHANNEL) { continue; }
+            if (key.length() > 0) { key.append(' '); }
+            switch (token.getType()) {
+                case CmisQlStrictLexer.STRING_LIT:
+                    key.append('?');
+                    break;
+                case CmisQlStrictLexer.NUM_LIT:
+                    key.append('#');
+                    break;
+                case CmisQlStrictLexer.TIME_LIT:
+                    key.append("TIMESTAMP ?");
+                    break;
+                case CmisQlStrictLexer.ID:
+                    key.append(token.getText());
+                    continue;
+                default:
+                    key.append(token.getText().toUpperCase());
+                    continue;
+            }
+            literalTokens.put(index, literals.size());
+            literals.add(token.getText());
+        }
+        return (failed[0] ? null : key.toString());
+    }
+
+    /**
+     * Method responsible for evicting the least recently used queries above the cache size.
+     */
+    private void trimCache() {
+        Iterator<String> iterator = queryCache.keySet().iterator();
+        while (queryCache.size() > cacheSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    // --- getters and setters ---
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        synchronized (queryCache) {
+            this.cacheSize = Math.max(0, cacheSize);
+            trimCache();
+        }
+    }
+
+    public int getCachedQueries() {
+        synchronized (queryCache) {
+            return queryCache.size();
+        }
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+}
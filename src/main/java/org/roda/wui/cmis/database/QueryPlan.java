@@ -0,0 +1,371 @@
+package org.roda.wui.cmis.database;
+
+import org.antlr.runtime.tree.Tree;
+import org.apache.chemistry.opencmis.commons.PropertyIds;
+import org.apache.chemistry.opencmis.commons.definitions.TypeDefinition;
+import org.apache.chemistry.opencmis.commons.enums.BaseTypeId;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.server.support.TypeManager;
+import org.apache.chemistry.opencmis.server.support.query.CalendarHelper;
+import org.apache.chemistry.opencmis.server.support.query.CmisSelector;
+import org.apache.chemistry.opencmis.server.support.query.ColumnReference;
+import org.apache.chemistry.opencmis.server.support.query.QueryObject;
+import org.apache.chemistry.opencmis.server.support.query.QueryUtilStrict;
+import org.roda.wui.cmis.FileBridgeObjectIds;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class responsible for holding the SQL plan of a CMIS query statement.
+ *
+ * The statement is parsed by the OpenCMIS query parser and its AST is translated into a SQL statement over the
+ * objects database, with a '?' placeholder for each literal. The plan does not hold the literal values, only which
+ * literal of the statement each parameter is bound to and how it is converted, so the same plan serves all the
+ * statements that only differ in their literals (see {@link QueryCompiler}). The values are bound by {@link Query}.
+ */
+public class QueryPlan {
+
+    /**
+     * Parameter conversions.
+     */
+    static final int STRING = 0;
+    static final int LIKE = 1;
+    static final int NUMBER = 2;
+    static final int TIMESTAMP = 3;
+    static final int FOLDER_ID = 4;
+
+    /**
+     * Columns always read for a folder result, besides the selected ones, to build the object without reading the
+     * file system.
+     */
+    private static final List<String> FOLDER_RESULT_COLUMNS = Arrays.asList(PropertyIds.PATH, PropertyIds.OBJECT_ID,
+            PropertyIds.NAME, PropertyIds.OBJECT_TYPE_ID, PropertyIds.CREATED_BY, PropertyIds.CREATION_DATE,
+            PropertyIds.LAST_MODIFICATION_DATE, PropertyIds.PARENT_ID);
+
+    /**
+     * Columns always read for a document result, besides the selected ones, to build the object without reading the
+     * file system.
+     */
+    private static final List<String> DOCUMENT_RESULT_COLUMNS = Arrays.asList(PropertyIds.PATH, PropertyIds.OBJECT_ID,
+            PropertyIds.NAME, PropertyIds.OBJECT_TYPE_ID, PropertyIds.CREATED_BY, PropertyIds.CREATION_DATE,
+            PropertyIds.LAST_MODIFICATION_DATE, PropertyIds.CONTENT_STREAM_LENGTH, PropertyIds.CONTENT_STREAM_MIME_TYPE,
+            PropertyIds.CONTENT_STREAM_FILE_NAME);
+
+    /**
+     * A SQL parameter: the statement literal it is bound to and its conversion.
+     */
+    static class Parameter {
+        final int literal;
+        final int conversion;
+
+        Parameter(int literal, int conversion) {
+            this.literal = literal;
+            this.conversion = conversion;
+        }
+    }
+
+    /**
+     * A field / value condition of the WHERE clause, for the in memory matching. The literal is -1 if the value is
+     * not a string literal.
+     */
+    static class Condition {
+        final String field;
+        final String operator;
+        final int literal;
+
+        Condition(String field, String operator, int literal) {
+            this.field = field;
+            this.operator = operator;
+            this.literal = literal;
+        }
+    }
+
+    /**
+     * Query type. Possible types: SIMPLE, WHERE, IN_FOLDER, IN_TREE
+     */
+    private String queryType = "SIMPLE";
+
+    private String typeId = null;
+
+    /**
+     * Fields in the query's select list, null if the query selects all fields.
+     */
+    private List<String> fields = null;
+
+    private String whereClause = null;
+
+    private String orderByClause = null;
+
+    /**
+     * SQL statement, with a '?' placeholder for each parameter. It returns the result rows, with the path and the
+     * selected columns.
+     */
+    private String sql = null;
+
+    /**
+     * SQL statement counting the query results, with the same parameters.
+     */
+    private String countSql = null;
+
+    /**
+     * SQL statement parameters, in order.
+     */
+    private final List<Parameter> parameters = new ArrayList<>();
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private String qualifier = null;
+
+    /**
+     * Statement literal holding the IN_FOLDER or IN_TREE folder id, -1 if none.
+     */
+    private int folderLiteral = -1;
+
+    /**
+     * Statement literals, keyed by token index, while parsing.
+     */
+    private Map<Integer, Integer> literals;
+
+    /**
+     * Constructor.
+     * @param statement The query's statement.
+     * @param literals The position of each literal of the statement, keyed by its token index.
+     * @param typeManager The type manager the statement's types and properties are resolved against.
+     * @param columns The columns of the objects database.
+     */
+    QueryPlan(String statement, Map<Integer, Integer> literals, TypeManager typeManager, Collection<String> columns) {
+        if (statement == null) { throw new CmisInvalidArgumentException("Invalid or unsupported query."); }
+        this.literals = literals;
+        this.parse(statement, typeManager, columns);
+        this.literals = null;
+    }
+
+    /**
+     * Method responsible for parsing the query statement and translating it into SQL.
+     * @param statement The query's statement.
+     * @param typeManager The type manager the statement's types and properties are resolved against.
+     * @param columns The columns of the objects database.
+     */
+    private void parse(String statement, TypeManager typeManager, Collection<String> columns) {
+        List<Parameter> whereParameters = new ArrayList<>();
+        QueryPredicateWalker walker = new QueryPredicateWalker(this, columns, whereParameters);
+        QueryUtilStrict queryUtil = new QueryUtilStrict(statement, typeManager, walker);
+        QueryObject queryObject = queryUtil.getQueryObject();
+        walker.setQueryObject(queryObject);
+
+        // parses the statement, resolves its types and properties and walks the WHERE clause
+        queryUtil.processStatementUsingCmisExceptions();
+
+        // from
+        if (queryObject.getTypes().size() > 1) {
+            throw new CmisInvalidArgumentException("JOIN is not supported.");
+        }
+        TypeDefinition type = queryObject.getMainFromName();
+        typeId = type.getId();
+        if (folderLiteral >= 0 && qualifier == null) { qualifier = typeId; }
+        String table = (type.getBaseTypeId() == BaseTypeId.CMIS_FOLDER ? "cmis:folder" : "cmis:rodaDocument");
+
+        // select list
+        for (CmisSelector selector : queryObject.getSelectReferences()) {
+            if ((selector instanceof ColumnReference) && "*".equals(((ColumnReference) selector).getPropertyQueryName())) {
+                fields = null;
+                break;
+            }
+            if (fields == null) { fields = new ArrayList<>(); }
+            fields.add(walker.getColumn(selector));
+        }
+        if (fields != null) { fields = Collections.unmodifiableList(fields); }
+
+        StringBuilder sql = new StringBuilder("FROM [").append(table).append("]");
+
+        // where
+        if (walker.getSql().length() > 0) {
+            whereClause = walker.getSql();
+            if (queryType.equals("SIMPLE")) { queryType = "WHERE"; }
+            sql.append(" WHERE ").append(whereClause);
+            parameters.addAll(whereParameters);
+        }
+        this.countSql = "SELECT COUNT(*) " + sql;
+
+        // select the columns needed to build the results
+        if (fields == null) {
+            sql.insert(0, "SELECT * ");
+        } else {
+            Set<String> resultColumns = new LinkedHashSet<>(table.equals("cmis:folder") ? FOLDER_RESULT_COLUMNS : DOCUMENT_RESULT_COLUMNS);
+            resultColumns.addAll(fields);
+            StringBuilder select = new StringBuilder("SELECT ");
+            for (String column : resultColumns) {
+                select.append("[").append(column).append("], ");
+            }
+            sql.insert(0, select.substring(0, select.length() - 2) + " ");
+        }
+
+        // order by
+        if (!queryObject.getOrderBys().isEmpty()) {
+            StringBuilder orderBy = new StringBuilder();
+            for (QueryObject.SortSpec sortSpec : queryObject.getOrderBys()) {
+                if (orderBy.length() > 0) { orderBy.append(", "); }
+                orderBy.append("[").append(walker.getColumn(sortSpec.getSelector())).append("]")
+                        .append(sortSpec.isAscending() ? " ASC" : " DESC");
+            }
+            orderByClause = orderBy.toString();
+            // the object id breaks the ties, so the pages of a sorted query do not overlap
+            sql.append(" ORDER BY ").append(orderByClause).append(", [cmis:objectId]");
+        }
+
+        this.sql = sql.toString();
+    }
+
+    /**
+     * Function responsible for returning the statement literal of a literal node.
+     * @param node The literal node.
+     * @return The literal's position in the statement.
+     */
+    int getLiteral(Tree node) {
+        Integer literal = literals.get(node.getTokenStartIndex());
+        if (literal == null) {
+            throw new CmisInvalidArgumentException("Invalid or unsupported query near '" + node.getText() + "'.");
+        }
+        return literal;
+    }
+
+    /**
+     * Method responsible for registering a field / value condition of the WHERE clause, for the in memory matching.
+     * @param field The field name.
+     * @param operator The condition operator.
+     * @param literal The statement literal holding the condition value, -1 if the value is not a string literal.
+     */
+    void addCondition(String field, String operator, int literal) {
+        //TODO: For now all conditions go to the AND list. Split AND from OR conditions.
+        if (field != null && literal >= 0) { conditions.add(new Condition(field, operator, literal)); }
+    }
+
+    /**
+     * Method responsible for registering an IN_FOLDER or IN_TREE predicate of the WHERE clause.
+     * @param queryType The predicate: IN_FOLDER or IN_TREE.
+     * @param qualifier The predicate qualifier, null if not given.
+     * @param folderLiteral The statement literal holding the folder id.
+     */
+    void setFolderPredicate(String queryType, String qualifier, int folderLiteral) {
+        this.queryType = queryType;
+        this.qualifier = qualifier;
+        this.folderLiteral = folderLiteral;
+    }
+
+    /**
+     * Function responsible for checking if the plan binds all the literals of its statement, so it can be shared by
+     * the statements that only differ in their literals.
+     * @param literalCount The number of literals in the statement.
+     * @return True if every literal is bound. False otherwise.
+     */
+    boolean bindsAll(int literalCount) {
+        BitSet bound = new BitSet(literalCount);
+        for (Parameter parameter : parameters) {
+            bound.set(parameter.literal);
+        }
+        return bound.cardinality() == literalCount;
+    }
+
+    /**
+     * Function responsible for converting a literal, as written in the statement, into the value bound to a SQL
+     * parameter.
+     * @param conversion The parameter conversion.
+     * @param text The literal text.
+     * @return The parameter value.
+     */
+    static Object convert(int conversion, String text) {
+        try {
+            switch (conversion) {
+                case LIKE:
+                    return decodeString(text, true);
+                case NUMBER:
+                    return (text.contains(".") || text.contains("e") || text.contains("E") ? (Object) Double.valueOf(text) : (Object) Long.valueOf(text));
+                case TIMESTAMP:
+                    return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                            .format(CalendarHelper.fromString(text.substring(text.indexOf('\'') + 1, text.length() - 1)).getTime());
+                case FOLDER_ID:
+                    // the index holds the compact ids, the former ids are accepted too
+                    return FileBridgeObjectIds.normalize(decodeString(text, false));
+                default:
+                    return decodeString(text, false);
+            }
+        } catch (RuntimeException e) {
+            throw new CmisInvalidArgumentException("Invalid literal " + text + ".", e);
+        }
+    }
+
+    /**
+     * Function responsible for decoding a string literal. CMIS escapes quotes and backslashes with a backslash, the
+     * escaped LIKE wildcards are kept escaped for the SQL LIKE operator.
+     */
+    static String decodeString(String literal, boolean like) {
+        String text = literal.substring(1, literal.length() - 1).replace("''", "'");
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char escaped = text.charAt(++i);
+                if (like && (escaped == '%' || escaped == '_')) { value.append('\\'); }
+                value.append(escaped);
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString();
+    }
+
+    // --- getters ---
+
+    public String getQueryType() {
+        return queryType;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public String getTypeId() {
+        return typeId;
+    }
+
+    public String getWhereClause() {
+        return whereClause;
+    }
+
+    public String getOrderByClause() {
+        return orderByClause;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getCountSql() {
+        return countSql;
+    }
+
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    List<Condition> getConditions() {
+        return conditions;
+    }
+
+    int getFolderLiteral() {
+        return folderLiteral;
+    }
+}
@@ -0,0 +1,278 @@
+package org.roda.wui.cmis.database;
+
+import org.antlr.runtime.tree.Tree;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.server.support.query.AbstractPredicateWalker;
+import org.apache.chemistry.opencmis.server.support.query.CmisQlStrictLexer;
+import org.apache.chemistry.opencmis.server.support.query.CmisSelector;
+import org.apache.chemistry.opencmis.server.support.query.ColumnReference;
+import org.apache.chemistry.opencmis.server.support.query.QueryObject;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class responsible for walking the WHERE clause of a parsed CMIS query and translating it into the WHERE clause of
+ * the SQL statement run against the objects database. The literals are not inlined, each one becomes a '?'
+ * placeholder and the statement literal it is bound to is added to the parameters list.
+ */
+class QueryPredicateWalker extends AbstractPredicateWalker {
+
+    /**
+     * SQL expression matching the descendants of the folder given as parameter, through the ancestors table.
+     */
+    private static final String DESCENDANTS = "[cmis:objectId] IN (SELECT [" + Database.ANCESTOR_OBJECT_ID + "] FROM ["
+            + Database.ANCESTOR_TABLE + "] WHERE [" + Database.ANCESTOR_ID + "] = ?)";
+
+    private final QueryPlan plan;
+    private final Collection<String> columns;
+    private final StringBuilder sql = new StringBuilder();
+    private final List<QueryPlan.Parameter> parameters;
+
+    private QueryObject queryObject = null;
+
+    /**
+     * Constructor.
+     * @param plan The plan being built.
+     * @param columns The columns of the objects database.
+     * @param parameters List receiving the SQL parameters, in order.
+     */
+    QueryPredicateWalker(QueryPlan plan, Collection<String> columns, List<QueryPlan.Parameter> parameters) {
+        this.plan = plan;
+        this.columns = columns;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Method responsible for setting the query object the column references are resolved against.
+     * @param queryObject The query object.
+     */
+    void setQueryObject(QueryObject queryObject) {
+        this.queryObject = queryObject;
+    }
+
+    /**
+     * Function responsible for returning the translated WHERE clause.
+     * @return The SQL WHERE clause, empty if the query has no WHERE clause.
+     */
+    String getSql() {
+        return sql.toString();
+    }
+
+    /**
+     * Function responsible for resolving a column reference into its column name in the objects database.
+     * @param selector The column reference.
+     * @return The column name.
+     */
+    String getColumn(CmisSelector selector) {
+        if (!(selector instanceof ColumnReference)) {
+            throw new CmisInvalidArgumentException("Unsupported selector '" + selector.getName() + "'.");
+        }
+        String column = ((ColumnReference) selector).getPropertyId();
+        if (column == null || !columns.contains(column)) {
+            throw new CmisInvalidArgumentException("Unknown property '" + selector.getName() + "'.");
+        }
+        return column;
+    }
+
+    // --- predicates ---
+
+    @Override
+    public Boolean walkNot(Tree opNode, Tree node) {
+        sql.append("NOT (");
+        walkPredicate(node);
+        sql.append(")");
+        return false;
+    }
+
+    @Override
+    public Boolean walkAnd(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkBinaryPredicate(leftNode, " AND ", rightNode);
+    }
+
+    @Override
+    public Boolean walkOr(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkBinaryPredicate(leftNode, " OR ", rightNode);
+    }
+
+    @Override
+    public Boolean walkEquals(Tree opNode, Tree leftNode, Tree rightNode) {
+        plan.addCondition(getColumnText(leftNode), "=", getStringLiteral(rightNode));
+        return walkComparison(leftNode, " = ", rightNode);
+    }
+
+    @Override
+    public Boolean walkNotEquals(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkComparison(leftNode, " <> ", rightNode);
+    }
+
+    @Override
+    public Boolean walkGreaterThan(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkComparison(leftNode, " > ", rightNode);
+    }
+
+    @Override
+    public Boolean walkGreaterOrEquals(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkComparison(leftNode, " >= ", rightNode);
+    }
+
+    @Override
+    public Boolean walkLessThan(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkComparison(leftNode, " < ", rightNode);
+    }
+
+    @Override
+    public Boolean walkLessOrEquals(Tree opNode, Tree leftNode, Tree rightNode) {
+        return walkComparison(leftNode, " <= ", rightNode);
+    }
+
+    @Override
+    public Boolean walkIn(Tree opNode, Tree colNode, Tree listNode) {
+        return walkComparison(colNode, " IN ", listNode);
+    }
+
+    @Override
+    public Boolean walkNotIn(Tree opNode, Tree colNode, Tree listNode) {
+        return walkComparison(colNode, " NOT IN ", listNode);
+    }
+
+    @Override
+    public Boolean walkIsNull(Tree opNode, Tree colNode) {
+        appendOperand(colNode);
+        sql.append(" IS NULL");
+        return false;
+    }
+
+    @Override
+    public Boolean walkIsNotNull(Tree opNode, Tree colNode) {
+        appendOperand(colNode);
+        sql.append(" IS NOT NULL");
+        return false;
+    }
+
+    @Override
+    public Boolean walkLike(Tree opNode, Tree colNode, Tree stringNode) {
+        plan.addCondition(getColumnText(colNode), "LIKE", getStringLiteral(stringNode));
+        return walkLikePredicate(colNode, " LIKE ", stringNode);
+    }
+
+    @Override
+    public Boolean walkNotLike(Tree opNode, Tree colNode, Tree stringNode) {
+        return walkLikePredicate(colNode, " NOT LIKE ", stringNode);
+    }
+
+    @Override
+    public Boolean walkInFolder(Tree opNode, Tree qualifierNode, Tree paramNode) {
+        int folderLiteral = plan.getLiteral(paramNode);
+        plan.setFolderPredicate("IN_FOLDER", qualifierNode == null ? null : qualifierNode.getText(), folderLiteral);
+        sql.append("([cmis:parentId] = ?)");
+        parameters.add(new QueryPlan.Parameter(folderLiteral, QueryPlan.FOLDER_ID));
+        return false;
+    }
+
+    @Override
+    public Boolean walkInTree(Tree opNode, Tree qualifierNode, Tree paramNode) {
+        int folderLiteral = plan.getLiteral(paramNode);
+        plan.setFolderPredicate("IN_TREE", qualifierNode == null ? null : qualifierNode.getText(), folderLiteral);
+        sql.append("(").append(DESCENDANTS).append(")");
+        parameters.add(new QueryPlan.Parameter(folderLiteral, QueryPlan.FOLDER_ID));
+        return false;
+    }
+
+    @Override
+    public Boolean walkInAny(Tree opNode, Tree colNode, Tree listNode) {
+        throw new CmisInvalidArgumentException("ANY is not supported.");
+    }
+
+    @Override
+    public Boolean walkNotInAny(Tree opNode, Tree colNode, Tree listNode) {
+        throw new CmisInvalidArgumentException("ANY is not supported.");
+    }
+
+    @Override
+    public Boolean walkEqAny(Tree opNode, Tree literalNode, Tree colNode) {
+        throw new CmisInvalidArgumentException("ANY is not supported.");
+    }
+
+    @Override
+    public Boolean walkContains(Tree opNode, Tree qualifierNode, Tree queryNode) {
+        throw new CmisInvalidArgumentException("CONTAINS is not supported.");
+    }
+
+    @Override
+    protected Boolean walkScore(Tree node) {
+        throw new CmisInvalidArgumentException("SCORE is not supported.");
+    }
+
+    // --- helpers ---
+
+    private Boolean walkBinaryPredicate(Tree leftNode, String operator, Tree rightNode) {
+        sql.append("(");
+        walkPredicate(leftNode);
+        sql.append(operator);
+        walkPredicate(rightNode);
+        sql.append(")");
+        return false;
+    }
+
+    private Boolean walkComparison(Tree leftNode, String operator, Tree rightNode) {
+        appendOperand(leftNode);
+        sql.append(operator);
+        appendOperand(rightNode);
+        return false;
+    }
+
+    private Boolean walkLikePredicate(Tree colNode, String operator, Tree stringNode) {
+        appendOperand(colNode);
+        sql.append(operator).append("? ESCAPE '\\'");
+        if (stringNode.getType() != CmisQlStrictLexer.STRING_LIT) {
+            throw new CmisInvalidArgumentException("Invalid or unsupported query near '" + stringNode.getText() + "'.");
+        }
+        parameters.add(new QueryPlan.Parameter(plan.getLiteral(stringNode), QueryPlan.LIKE));
+        return false;
+    }
+
+    /**
+     * Method responsible for appending an operand (column, literal or list of literals) to the SQL statement.
+     */
+    private void appendOperand(Tree node) {
+        switch (node.getType()) {
+            case CmisQlStrictLexer.COL:
+                sql.append("[").append(getColumn(queryObject.getColumnReference(node.getTokenStartIndex()))).append("]");
+                break;
+            case CmisQlStrictLexer.BOOL_LIT:
+                sql.append(Boolean.TRUE.equals(walkBoolean(node)) ? "1" : "0");
+                break;
+            case CmisQlStrictLexer.STRING_LIT:
+                sql.append("?");
+                parameters.add(new QueryPlan.Parameter(plan.getLiteral(node), QueryPlan.STRING));
+                break;
+            case CmisQlStrictLexer.NUM_LIT:
+                sql.append("?");
+                parameters.add(new QueryPlan.Parameter(plan.getLiteral(node), QueryPlan.NUMBER));
+                break;
+            case CmisQlStrictLexer.TIME_LIT:
+                sql.append("?");
+                parameters.add(new QueryPlan.Parameter(plan.getLiteral(node), QueryPlan.TIMESTAMP));
+                break;
+            case CmisQlStrictLexer.IN_LIST:
+                sql.append("(");
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    if (i > 0) { sql.append(", "); }
+                    appendOperand(node.getChild(i));
+                }
+                sql.append(")");
+                break;
+            default:
+                throw new CmisInvalidArgumentException("Invalid or unsupported query near '" + node.getText() + "'.");
+        }
+    }
+
+    private String getColumnText(Tree node) {
+        return node.getType() == CmisQlStrictLexer.COL ? getColumn(queryObject.getColumnReference(node.getTokenStartIndex())) : null;
+    }
+
+    private int getStringLiteral(Tree node) {
+        return node.getType() == CmisQlStrictLexer.STRING_LIT ? plan.getLiteral(node) : -1;
+    }
+}
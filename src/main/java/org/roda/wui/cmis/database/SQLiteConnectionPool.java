@@ -0,0 +1,143 @@
+package org.roda.wui.cmis.database;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLite connection pool.
+ *
+ * The database is opened in WAL mode, so readers never block the writer and the writer never blocks the readers.
+ * SQLite only allows one writer at a time, so a single write connection is shared by taking turns, while a fixed
+ * number of read-only connections serve the queries concurrently.
+ */
+public class SQLiteConnectionPool extends ConnectionPool {
+
+    /**
+     * Default number of read-only connections.
+     */
+    public static final int DEFAULT_READERS = 4;
+
+    /**
+     * Time, in milliseconds, SQLite waits for a lock before failing a statement.
+     */
+    private static final int BUSY_TIMEOUT = 30000;
+
+    private final String connectionUrl;
+    private final int readers;
+
+    private final Semaphore writerLock = new Semaphore(1, true);
+    private Connection writer = null;
+
+    private final BlockingQueue<Connection> idleReaders;
+    private int openReaders = 0;
+
+    /**
+     * Constructor.
+     * @param connectionUrl The JDBC connection string / URL.
+     * @param readers The number of read-only connections.
+     */
+    public SQLiteConnectionPool(String connectionUrl, int readers) {
+        this.connectionUrl = connectionUrl;
+        this.readers = Math.max(1, readers);
+        this.idleReaders = new ArrayBlockingQueue<>(this.readers);
+    }
+
+    @Override
+    protected Connection doAcquire(boolean write, long timeout) throws SQLException, InterruptedException {
+        if (write) {
+            if (!writerLock.tryAcquire(timeout, TimeUnit.MILLISECONDS)) { return null; }
+            try {
+                if ((writer == null) || writer.isClosed()) {
+                    writer = open(false);
+                }
+            } catch (SQLException e) {
+                writerLock.release();
+                throw e;
+            }
+            return writer;
+        }
+
+        Connection reader = idleReaders.poll();
+        if (reader == null) {
+            // open a new reader while below the limit, otherwise wait for one to be released
+            synchronized (this) {
+                if (openReaders < readers) {
+                    reader = open(true);
+                    openReaders++;
+                }
+            }
+            if (reader == null) {
+                reader = idleReaders.poll(timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        return reader;
+    }
+
+    @Override
+    protected void doRelease(Connection connection, boolean write) {
+        if (write) {
+            writerLock.release();
+        } else if (!idleReaders.offer(connection)) {
+            closeQuietly(connection);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        Connection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            closeQuietly(reader);
+            openReaders--;
+        }
+        closeQuietly(writer);
+        writer = null;
+    }
+
+    /**
+     * Function responsible for opening a new connection to the database.
+     * @param readOnly True for a read-only connection.
+     * @return The connection.
+     */
+    private Connection open(boolean readOnly) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(String.valueOf(BUSY_TIMEOUT));
+        config.setReadOnly(readOnly);
+        return DriverManager.getConnection(connectionUrl, config.toProperties());
+    }
+
+    /**
+     * Method responsible for closing a connection, ignoring any error.
+     * @param connection The connection.
+     */
+    private void closeQuietly(Connection connection) {
+        if (connection == null) { return; }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    // --- getters ---
+
+    public int getReaders() {
+        return readers;
+    }
+
+    public synchronized int getOpenReaders() {
+        return openReaders;
+    }
+
+    public int getIdleReaders() {
+        return idleReaders.size();
+    }
+}
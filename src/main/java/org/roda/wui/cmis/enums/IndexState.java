@@ -0,0 +1,34 @@
+package org.roda.wui.cmis.enums;
+
+/**
+ * File Bridge Index States Enum.
+ *
+ * NOT_READY: the index was not built yet. INDEXING: the repository is being crawled, the index may be incomplete.
+ * READY: the index is up to date. DEGRADED: the last crawl failed or skipped objects, the index may be incomplete.
+ */
+public enum IndexState {
+
+    NOT_READY("NOT_READY"),
+    INDEXING("INDEXING"),
+    READY("READY"),
+    DEGRADED("DEGRADED");
+
+    private final String value;
+
+    IndexState(String v) {
+        value = v;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    public static IndexState fromValue(String v) {
+        for (IndexState c : IndexState.values()) {
+            if (c.value.equals(v)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException(v);
+    }
+}
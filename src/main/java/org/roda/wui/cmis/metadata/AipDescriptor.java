@@ -0,0 +1,80 @@
+package org.roda.wui.cmis.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class responsible for holding the contents of an AIP's "aip.json" file that the CMIS server uses: the CMIS read
+ * permission, the descriptive metadata files and the representations. It is parsed once per version of the file,
+ * identified by the file's modification time and size.
+ */
+public class AipDescriptor {
+
+    private String aipFilePath = null;
+    private long lastModified = 0;
+    private long size = 0;
+    private boolean readable = false;
+    private final List<String> descriptiveMetadataIds = new ArrayList<String>();
+    private final List<String> representationIds = new ArrayList<String>();
+
+    /**
+     * Constructor.
+     * @param aipFilePath The path to the "aip.json" file.
+     * @param lastModified The modification time of the "aip.json" file.
+     * @param size The size of the "aip.json" file.
+     */
+    public AipDescriptor(String aipFilePath, long lastModified, long size) {
+        this.aipFilePath = aipFilePath;
+        this.lastModified = lastModified;
+        this.size = size;
+    }
+
+    /**
+     * Function responsible for checking if the descriptor was parsed from the current version of the "aip.json" file.
+     * @param lastModified The modification time of the "aip.json" file.
+     * @param size The size of the "aip.json" file.
+     * @return True if the file did not change since it was parsed. False otherwise.
+     */
+    public boolean isCurrent(long lastModified, long size) {
+        return (this.lastModified == lastModified) && (this.size == size);
+    }
+
+    /**
+     * Function responsible for returning the path of a descriptive metadata file of the AIP.
+     * @param descriptiveMetadataId The descriptive metadata file id.
+     * @return The file path.
+     */
+    public String getDescriptiveMetadataPath(String descriptiveMetadataId) {
+        return aipFilePath.replace("aip.json", "") + "metadata/descriptive/" + descriptiveMetadataId;
+    }
+
+    // --- getters and setters ---
+
+    public String getAipFilePath() {
+        return aipFilePath;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isReadable() {
+        return readable;
+    }
+
+    public void setReadable(boolean readable) {
+        this.readable = readable;
+    }
+
+    public List<String> getDescriptiveMetadataIds() {
+        return descriptiveMetadataIds;
+    }
+
+    public List<String> getRepresentationIds() {
+        return representationIds;
+    }
+}
@@ -0,0 +1,311 @@
+package org.roda.wui.cmis.metadata;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class responsible for reading and writing the binary snapshot of the AIPs metadata. The snapshot is memory mapped,
+ * so the metadata of an AIP is read straight from the file when it is needed, without parsing its XML files again
+ * and without keeping the whole repository's metadata on the heap.
+ *
+ * File layout (big-endian):
+ * <pre>
+ * header     magic, version, field count, AIP count, records offset, strings offset (6 ints)
+ * directory  one 32 byte entry per AIP, sorted by id hash: hash, id string offset, record offset, unused (4 ints),
+ *            "aip.json" modification time and size (2 longs)
+ * records    per AIP: number of non-empty fields, then (field number, value string offset) pairs
+ * strings    each distinct string once: UTF-8 length, UTF-8 bytes
+ * </pre>
+ */
+public class AipMetadataSnapshot {
+
+    private static final int MAGIC = 0x52434D53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 32;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int aipCount;
+    private final int recordsOffset;
+    private final int stringsOffset;
+
+    private AipMetadataSnapshot(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != AipMetadataStore.FIELD_COUNT) {
+            throw new IOException("Unsupported metadata snapshot '" + file.getPath() + "'");
+        }
+        this.aipCount = buffer.getInt(12);
+        this.recordsOffset = buffer.getInt(16);
+        this.stringsOffset = buffer.getInt(20);
+        if (aipCount < 0 || recordsOffset != HEADER_SIZE + (long) aipCount * ENTRY_SIZE
+                || stringsOffset < recordsOffset || stringsOffset > buffer.capacity()) {
+            throw new IOException("Damaged metadata snapshot '" + file.getPath() + "'");
+        }
+    }
+
+    /**
+     * Function responsible for opening a metadata snapshot.
+     * @param file The snapshot file.
+     * @return The snapshot, or null if the file does not exist.
+     * @throws IOException If the file cannot be mapped or is not a valid snapshot.
+     */
+    public static AipMetadataSnapshot open(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            return new AipMetadataSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Function responsible for returning an AIP's metadata, if the snapshot holds the current version of the AIP.
+     * @param aipId The AIP's unique ID.
+     * @param lastModified The current modification time of the AIP's "aip.json" file.
+     * @param size The current size of the AIP's "aip.json" file.
+     * @return The AIP's metadata, or null if the AIP is not in the snapshot or changed since it was written.
+     */
+    public AipMetadata get(String aipId, long lastModified, long size) {
+        int entry = find(aipId);
+        if (entry < 0 || buffer.getLong(entry + 16) != lastModified || buffer.getLong(entry + 24) != size) {
+            return null;
+        }
+
+        String[] values = new String[AipMetadataStore.FIELD_COUNT];
+        int record = buffer.getInt(entry + 8);
+        int fields = buffer.getInt(record);
+        for (int i = 0; i < fields; i++) {
+            values[buffer.getInt(record + 4 + i * 8)] = readString(buffer.getInt(record + 8 + i * 8));
+        }
+        for (int field = 0; field < values.length; field++) {
+            if (values[field] == null) {
+                values[field] = "";
+            }
+        }
+        return AipMetadataStore.toAipMetadata(aipId, values);
+    }
+
+    /**
+     * Function responsible for returning the number of AIPs in the snapshot.
+     * @return The number of AIPs.
+     */
+    public int size() {
+        return aipCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Function responsible for finding an AIP's directory entry, by binary search on the id hash.
+     * @param aipId The AIP's unique ID.
+     * @return The entry's offset, or -1 if the AIP is not in the snapshot.
+     */
+    private int find(String aipId) {
+        int hash = aipId.hashCode();
+        int low = 0;
+        int high = aipCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleHash = buffer.getInt(HEADER_SIZE + middle * ENTRY_SIZE);
+            if (middleHash < hash) {
+                low = middle + 1;
+            } else if (middleHash > hash) {
+                high = middle - 1;
+            } else {
+                // walk back to the first entry with the same hash, then check the ids
+                while (middle > 0 && buffer.getInt(HEADER_SIZE + (middle - 1) * ENTRY_SIZE) == hash) {
+                    middle--;
+                }
+                for (; middle < aipCount && buffer.getInt(HEADER_SIZE + middle * ENTRY_SIZE) == hash; middle++) {
+                    int entry = HEADER_SIZE + middle * ENTRY_SIZE;
+                    if (aipId.equals(readString(buffer.getInt(entry + 4)))) {
+                        return entry;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Function responsible for reading a string from the strings table.
+     * @param offset The string's offset.
+     * @return The string.
+     */
+    private String readString(int offset) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(offset + 4);
+        bytes.limit(offset + 4 + buffer.getInt(offset));
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    /**
+     * Class responsible for writing a new metadata snapshot. The AIPs are added one by one and the file is written
+     * next to the target and moved over it on close, so the snapshot being read is never left half written.
+     */
+    public static class Writer {
+
+        private final File file;
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final List<byte[]> stringBytes = new ArrayList<byte[]>();
+        private long stringsSize = 0;
+        private long recordsSize = 0;
+
+        /**
+         * Constructor.
+         * @param file The snapshot file.
+         */
+        public Writer(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Method responsible for adding an AIP to the snapshot.
+         * @param aipMetadata The AIP's metadata.
+         * @param lastModified The modification time of the AIP's "aip.json" file.
+         * @param size The size of the AIP's "aip.json" file.
+         */
+        public void add(AipMetadata aipMetadata, long lastModified, long size) {
+            String[] values = AipMetadataStore.toValues(aipMetadata);
+            int fields = 0;
+            for (String value : values) {
+                if (value != null && value.length() > 0) {
+                    fields++;
+                }
+            }
+            int[] record = new int[fields * 2];
+            int position = 0;
+            for (int field = 0; field < values.length; field++) {
+                if (values[field] != null && values[field].length() > 0) {
+                    record[position++] = field;
+                    record[position++] = stringIndex(values[field]);
+                }
+            }
+            entries.add(new Entry(aipMetadata.getId(), stringIndex(aipMetadata.getId()), record, lastModified, size));
+            recordsSize += 4 + record.length * 4;
+        }
+
+        /**
+         * Method responsible for writing the snapshot file.
+         * @throws IOException If the file cannot be written, or would be larger than a single mapping allows.
+         */
+        public void close() throws IOException {
+            long recordsOffset = HEADER_SIZE + (long) entries.size() * ENTRY_SIZE;
+            long stringsOffset = recordsOffset + recordsSize;
+            if (stringsOffset + stringsSize > Integer.MAX_VALUE) {
+                throw new IOException("Metadata snapshot too large: " + (stringsOffset + stringsSize) + " bytes");
+            }
+
+            // string offsets, in the order the strings were added
+            int[] stringOffsets = new int[stringBytes.size()];
+            long offset = stringsOffset;
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = (int) offset;
+                offset += 4 + stringBytes.get(i).length;
+            }
+
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry e1, Entry e2) {
+                    return Integer.compare(e1.aipId.hashCode(), e2.aipId.hashCode());
+                }
+            });
+
+            File temporaryFile = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temporaryFile), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(AipMetadataStore.FIELD_COUNT);
+                out.writeInt(entries.size());
+                out.writeInt((int) recordsOffset);
+                out.writeInt((int) stringsOffset);
+
+                long recordOffset = recordsOffset;
+                for (Entry entry : entries) {
+                    out.writeInt(entry.aipId.hashCode());
+                    out.writeInt(stringOffsets[entry.aipIdString]);
+                    out.writeInt((int) recordOffset);
+                    out.writeInt(0);
+                    out.writeLong(entry.lastModified);
+                    out.writeLong(entry.size);
+                    recordOffset += 4 + entry.record.length * 4;
+                }
+                for (Entry entry : entries) {
+                    out.writeInt(entry.record.length / 2);
+                    for (int i = 0; i < entry.record.length; i += 2) {
+                        out.writeInt(entry.record[i]);
+                        out.writeInt(stringOffsets[entry.record[i + 1]]);
+                    }
+                }
+                for (byte[] bytes : stringBytes) {
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Function responsible for returning the index of a string in the strings table, adding it if needed.
+         * @param value The string.
+         * @return The string's index.
+         */
+        private int stringIndex(String value) {
+            Integer index = strings.get(value);
+            if (index == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                index = stringBytes.size();
+                stringBytes.add(bytes);
+                stringsSize += 4 + bytes.length;
+                strings.put(value, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * An AIP waiting to be written to a snapshot.
+     */
+    private static class Entry {
+        private final String aipId;
+        private final int aipIdString;
+        private final int[] record;
+        private final long lastModified;
+        private final long size;
+
+        Entry(String aipId, int aipIdString, int[] record, long lastModified, long size) {
+            this.aipId = aipId;
+            this.aipIdString = aipIdString;
+            this.record = record;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package org.roda.wui.cmis.metadata;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.roda.wui.cmis.enums.MetadataDublinCoreFieldId;
+import org.roda.wui.cmis.enums.MetadataEadFieldId;
+import org.roda.wui.cmis.enums.MetadataKeyValueFieldId;
+
+/**
+ * Class responsible for keeping the metadata of every AIP in memory in a compact form.
+ *
+ * The fields are numbered after the Metadata*FieldId enums and every field has its own dictionary, so a value shared
+ * by many AIPs (country codes, repository names, levels of detail, ...) is stored once. Each AIP only keeps one int
+ * per non-empty field, packing the field number and the value's code, the empty fields take no space at all. Reads return AipMetadata
+ * objects with the same accessors as before, built on demand from the codes.
+ */
+public class AipMetadataStore {
+
+    private static final int EAD_FIELDS = 0;
+    private static final int DUBLIN_CORE_FIELDS = EAD_FIELDS + MetadataEadFieldId.values().length;
+    private static final int KEY_VALUE_FIELDS = DUBLIN_CORE_FIELDS + MetadataDublinCoreFieldId.values().length;
+    static final int FIELD_COUNT = KEY_VALUE_FIELDS + MetadataKeyValueFieldId.values().length;
+    // each stored field is one int, the field number in the high bits and the value code in the low bits
+    private static final int CODE_BITS = 25;
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    private final MetadataDictionary[] dictionaries = new MetadataDictionary[FIELD_COUNT];
+    private final Map<String, int[]> records = new ConcurrentHashMap<String, int[]>();
+    // codes are reused once released, so reads must not overlap the writes
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor.
+     */
+    public AipMetadataStore() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            dictionaries[i] = new MetadataDictionary();
+        }
+    }
+
+    /**
+     * Method responsible for storing an AIP's metadata, replacing the one stored before.
+     * @param aipMetadata The AIP's metadata.
+     */
+    public void put(AipMetadata aipMetadata) {
+        String[] values = toValues(aipMetadata);
+        int present = 0;
+        for (String value : values) {
+            if (value != null && value.length() > 0) {
+                present++;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            int[] record = new int[present];
+            int position = 0;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (values[field] != null && values[field].length() > 0) {
+                    int code = dictionaries[field].encode(values[field]);
+                    if (code > CODE_MASK) {
+                        dictionaries[field].release(code);
+                        release(record, position);
+                        throw new IllegalStateException("Too many distinct values for metadata field " + field);
+                    }
+                    record[position++] = (field << CODE_BITS) | code;
+                }
+            }
+            int[] replaced = records.put(aipMetadata.getId(), record);
+            if (replaced != null) {
+                release(replaced, replaced.length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Method responsible for dropping an AIP's metadata.
+     * @param aipId The AIP's unique ID.
+     */
+    public void remove(String aipId) {
+        lock.writeLock().lock();
+        try {
+            int[] removed = records.remove(aipId);
+            if (removed != null) {
+                release(removed, removed.length);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function responsible for returning an AIP's metadata.
+     * @param aipId The AIP's unique ID.
+     * @return The AIP's metadata, or null if it is not stored.
+     */
+    public AipMetadata get(String aipId) {
+        String[] values = new String[FIELD_COUNT];
+        lock.readLock().lock();
+        try {
+            int[] record = records.get(aipId);
+            if (record == null) {
+                return null;
+            }
+            for (int entry : record) {
+                int field = entry >>> CODE_BITS;
+                values[field] = dictionaries[field].decode(entry & CODE_MASK);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (values[field] == null) {
+                values[field] = "";
+            }
+        }
+        return toAipMetadata(aipId, values);
+    }
+
+    /**
+     * Function responsible for returning the number of AIPs in the store.
+     * @return The number of AIPs.
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Function responsible for returning the number of distinct values kept by the store's dictionaries.
+     * @return The number of values.
+     */
+    public int getDistinctValues() {
+        lock.readLock().lock();
+        try {
+            int distinctValues = 0;
+            for (MetadataDictionary dictionary : dictionaries) {
+                distinctValues += dictionary.size();
+            }
+            return distinctValues;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Method responsible for releasing the dictionary codes of a replaced, dropped or unfinished record.
+     * @param record The record.
+     * @param length The number of entries to release.
+     */
+    private void release(int[] record, int length) {
+        for (int i = 0; i < length; i++) {
+            dictionaries[record[i] >>> CODE_BITS].release(record[i] & CODE_MASK);
+        }
+    }
+
+    /**
+     * Function responsible for returning the store's number of an EAD field.
+     * @param fieldId The field ID.
+     * @return The field number.
+     */
+    private static int field(MetadataEadFieldId fieldId) {
+        return EAD_FIELDS + fieldId.ordinal();
+    }
+
+    /**
+     * Function responsible for returning the store's number of a Dublin Core field.
+     * @param fieldId The field ID.
+     * @return The field number.
+     */
+    private static int field(MetadataDublinCoreFieldId fieldId) {
+        return DUBLIN_CORE_FIELDS + fieldId.ordinal();
+    }
+
+    /**
+     * Function responsible for returning the store's number of a Key-Value field.
+     * @param fieldId The field ID.
+     * @return The field number.
+     */
+    private static int field(MetadataKeyValueFieldId fieldId) {
+        return KEY_VALUE_FIELDS + fieldId.ordinal();
+    }
+
+    /**
+     * Function responsible for flattening an AIP's metadata into an array indexed by field.
+     * @param aipMetadata The AIP's metadata.
+     * @return The field values, null for the missing metadata files.
+     */
+    static String[] toValues(AipMetadata aipMetadata) {
+        String[] values = new String[FIELD_COUNT];
+        Ead2002Metadata ead = aipMetadata.getEad2002Metadata();
+        if (ead != null) {
+            values[field(MetadataEadFieldId.METADATA_EAD_UNIT_ID)] = ead.getUnitId();
+            values[field(MetadataEadFieldId.METADATA_EAD_UNIT_TITLE)] = ead.getUnitTitle();
+            values[field(MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE)] = ead.getCountryCode();
+            values[field(MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE)] = ead.getRepositoryCode();
+            values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE)] = ead.getUnitDate();
+            values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL)] = ead.getUnitDateLabel();
+            values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL)] = ead.getUnitDateNormal();
+            values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION)] = ead.getPhysicalDescription();
+            values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT)] = ead.getPhysicalDescriptionExtent();
+            values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS)] = ead.getPhysicalDescriptionDimensions();
+            values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE)] = ead.getPhysicalDescriptionAppearance();
+            values[field(MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME)] = ead.getRepositoryName();
+            values[field(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL)] = ead.getLangMaterial();
+            values[field(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE)] = ead.getLangMaterialLanguage();
+            values[field(MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION)] = ead.getNoteSourcesDescription();
+            values[field(MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE)] = ead.getNoteGeneralNote();
+            values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION)] = ead.getOrigination();
+            values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION)] = ead.getOriginationCreator();
+            values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION)] = ead.getOriginationProducer();
+            values[field(MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION)] = ead.getArchiveDescription();
+            values[field(MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION)] = ead.getMaterialSpecification();
+            values[field(MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL)] = ead.getOddLevelOfDetail();
+            values[field(MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION)] = ead.getOddStatusDescription();
+            values[field(MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT)] = ead.getScopeContent();
+            values[field(MetadataEadFieldId.METADATA_EAD_ARRANGEMENT)] = ead.getArrangement();
+            values[field(MetadataEadFieldId.METADATA_EAD_APPRAISAL)] = ead.getAppraisal();
+            values[field(MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO)] = ead.getAcquisitionInfo();
+            values[field(MetadataEadFieldId.METADATA_EAD_ACCRUALS)] = ead.getAccruals();
+            values[field(MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY)] = ead.getCustodialHistory();
+            values[field(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE)] = ead.getProcessInfoDate();
+            values[field(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES)] = ead.getProcessInfoArchivistNotes();
+            values[field(MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION)] = ead.getOriginalsLocation();
+            values[field(MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE)] = ead.getAlternativeFormAvailable();
+            values[field(MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL)] = ead.getRelatedMaterial();
+            values[field(MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS)] = ead.getAccessRestrictions();
+            values[field(MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS)] = ead.getUseRestrictions();
+            values[field(MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID)] = ead.getOtherFindAid();
+            values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH)] = ead.getPhysicalTech();
+            values[field(MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY)] = ead.getBibliography();
+            values[field(MetadataEadFieldId.METADATA_EAD_PREFER_CITE)] = ead.getPreferCite();
+        }
+        DublinCore20021212Metadata dublinCore = aipMetadata.getDublinCore20021212Metadata();
+        if (dublinCore != null) {
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE)] = dublinCore.getTitle();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER)] = dublinCore.getIdentifier();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR)] = dublinCore.getCreator();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE)] = dublinCore.getInitialDate();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE)] = dublinCore.getFinalDate();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION)] = dublinCore.getDescription();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER)] = dublinCore.getPublisher();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR)] = dublinCore.getContributor();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS)] = dublinCore.getRights();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE)] = dublinCore.getLanguage();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE)] = dublinCore.getCoverage();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT)] = dublinCore.getFormat();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION)] = dublinCore.getRelation();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT)] = dublinCore.getSubject();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE)] = dublinCore.getType();
+            values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE)] = dublinCore.getSource();
+        }
+        KeyValueMetadata keyValue = aipMetadata.getKeyValueMetadata();
+        if (keyValue != null) {
+            values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID)] = keyValue.getId();
+            values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE)] = keyValue.getTitle();
+            values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER)] = keyValue.getProducer();
+            values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE)] = keyValue.getDate();
+        }
+        return values;
+    }
+
+    /**
+     * Function responsible for building an AIP's metadata from an array indexed by field.
+     * @param aipId The AIP's unique ID.
+     * @param values The field values.
+     * @return The AIP's metadata.
+     */
+    static AipMetadata toAipMetadata(String aipId, String[] values) {
+        Ead2002Metadata ead = new Ead2002Metadata();
+        ead.setUnitId(values[field(MetadataEadFieldId.METADATA_EAD_UNIT_ID)]);
+        ead.setUnitTitle(values[field(MetadataEadFieldId.METADATA_EAD_UNIT_TITLE)]);
+        ead.setCountryCode(values[field(MetadataEadFieldId.METADATA_EAD_COUNTRY_CODE)]);
+        ead.setRepositoryCode(values[field(MetadataEadFieldId.METADATA_EAD_REPOSITORY_CODE)]);
+        ead.setUnitDate(values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE)]);
+        ead.setUnitDateLabel(values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_LABEL)]);
+        ead.setUnitDateNormal(values[field(MetadataEadFieldId.METADATA_EAD_UNIT_DATE_NORMAL)]);
+        ead.setPhysicalDescription(values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION)]);
+        ead.setPhysicalDescriptionExtent(values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_EXTENT)]);
+        ead.setPhysicalDescriptionDimensions(values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_DIMENSIONS)]);
+        ead.setPhysicalDescriptionAppearance(values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_DESCRIPTION_APPEARANCE)]);
+        ead.setRepositoryName(values[field(MetadataEadFieldId.METADATA_EAD_REPOSITORY_NAME)]);
+        ead.setLangMaterial(values[field(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL)]);
+        ead.setLangMaterialLanguage(values[field(MetadataEadFieldId.METADATA_EAD_LANG_MATERIAL_LANGUAGE)]);
+        ead.setNoteSourcesDescription(values[field(MetadataEadFieldId.METADATA_EAD_NOTE_SOURCE_DESCRIPTION)]);
+        ead.setNoteGeneralNote(values[field(MetadataEadFieldId.METADATA_EAD_NOTE_GENERAL_NOTE)]);
+        ead.setOrigination(values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION)]);
+        ead.setOriginationCreator(values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION_CREATION)]);
+        ead.setOriginationProducer(values[field(MetadataEadFieldId.METADATA_EAD_ORIGINATION_PRODUCTION)]);
+        ead.setArchiveDescription(values[field(MetadataEadFieldId.METADATA_EAD_ARCHIVE_DESCRIPTION)]);
+        ead.setMaterialSpecification(values[field(MetadataEadFieldId.METADATA_EAD_MATERIAL_SPECIFICATION)]);
+        ead.setOddLevelOfDetail(values[field(MetadataEadFieldId.METADATA_EAD_ODD_LEVEL_OF_DETAIL)]);
+        ead.setOddStatusDescription(values[field(MetadataEadFieldId.METADATA_EAD_ODD_STATUS_DESCRIPTION)]);
+        ead.setScopeContent(values[field(MetadataEadFieldId.METADATA_EAD_SCOPE_CONTENT)]);
+        ead.setArrangement(values[field(MetadataEadFieldId.METADATA_EAD_ARRANGEMENT)]);
+        ead.setAppraisal(values[field(MetadataEadFieldId.METADATA_EAD_APPRAISAL)]);
+        ead.setAcquisitionInfo(values[field(MetadataEadFieldId.METADATA_EAD_ACQUISITION_INFO)]);
+        ead.setAccruals(values[field(MetadataEadFieldId.METADATA_EAD_ACCRUALS)]);
+        ead.setCustodialHistory(values[field(MetadataEadFieldId.METADATA_EAD_CUSTODIAL_HISTORY)]);
+        ead.setProcessInfoDate(values[field(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_DATE)]);
+        ead.setProcessInfoArchivistNotes(values[field(MetadataEadFieldId.METADATA_EAD_PROCESS_INFO_ARCHIVIST_NOTES)]);
+        ead.setOriginalsLocation(values[field(MetadataEadFieldId.METADATA_EAD_ORIGINALS_LOCATION)]);
+        ead.setAlternativeFormAvailable(values[field(MetadataEadFieldId.METADATA_EAD_ALTERNATIVE_FORM_AVAILABLE)]);
+        ead.setRelatedMaterial(values[field(MetadataEadFieldId.METADATA_EAD_RELATED_MATERIAL)]);
+        ead.setAccessRestrictions(values[field(MetadataEadFieldId.METADATA_EAD_ACCESS_RESTRICTIONS)]);
+        ead.setUseRestrictions(values[field(MetadataEadFieldId.METADATA_EAD_USE_RESTRICTIONS)]);
+        ead.setOtherFindAid(values[field(MetadataEadFieldId.METADATA_EAD_OTHER_FIND_AID)]);
+        ead.setPhysicalTech(values[field(MetadataEadFieldId.METADATA_EAD_PHYSICAL_TECH)]);
+        ead.setBibliography(values[field(MetadataEadFieldId.METADATA_EAD_BIBLIOGRAPHY)]);
+        ead.setPreferCite(values[field(MetadataEadFieldId.METADATA_EAD_PREFER_CITE)]);
+
+        DublinCore20021212Metadata dublinCore = new DublinCore20021212Metadata();
+        dublinCore.setTitle(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TITLE)]);
+        dublinCore.setIdentifier(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_IDENTIFIER)]);
+        dublinCore.setCreator(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CREATOR)]);
+        dublinCore.setInitialDate(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_INITIAL_DATE)]);
+        dublinCore.setFinalDate(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FINAL_DATE)]);
+        dublinCore.setDescription(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_DESCRIPTION)]);
+        dublinCore.setPublisher(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_PUBLISHER)]);
+        dublinCore.setContributor(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_CONTRIBUTOR)]);
+        dublinCore.setRights(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RIGHTS)]);
+        dublinCore.setLanguage(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_LANGUAGE)]);
+        dublinCore.setCoverage(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_COVERAGE)]);
+        dublinCore.setFormat(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_FORMAT)]);
+        dublinCore.setRelation(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_RELATION)]);
+        dublinCore.setSubject(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SUBJECT)]);
+        dublinCore.setType(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_TYPE)]);
+        dublinCore.setSource(values[field(MetadataDublinCoreFieldId.METADATA_DUBLIN_CORE_SOURCE)]);
+
+        KeyValueMetadata keyValue = new KeyValueMetadata();
+        keyValue.setId(values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_ID)]);
+        keyValue.setTitle(values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_TITLE)]);
+        keyValue.setProducer(values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_PRODUCER)]);
+        keyValue.setDate(values[field(MetadataKeyValueFieldId.METADATA_KEY_VALUE_DATE)]);
+
+        AipMetadata aipMetadata = new AipMetadata(aipId);
+        aipMetadata.setEad2002Metadata(ead);
+        aipMetadata.setDublinCore20021212Metadata(dublinCore);
+        aipMetadata.setKeyValueMetadata(keyValue);
+        return aipMetadata;
+    }
+}
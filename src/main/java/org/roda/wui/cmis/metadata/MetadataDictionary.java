@@ -0,0 +1,78 @@
+package org.roda.wui.cmis.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class responsible for encoding the values of one metadata field as integer codes. Each distinct value is kept once,
+ * no matter how many AIPs use it, and the code of a value nobody references anymore is reused.
+ *
+ * The class is not thread safe, the AipMetadataStore guards it.
+ */
+class MetadataDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<String, Integer>();
+    private final List<String> values = new ArrayList<String>();
+    private int[] references = new int[16];
+    private int[] freeCodes = new int[16];
+    private int freeCount = 0;
+
+    /**
+     * Function responsible for returning the code of a value, adding the value to the dictionary if needed.
+     * @param value The value.
+     * @return The value's code.
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            if (freeCount > 0) {
+                code = freeCodes[--freeCount];
+                values.set(code, value);
+            } else {
+                code = values.size();
+                values.add(value);
+                if (code == references.length) {
+                    references = Arrays.copyOf(references, references.length * 2);
+                }
+            }
+            codes.put(value, code);
+        }
+        references[code]++;
+        return code;
+    }
+
+    /**
+     * Function responsible for returning the value of a code.
+     * @param code The value's code.
+     * @return The value.
+     */
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Method responsible for dropping one reference to a value, removing the value once it is no longer referenced.
+     * @param code The value's code.
+     */
+    void release(int code) {
+        if (--references[code] == 0) {
+            codes.remove(values.get(code));
+            values.set(code, null);
+            if (freeCount == freeCodes.length) {
+                freeCodes = Arrays.copyOf(freeCodes, freeCodes.length * 2);
+            }
+            freeCodes[freeCount++] = code;
+        }
+    }
+
+    /**
+     * Function responsible for returning the number of distinct values in the dictionary.
+     * @return The number of values.
+     */
+    int size() {
+        return codes.size();
+    }
+}
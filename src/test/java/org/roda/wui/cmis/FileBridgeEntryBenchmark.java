@@ -0,0 +1,132 @@
+package org.roda.wui.cmis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the repository traversals, over a synthetic tree of empty files in folders of 1000 entries
+ * (1,000,000 entries by default, created in the temporary folder and removed at the end).
+ *
+ * The "io" benchmarks read every entry the way the java.io code did: listFiles(), then isHidden(), isDirectory(),
+ * isFile(), length() and lastModified() on each child. The "nio" benchmarks use {@link FileBridgeEntry}, which reads
+ * the attributes of each entry once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileBridgeEntryBenchmark {
+
+    private static final int FOLDER_SIZE = 1000;
+
+    @Param({"1000000"})
+    public int entries;
+
+    private File root;
+    private File folder;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("roda-cmis-benchmark").toFile();
+        for (int i = 0; i * FOLDER_SIZE < entries; i++) {
+            File subfolder = new File(root, "folder-" + i);
+            if (!subfolder.mkdir()) { throw new IOException("Could not create " + subfolder); }
+            for (int j = 0; j < FOLDER_SIZE - 1 && i * FOLDER_SIZE + j + 1 < entries; j++) {
+                if (!new File(subfolder, "file-" + j + ".txt").createNewFile()) {
+                    throw new IOException("Could not create the files of " + subfolder);
+                }
+            }
+        }
+        folder = new File(root, "folder-0");
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] subfolders = root.listFiles();
+        if (subfolders != null) {
+            for (File subfolder : subfolders) {
+                File[] files = subfolder.listFiles();
+                if (files != null) {
+                    for (File file : files) { file.delete(); }
+                }
+                subfolder.delete();
+            }
+        }
+        root.delete();
+    }
+
+    @Benchmark
+    public long ioWalk() {
+        return walk(root);
+    }
+
+    @Benchmark
+    public long nioWalk() {
+        final long[] total = new long[1];
+        FileBridgeEntry.walk(root, new FileBridgeEntry.Visitor() {
+            @Override
+            public boolean visit(FileBridgeEntry entry, int depth) {
+                total[0] += (entry.isFile() ? entry.length() : 1) + entry.lastModified();
+                return true;
+            }
+        });
+        return total[0];
+    }
+
+    @Benchmark
+    public long ioList() {
+        long total = 0;
+        File[] children = folder.listFiles();
+        for (File child : children) {
+            if (child.isHidden()) { continue; }
+            total += (child.isFile() ? child.length() : child.isDirectory() ? 1 : 0) + child.lastModified();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long nioList() {
+        long total = 0;
+        List<FileBridgeEntry> children = FileBridgeEntry.list(folder);
+        for (FileBridgeEntry child : children) {
+            total += (child.isFile() ? child.length() : 1) + child.lastModified();
+        }
+        return total;
+    }
+
+    /**
+     * Function responsible for walking a folder with java.io, reading the attributes of each entry separately.
+     */
+    private static long walk(File folder) {
+        long total = 0;
+        File[] children = folder.listFiles();
+        if (children == null) { return 0; }
+        for (File child : children) {
+            if (child.isHidden()) { continue; }
+            if (child.isDirectory()) {
+                total += 1 + child.lastModified() + walk(child);
+            } else if (child.isFile()) {
+                total += child.length() + child.lastModified();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,58 @@
+package org.roda.wui.cmis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the metadata parsers, over the sample files of the golden corpus (see
+ * {@link FileBridgeMetadataParserTest}).
+ *
+ * "stax" runs the streaming parser of the file's format. "dom" is the baseline of the former parsers: a new
+ * DocumentBuilderFactory per file and a normalized DOM, the cost they paid before navigating the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileBridgeMetadataParserBenchmark {
+
+    @Param({"ead2002-sample.xml", "dc-sample.xml", "key-value-sample.xml"})
+    public String fileName;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = new File(new File(FileBridgeMetadataParserBenchmark.class.getResource("/metadata-corpus").toURI()), fileName);
+    }
+
+    @Benchmark
+    public Object stax() {
+        if (fileName.startsWith("ead2002-")) { return FileBridgeMetadataParser.parseEAD2002(file); }
+        if (fileName.startsWith("dc-")) { return FileBridgeMetadataParser.parseDublinCoreSimple20021212(file); }
+        return FileBridgeMetadataParser.parseKeyValue(file);
+    }
+
+    @Benchmark
+    public Object dom() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        document.getDocumentElement().normalize();
+        return document;
+    }
+}
@@ -0,0 +1,119 @@
+package org.roda.wui.cmis;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Golden file test of the metadata parsers.
+ *
+ * Every XML file of the "metadata-corpus" folder is parsed by the parser its name starts with ("ead2002-", "dc-" or
+ * "key-value-") and the values read must be the ones of the ".properties" file with the same name, which hold the
+ * output of the former DOM parsers. The corpus covers CDATA sections, comments, processing instructions, missing
+ * nodes, entities and truncated files.
+ */
+@RunWith(Parameterized.class)
+public class FileBridgeMetadataParserTest {
+
+    private static final String CORPUS = "/metadata-corpus";
+
+    private final File file;
+
+    /**
+     * Constructor.
+     * @param name The name of the corpus file, used as the name of the test.
+     * @param file The corpus file.
+     */
+    public FileBridgeMetadataParserTest(String name, File file) {
+        this.file = file;
+    }
+
+    /**
+     * Function responsible for listing the XML files of the corpus.
+     * @return The name and the file of each corpus file.
+     */
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> corpus() throws Exception {
+        File[] files = new File(FileBridgeMetadataParserTest.class.getResource(CORPUS).toURI()).listFiles();
+        Arrays.sort(files);
+
+        Collection<Object[]> corpus = new ArrayList<Object[]>();
+        for (File file : files) {
+            if (file.getName().endsWith(".xml")) {
+                corpus.add(new Object[]{file.getName(), file});
+            }
+        }
+        return corpus;
+    }
+
+    @Test
+    public void parsesTheExpectedValues() throws Exception {
+        String name = file.getName();
+        Object metadata;
+        if (name.startsWith("ead2002-")) {
+            metadata = FileBridgeMetadataParser.parseEAD2002(file);
+        } else if (name.startsWith("dc-")) {
+            metadata = FileBridgeMetadataParser.parseDublinCoreSimple20021212(file);
+        } else {
+            assertTrue("Unknown metadata format: " + name, name.startsWith("key-value-"));
+            metadata = FileBridgeMetadataParser.parseKeyValue(file);
+        }
+
+        File expected = new File(file.getParentFile(), name.substring(0, name.length() - ".xml".length()) + ".properties");
+        assertEquals(name, readExpectedValues(expected), getValues(metadata));
+    }
+
+    /**
+     * Function responsible for reading the expected values of a corpus file.
+     * @param file The ".properties" file, in UTF-8.
+     * @return The values, keyed by property name.
+     */
+    private static Map<String, String> readExpectedValues(File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Map<String, String> values = new TreeMap<String, String>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        return values;
+    }
+
+    /**
+     * Function responsible for returning the values of a metadata object, read through its getters.
+     * @param metadata The metadata object.
+     * @return The values, keyed by property name (the getter's name without "get").
+     */
+    private static Map<String, String> getValues(Object metadata) throws Exception {
+        Map<String, String> values = new TreeMap<String, String>();
+        for (Method method : metadata.getClass().getMethods()) {
+            String methodName = method.getName();
+            if (methodName.startsWith("get") && method.getParameterTypes().length == 0
+                    && method.getReturnType() == String.class) {
+                String key = Character.toLowerCase(methodName.charAt(3)) + methodName.substring(4);
+                values.put(key, (String) method.invoke(metadata));
+            }
+        }
+        return values;
+    }
+}
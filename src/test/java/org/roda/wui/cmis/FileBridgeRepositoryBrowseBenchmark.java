@@ -0,0 +1,168 @@
+package org.roda.wui.cmis;
+
+import org.apache.chemistry.opencmis.commons.data.ObjectInFolderData;
+import org.apache.chemistry.opencmis.commons.enums.CmisVersion;
+import org.apache.chemistry.opencmis.commons.server.CallContext;
+import org.apache.chemistry.opencmis.server.impl.CallContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the browse latency of the repository (getObject and getChildren), over a synthetic repository of
+ * AIPs with EAD metadata, created in the temporary folder and removed at the end. The index database is created in
+ * the working folder, as the repository does.
+ *
+ * The "whileIndexing" group browses while another thread keeps re-indexing AIPs, so the reads compete with the index
+ * writes. The reads never wait for a write, so their latency should stay far below the one of an AIP's indexing
+ * (the re-indexed AIPs still drop their cached properties). With "propertiesCacheSize" 0 every read compiles the
+ * object's properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBridgeRepositoryBrowseBenchmark {
+
+    private static final int DOCUMENTS_PER_AIP = 20;
+
+    @Param({"200"})
+    public int aips;
+
+    @Param({"0", "10000"})
+    public int propertiesCacheSize;
+
+    private File storage;
+    private File root;
+    private FileBridgeRepository repository;
+    private CallContext context;
+    private final List<String> documentIds = new ArrayList<String>();
+
+    @Setup
+    public void setUp() throws Exception {
+        // the repository's root is the storage's "aip" folder
+        storage = Files.createTempDirectory("roda-cmis-benchmark").toFile();
+        root = new File(storage, "aip");
+        String ead = new String(Files.readAllBytes(new File(FileBridgeRepositoryBrowseBenchmark.class
+                .getResource("/metadata-corpus/ead2002-sample.xml").toURI()).toPath()), StandardCharsets.UTF_8);
+        for (int i = 0; i < aips; i++) {
+            createAip("aip-" + i, ead.replace("UNIT-1", "UNIT-" + i));
+        }
+        deleteDatabase();
+
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(FileBridgeRepository.OPTION_INDEX_IN_BACKGROUND, "false");
+        options.put(FileBridgeRepository.OPTION_INDEX_WATCH, "none");
+        options.put(FileBridgeRepository.OPTION_METADATA_SNAPSHOT, "none");
+        options.put(FileBridgeRepository.OPTION_PROPERTIES_CACHE_SIZE, String.valueOf(propertiesCacheSize));
+        repository = new FileBridgeRepository("roda-cmis", root.getPath(), new FileBridgeTypeManager(), options);
+        repository.setUserReadOnly("reader");
+
+        CallContextImpl callContext = new CallContextImpl(CallContext.BINDING_BROWSER, CmisVersion.CMIS_1_1,
+                "roda-cmis", null, null, null, null, null);
+        callContext.put(CallContext.USERNAME, "reader");
+        context = callContext;
+
+        for (ObjectInFolderData child : repository.getChildren(context, FileBridgeObjectIds.ROOT_ID, null, false,
+                false, BigInteger.valueOf(aips * DOCUMENTS_PER_AIP), BigInteger.ZERO, null).getObjects()) {
+            documentIds.add(child.getObject().getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+        deleteDatabase();
+        delete(storage);
+    }
+
+    @Benchmark
+    public Object getObject() {
+        return repository.getObject(context, randomDocumentId(), null, null, false, false, null);
+    }
+
+    @Benchmark
+    public Object getChildren() {
+        int skip = ThreadLocalRandom.current().nextInt(Math.max(1, documentIds.size() - 100));
+        return repository.getChildren(context, FileBridgeObjectIds.ROOT_ID, null, false, false,
+                BigInteger.valueOf(100), BigInteger.valueOf(skip), null);
+    }
+
+    @Benchmark
+    @Group("whileIndexing")
+    @GroupThreads(3)
+    public Object browse() {
+        return repository.getObject(context, randomDocumentId(), null, null, false, false, null);
+    }
+
+    @Benchmark
+    @Group("whileIndexing")
+    @GroupThreads(1)
+    public void index() {
+        repository.getIndexer().indexAip(new File(root, "aip-" + ThreadLocalRandom.current().nextInt(aips)));
+    }
+
+    private String randomDocumentId() {
+        return documentIds.get(ThreadLocalRandom.current().nextInt(documentIds.size()));
+    }
+
+    /**
+     * Method responsible for creating a synthetic AIP, readable through CMIS, with EAD metadata and documents.
+     */
+    private void createAip(String aipId, String ead) throws IOException {
+        File aip = new File(root, aipId);
+        File descriptive = new File(aip, "metadata/descriptive");
+        File data = new File(aip, "representations/rep0/data");
+        if (!descriptive.mkdirs() || !data.mkdirs()) { throw new IOException("Could not create " + aip); }
+
+        write(new File(aip, "aip.json"), "{\"id\": \"" + aipId + "\", \"permissions\": {\"groups\": {\"READ\": [\"cmis\"]}}, "
+                + "\"descriptiveMetadata\": [{\"id\": \"ead2002.xml\"}]}");
+        write(new File(descriptive, "ead2002.xml"), ead);
+        for (int i = 0; i < DOCUMENTS_PER_AIP; i++) {
+            write(new File(data, aipId + "-document-" + i + ".txt"), "Document " + i + " of " + aipId);
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void deleteDatabase() {
+        for (String name : new String[]{"roda-cmis.db", "roda-cmis.db-wal", "roda-cmis.db-shm"}) {
+            new File(name).delete();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) { delete(child); }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,156 @@
+package org.roda.wui.cmis.metadata;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the compact AIP metadata store, over a synthetic set of AIPs whose values repeat across AIPs as in a real
+ * repository (country codes, repository names, levels of detail, languages, ...). Every value is a new String, as
+ * when it is parsed from the AIP's metadata files. The ids and titles are unique to each AIP and take the same space
+ * in both forms, so the heap saved comes from the repeated values and the per-AIP objects.
+ */
+public class AipMetadataStoreTest {
+
+    private static final int AIPS = 20000;
+
+    private static final String[] LEVELS = {"fonds", "series", "file", "item"};
+
+    @Test
+    public void returnsTheStoredValues() throws Exception {
+        AipMetadataStore store = new AipMetadataStore();
+        for (int i = 0; i < 1000; i++) {
+            store.put(createAipMetadata(i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            AipMetadata expected = createAipMetadata(i);
+            AipMetadata stored = store.get(expected.getId());
+            assertEquals(getValues(expected.getEad2002Metadata()), getValues(stored.getEad2002Metadata()));
+            assertEquals(getValues(expected.getDublinCore20021212Metadata()), getValues(stored.getDublinCore20021212Metadata()));
+            assertEquals(getValues(expected.getKeyValueMetadata()), getValues(stored.getKeyValueMetadata()));
+        }
+        assertNull(store.get("aip-unknown"));
+    }
+
+    @Test
+    public void releasesTheValuesOfRemovedAips() {
+        AipMetadataStore store = new AipMetadataStore();
+        for (int i = 0; i < 1000; i++) {
+            store.put(createAipMetadata(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            store.remove("aip-" + i);
+        }
+
+        assertEquals(0, store.size());
+        assertEquals(0, store.getDistinctValues());
+    }
+
+    @Test
+    public void usesLessHeapThanAMap() throws Exception {
+        long before = getUsedHeap();
+        Map<String, AipMetadata> map = new HashMap<String, AipMetadata>();
+        for (int i = 0; i < AIPS; i++) {
+            AipMetadata aipMetadata = createAipMetadata(i);
+            map.put(aipMetadata.getId(), aipMetadata);
+        }
+        long mapHeap = getUsedHeap() - before;
+        assertEquals(AIPS, map.size());
+        map = null;
+
+        before = getUsedHeap();
+        AipMetadataStore store = new AipMetadataStore();
+        for (int i = 0; i < AIPS; i++) {
+            store.put(createAipMetadata(i));
+        }
+        long storeHeap = getUsedHeap() - before;
+        assertEquals(AIPS, store.size());
+
+        System.out.println("Heap of " + AIPS + " AIPs: " + (mapHeap / 1024) + " KB in a HashMap, "
+                + (storeHeap / 1024) + " KB in the store");
+        assertTrue("The store takes " + storeHeap + " bytes, the map " + mapHeap, storeHeap * 4 < mapHeap * 3);
+    }
+
+    /**
+     * Function responsible for creating the metadata of a synthetic AIP.
+     * @param i The AIP's number.
+     * @return The AIP's metadata.
+     */
+    private static AipMetadata createAipMetadata(int i) {
+        Ead2002Metadata ead = new Ead2002Metadata();
+        ead.setUnitId("UNIT-" + i);
+        ead.setUnitTitle("Title of the unit " + i);
+        ead.setCountryCode(new String("PT"));
+        ead.setRepositoryCode("RODA-" + (i % 5));
+        ead.setRepositoryName("Arquivo Distrital " + (i % 20));
+        ead.setArchiveDescription(new String(LEVELS[i % LEVELS.length]));
+        ead.setUnitDate(String.valueOf(1900 + i % 100));
+        ead.setUnitDateLabel(new String("range"));
+        ead.setLangMaterialLanguage(i % 3 == 0 ? new String("eng") : new String("por"));
+        ead.setOddLevelOfDetail(i % 2 == 0 ? new String("full") : new String("partial"));
+        ead.setScopeContent("Scope and content of the fonds " + (i % 50));
+        ead.setAccessRestrictions(new String("Public"));
+
+        DublinCore20021212Metadata dublinCore = new DublinCore20021212Metadata();
+        dublinCore.setTitle("Dublin Core title " + i);
+        dublinCore.setIdentifier("dc-" + i);
+        dublinCore.setCreator("Creator " + (i % 100));
+        dublinCore.setInitialDate((1900 + i % 100) + "-01-01");
+        dublinCore.setLanguage(new String("pt"));
+        dublinCore.setRights(new String("Public domain"));
+
+        KeyValueMetadata keyValue = new KeyValueMetadata();
+        keyValue.setId("kv-" + i);
+        keyValue.setTitle("Key-value title " + i);
+        keyValue.setProducer("Producer " + (i % 10));
+        keyValue.setDate("2010-10-" + (10 + i % 20));
+
+        AipMetadata aipMetadata = new AipMetadata("aip-" + i);
+        aipMetadata.setEad2002Metadata(ead);
+        aipMetadata.setDublinCore20021212Metadata(dublinCore);
+        aipMetadata.setKeyValueMetadata(keyValue);
+        return aipMetadata;
+    }
+
+    /**
+     * Function responsible for returning the values of a metadata object, read through its getters.
+     * @param metadata The metadata object.
+     * @return The values, keyed by getter name.
+     */
+    private static Map<String, Object> getValues(Object metadata) throws Exception {
+        Map<String, Object> values = new TreeMap<String, Object>();
+        for (Method method : metadata.getClass().getMethods()) {
+            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                    && method.getDeclaringClass() != Object.class) {
+                values.put(method.getName(), method.invoke(metadata));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Function responsible for returning the heap in use after the garbage is collected.
+     * @return The heap in use, in bytes.
+     */
+    private static long getUsedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the heap in use stops shrinking
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(20);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) { break; }
+            used = current;
+        }
+        return used;
+    }
+}